@@ -0,0 +1,155 @@
+package aib;
+
+import aib.environment.World;
+import aib.life.AnimalGrid;
+import aib.life.AnimalStore;
+import aib.life.SpeciesTable;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+
+/**
+ * The layer the animals are drawn on. All the animal sprites are drawn on a single canvas,
+ * instead of having one image node for each animal on the map.
+ */
+public class AnimalLayer {
+    /** The brightness factor applied to the sprites of dead animals (darker than alive animals) */
+    private static final double DEAD_BRIGHTNESS = 0.2;
+
+    /** The canvas all the animals are drawn on */
+    private final Canvas canvas;
+    /** The sprites for alive animals, scaled to the animal image width, indexed by species ID */
+    private final Image[] aliveSprites = new Image[SpeciesTable.size()];
+    /** The sprites for dead animals, scaled and darkened, indexed by species ID */
+    private final Image[] deadSprites = new Image[SpeciesTable.size()];
+    /** The region of the map that is currently drawn on the canvas, or null if nothing is drawn */
+    private Bounds drawnRegion;
+
+    /**
+     * Create a new, empty animal layer with the size of the map
+     */
+    public AnimalLayer() {
+        canvas = new Canvas(Constants.MAP_SIZE_X, Constants.MAP_SIZE_Y);
+        // Clicks are resolved by the map through the animal grid
+        canvas.setMouseTransparent(true);
+    }
+
+    /**
+     * Get the canvas the animals are drawn on
+     * @return The animal canvas
+     */
+    public Canvas getCanvas() {
+        return canvas;
+    }
+
+    /**
+     * Mark the layer as out of date, e.g. after the animals were generated or changed state,
+     * so the next update redraws it
+     */
+    public void invalidate() {
+        drawnRegion = null;
+    }
+
+    /**
+     * Make sure all the animals in the visible region of the map are drawn.
+     * If the region is already drawn (e.g. after zooming in), nothing is redrawn
+     * @param visibleRegion The region of the map that is visible
+     */
+    public void update(Bounds visibleRegion) {
+        if (drawnRegion != null && drawnRegion.contains(visibleRegion)) return;
+        redraw(visibleRegion);
+    }
+
+    /**
+     * Clear the layer and draw only the animals whose sprites intersect the visible region of the map
+     * @param visibleRegion The region of the map that is visible
+     */
+    public void redraw(Bounds visibleRegion) {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+
+        // Only draw the part of the region that is on the map
+        double minX = Math.max(0, visibleRegion.getMinX());
+        double minY = Math.max(0, visibleRegion.getMinY());
+        double maxX = Math.min(canvas.getWidth(), visibleRegion.getMaxX());
+        double maxY = Math.min(canvas.getHeight(), visibleRegion.getMaxY());
+
+        AnimalStore animals = World.getAnimals();
+        World.getAnimalGrid().forEachInRectangle(minX, minY, maxX, maxY, animal -> {
+            Image sprite = getSprite(animals.getSpecies(animal), animals.isAlive(animal));
+            gc.drawImage(sprite, AnimalGrid.spriteX(animals.getX(animal)), AnimalGrid.spriteY(animals.getY(animal)));
+        });
+
+        drawnRegion = new BoundingBox(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * Get the sprite for an animal, depending on its species and state
+     * Sprites are scaled and tinted once per species, and reused for every animal of that species
+     * @param species The species ID of the animal
+     * @param alive If the animal is alive
+     * @return The sprite to draw for the animal
+     */
+    private Image getSprite(int species, boolean alive) {
+        if (aliveSprites[species] == null) {
+            Image image = SpeciesTable.get(species).getImage();
+            aliveSprites[species] = scaleSprite(image, Constants.ANIMAL_IMAGE_WIDTH, 1.0);
+            deadSprites[species] = scaleSprite(image, Constants.ANIMAL_IMAGE_WIDTH, DEAD_BRIGHTNESS);
+        }
+        return alive ? aliveSprites[species] : deadSprites[species];
+    }
+
+    /**
+     * Scale an image down to a given width (keeping its ratio) by averaging the source pixels behind each
+     * sprite pixel, and adjust its brightness
+     * @param image The full size image
+     * @param width The sprite width
+     * @param brightness The factor the colour channels are multiplied by (1 keeps the original colours)
+     * @return The scaled sprite
+     */
+    private static Image scaleSprite(Image image, int width, double brightness) {
+        PixelReader reader = image.getPixelReader();
+        int sourceWidth = (int) image.getWidth();
+        int sourceHeight = (int) image.getHeight();
+        int height = Math.max(1, (int) Math.round(width * image.getHeight() / image.getWidth()));
+
+        WritableImage sprite = new WritableImage(width, height);
+        PixelWriter writer = sprite.getPixelWriter();
+        for (int y = 0; y < height; y++) {
+            int sy0 = y * sourceHeight / height;
+            int sy1 = Math.max(sy0 + 1, (y + 1) * sourceHeight / height);
+            for (int x = 0; x < width; x++) {
+                int sx0 = x * sourceWidth / width;
+                int sx1 = Math.max(sx0 + 1, (x + 1) * sourceWidth / width);
+
+                // Average the (alpha premultiplied) source pixels covered by this sprite pixel
+                long a = 0, r = 0, g = 0, b = 0;
+                for (int sy = sy0; sy < sy1; sy++) {
+                    for (int sx = sx0; sx < sx1; sx++) {
+                        int argb = reader.getArgb(sx, sy);
+                        int alpha = argb >>> 24;
+                        a += alpha;
+                        r += ((argb >> 16) & 0xff) * alpha;
+                        g += ((argb >> 8) & 0xff) * alpha;
+                        b += (argb & 0xff) * alpha;
+                    }
+                }
+                int count = (sy1 - sy0) * (sx1 - sx0);
+                int argb = 0;
+                if (a > 0) {
+                    argb = (int) (a / count) << 24
+                            | (int) (r * brightness / a) << 16
+                            | (int) (g * brightness / a) << 8
+                            | (int) (b * brightness / a);
+                }
+                writer.setArgb(x, y, argb);
+            }
+        }
+        return sprite;
+    }
+}
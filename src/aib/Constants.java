@@ -1,7 +1,6 @@
 package aib;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import aib.environment.TerrainSet;
 
 /**
  * Useful constants
@@ -21,6 +20,10 @@ public class Constants {
     public static final int MAP_SIZE_X = 1300;
     /** The map height (in pixels) */
     public static final int MAP_SIZE_Y = 1000;
+    /** The width of an animal image drawn on the map (in pixels) */
+    public static final int ANIMAL_IMAGE_WIDTH = 40;
+    /** The size of the square tiles the map is drawn in (in pixels) */
+    public static final int MAP_TILE_SIZE = 256;
 
     /** The initial sea level in the world,
      * i.e. the height (perlin noise height) up to which the world should be covered in water */
@@ -30,8 +33,8 @@ public class Constants {
     /** The minimum height in the world in meters */
     public static final float MIN_TERRAIN_HEIGHT = -2500;
 
-    /** A list of all the ids of water type terrains */
-    public static final ArrayList<Integer> WATER_TERRAINS = new ArrayList<>(Arrays.asList(4,5,6));
-    /** A list of all the ids of ice/snow type terrains  */
-    public static final ArrayList<Integer> ICE_TERRAINS = new ArrayList<>(Arrays.asList(1,2,3));
+    /** The set of all the ids of water type terrains */
+    public static final TerrainSet WATER_TERRAINS = TerrainSet.of(4,5,6);
+    /** The set of all the ids of ice/snow type terrains  */
+    public static final TerrainSet ICE_TERRAINS = TerrainSet.of(1,2,3);
 }
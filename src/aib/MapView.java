@@ -0,0 +1,278 @@
+package aib;
+
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The map, split into square tiles. Only the tiles that intersect the visible region of the map are in the scene,
+ * so zooming into a part of a large map only draws that part.
+ * The map is kept as a mipmap pyramid (the full map, then 1/2, 1/4 and so on of its size, see Renderer.buildMipmaps),
+ * and the tiles are taken from the level that matches the zoom, so when zoomed out the scene graph does not scale
+ * down the full resolution map (which is slow and aliases), and fewer, smaller tiles cover the whole view.
+ * The tile images are kept in a cache, so tiles that scroll back into view do not need to be rendered again;
+ * when the cache is full, the least recently used tile is evicted.
+ */
+public class MapView extends Pane {
+    /** The size of the square tiles (in pixels of their level) */
+    public static final int TILE_SIZE = Constants.MAP_TILE_SIZE;
+    /** The maximum number of tile images kept in the cache */
+    public static final int MAX_CACHED_TILES = 64;
+
+    /** The width of the map (in pixels) */
+    private final int mapWidth;
+    /** The height of the map (in pixels) */
+    private final int mapHeight;
+    /** The group holding the tiles currently in the scene (other layers can be added on top of it) */
+    private final Group tileGroup = new Group();
+    /** The rendered tile images, by tile key (see tileKey), in least recently used order */
+    private final LinkedHashMap<Integer, WritableImage> tileCache =
+            new LinkedHashMap<Integer, WritableImage>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, WritableImage> eldest) {
+                    return size() > MAX_CACHED_TILES;
+                }
+            };
+    /** The tiles currently in the scene, by tile key */
+    private final Map<Integer, ImageView> shownTiles = new HashMap<>();
+    /** The levels of the mipmap pyramid (the colour of every pixel, row by row), or null if nothing was drawn yet */
+    private int[][] levels;
+
+    /**
+     * Create an empty map view
+     * @param mapWidth The width of the map (in pixels)
+     * @param mapHeight The height of the map (in pixels)
+     */
+    public MapView(int mapWidth, int mapHeight) {
+        this.mapWidth = mapWidth;
+        this.mapHeight = mapHeight;
+        // The view always takes the size of the whole map, whatever tiles are shown
+        setMinSize(mapWidth, mapHeight);
+        setPrefSize(mapWidth, mapHeight);
+        setMaxSize(mapWidth, mapHeight);
+        getChildren().add(tileGroup);
+    }
+
+    /**
+     * Show a new frame; all the cached tiles are discarded
+     * @param levels The mipmap pyramid of the frame (see Renderer.buildMipmaps)
+     * @param visibleRegion The region of the map that is visible
+     * @param scale The scale the map is shown at (1 is one screen pixel per map pixel)
+     */
+    public void setFrame(int[][] levels, Bounds visibleRegion, double scale) {
+        this.levels = levels;
+        tileCache.clear();
+        shownTiles.clear();
+        tileGroup.getChildren().clear();
+        update(visibleRegion, scale);
+    }
+
+    /**
+     * Show a new frame in the tiles already in the scene, writing its pixels into their images
+     * instead of creating new tiles (as an animation does every frame); the cached tiles that are
+     * not shown are discarded
+     * @param levels The mipmap pyramid of the frame (see Renderer.buildMipmaps)
+     */
+    public void replaceFrame(int[][] levels) {
+        this.levels = levels;
+        tileCache.keySet().retainAll(shownTiles.keySet());
+        refreshRegion(0, 0, mapWidth, mapHeight);
+    }
+
+    /**
+     * Get the mipmap pyramid of the frame being shown
+     * @return The levels (see Renderer.buildMipmaps), or null if nothing was drawn yet
+     */
+    public int[][] getLevels() {
+        return levels;
+    }
+
+    /**
+     * Write a region of the pyramid that changed (see Renderer.updateMipmaps) into the tile images that were
+     * already rendered, at every level, so they do not need to be rendered again
+     * @param minX The first column of the region (in map pixels)
+     * @param minY The first row of the region (in map pixels)
+     * @param maxX The column after the last column of the region (in map pixels)
+     * @param maxY The row after the last row of the region (in map pixels)
+     */
+    public void refreshRegion(int minX, int minY, int maxX, int maxY) {
+        if (levels == null) return;
+        // Shown tiles may have been evicted from the cache, so both are checked
+        HashSet<Integer> keys = new HashSet<>(tileCache.keySet());
+        keys.addAll(shownTiles.keySet());
+        for (int key : keys) {
+            int level = tileLevel(key);
+            int levelWidth = levelWidth(level);
+            // The region on this level (a pixel of the level covers 2^level map pixels in each direction)
+            int regionMinX = minX >> level, regionMinY = minY >> level;
+            int regionMaxX = Math.min(levelWidth, (maxX + (1 << level) - 1) >> level);
+            int regionMaxY = Math.min(levelHeight(level), (maxY + (1 << level) - 1) >> level);
+            // The part of the region inside the tile
+            int tileMinX = tileX(key) * TILE_SIZE, tileMinY = tileY(key) * TILE_SIZE;
+            int fromX = Math.max(regionMinX, tileMinX), fromY = Math.max(regionMinY, tileMinY);
+            int toX = Math.min(regionMaxX, tileMinX + TILE_SIZE), toY = Math.min(regionMaxY, tileMinY + TILE_SIZE);
+            if (fromX >= toX || fromY >= toY) continue;
+
+            ImageView view = shownTiles.get(key);
+            WritableImage image = view != null ? (WritableImage) view.getImage() : tileCache.get(key);
+            image.getPixelWriter().setPixels(fromX - tileMinX, fromY - tileMinY, toX - fromX, toY - fromY,
+                    PixelFormat.getIntArgbInstance(), levels[level], fromY * levelWidth + fromX, levelWidth);
+        }
+    }
+
+    /**
+     * Make sure the tiles of the level matching the scale that intersect the visible region are in the scene, and only those
+     * @param visibleRegion The region of the map that is visible
+     * @param scale The scale the map is shown at (1 is one screen pixel per map pixel)
+     */
+    public void update(Bounds visibleRegion, double scale) {
+        if (levels == null) return;
+        int level = chooseLevel(scale);
+        // The size of a tile of this level, in map pixels
+        int tileSpan = TILE_SIZE << level;
+        int minTileX = Math.max(0, (int) Math.floor(visibleRegion.getMinX() / tileSpan));
+        int minTileY = Math.max(0, (int) Math.floor(visibleRegion.getMinY() / tileSpan));
+        int maxTileX = Math.min((mapWidth - 1) / tileSpan, (int) Math.floor(visibleRegion.getMaxX() / tileSpan));
+        int maxTileY = Math.min((mapHeight - 1) / tileSpan, (int) Math.floor(visibleRegion.getMaxY() / tileSpan));
+
+        // Remove the tiles that are no longer visible, or are from another level
+        Iterator<Map.Entry<Integer, ImageView>> shown = shownTiles.entrySet().iterator();
+        while (shown.hasNext()) {
+            Map.Entry<Integer, ImageView> tile = shown.next();
+            int key = tile.getKey();
+            int tileX = tileX(key), tileY = tileY(key);
+            if (tileLevel(key) != level || tileX < minTileX || tileX > maxTileX || tileY < minTileY || tileY > maxTileY) {
+                tileGroup.getChildren().remove(tile.getValue());
+                shown.remove();
+            }
+        }
+
+        // Add the tiles that became visible, rendering the ones that are not in the cache
+        for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+            for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                int key = tileKey(level, tileX, tileY);
+                if (shownTiles.containsKey(key)) {
+                    // Keep the tile at the recently used end of the cache
+                    tileCache.get(key);
+                    continue;
+                }
+                WritableImage image = tileCache.get(key);
+                if (image == null) {
+                    image = renderTile(level, tileX, tileY);
+                    tileCache.put(key, image);
+                }
+                // Tiles of coarser levels are stretched back to the map pixels they cover
+                ImageView view = new ImageView(image);
+                view.setLayoutX(tileX * tileSpan);
+                view.setLayoutY(tileY * tileSpan);
+                if (level > 0) {
+                    view.setFitWidth(Math.min(image.getWidth() * (1 << level), mapWidth - tileX * tileSpan));
+                    view.setFitHeight(Math.min(image.getHeight() * (1 << level), mapHeight - tileY * tileSpan));
+                    view.setSmooth(true);
+                }
+                shownTiles.put(key, view);
+                tileGroup.getChildren().add(view);
+            }
+        }
+    }
+
+    /**
+     * Choose the mipmap level to show the map at a scale: the coarsest level that still has
+     * at least one pixel for every screen pixel
+     * @param scale The scale the map is shown at (1 is one screen pixel per map pixel)
+     * @return The level
+     */
+    private int chooseLevel(double scale) {
+        int level = 0;
+        while (level < levels.length - 1 && scale * (1 << (level + 1)) <= 1) level++;
+        return level;
+    }
+
+    /**
+     * Render a tile from a level of the pyramid
+     * @param level The level
+     * @param tileX The tile column
+     * @param tileY The tile row
+     * @return The tile image
+     */
+    private WritableImage renderTile(int level, int tileX, int tileY) {
+        int levelWidth = levelWidth(level);
+        int minX = tileX * TILE_SIZE;
+        int minY = tileY * TILE_SIZE;
+        int width = Math.min(TILE_SIZE, levelWidth - minX);
+        int height = Math.min(TILE_SIZE, levelHeight(level) - minY);
+        WritableImage image = new WritableImage(width, height);
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(),
+                levels[level], minY * levelWidth + minX, levelWidth);
+        return image;
+    }
+
+    /**
+     * Get the width of a level of the pyramid
+     * @param level The level
+     * @return The width, in pixels of that level
+     */
+    private int levelWidth(int level) {
+        int width = mapWidth;
+        for (int i = 0; i < level; i++) width = (width + 1) / 2;
+        return width;
+    }
+
+    /**
+     * Get the height of a level of the pyramid
+     * @param level The level
+     * @return The height, in pixels of that level
+     */
+    private int levelHeight(int level) {
+        int height = mapHeight;
+        for (int i = 0; i < level; i++) height = (height + 1) / 2;
+        return height;
+    }
+
+    /**
+     * Get the key identifying a tile
+     * @param level The level of the tile
+     * @param tileX The tile column
+     * @param tileY The tile row
+     * @return The key
+     */
+    private static int tileKey(int level, int tileX, int tileY) {
+        return (level << 24) | (tileY << 12) | tileX;
+    }
+
+    /**
+     * Get the level of a tile from its key
+     * @param key The tile key
+     * @return The level
+     */
+    private static int tileLevel(int key) {
+        return key >>> 24;
+    }
+
+    /**
+     * Get the column of a tile from its key
+     * @param key The tile key
+     * @return The tile column
+     */
+    private static int tileX(int key) {
+        return key & 0xfff;
+    }
+
+    /**
+     * Get the row of a tile from its key
+     * @param key The tile key
+     * @return The tile row
+     */
+    private static int tileY(int key) {
+        return (key >>> 12) & 0xfff;
+    }
+}
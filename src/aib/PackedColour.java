@@ -0,0 +1,108 @@
+package aib;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Colour maths on colours packed into ints (0xAARRGGBB), the format the map image is written in.
+ * Mixing colours this way does not create any objects, so it can be done for every pixel of the map.
+ * The curves that sharpen the transition between two colours (intensity to the power of 2, 5 or 64)
+ * are precomputed into small tables, instead of calling Math.pow for every pixel.
+ */
+public class PackedColour {
+    /** The number of entries in the sharpen curve tables */
+    private static final int CURVE_SIZE = 4096;
+    /** The weight of the second colour when it fully replaces the first one */
+    private static final int FULL_WEIGHT = 256;
+    /** The sharpen curve tables: the weight of the second colour (0 to FULL_WEIGHT) for evenly spaced intensities */
+    private static final int[] LINEAR = curve(1), SQUARE = curve(2), POWER_5 = curve(5), POWER_64 = curve(64);
+
+    /** Opaque black */
+    public static final int BLACK = rgb(0, 0, 0);
+
+    /**
+     * Pack a colour from its red, green and blue components (fully opaque)
+     * @param red The red component (0 to 255)
+     * @param green The green component (0 to 255)
+     * @param blue The blue component (0 to 255)
+     * @return The packed colour
+     */
+    public static int rgb(int red, int green, int blue) {
+        return 0xff000000 | (red << 16) | (green << 8) | blue;
+    }
+
+    /**
+     * Pack a JavaFX colour
+     * @param colour The colour
+     * @return The packed colour
+     */
+    public static int fromColor(Color colour) {
+        return ((int) Math.round(colour.getOpacity() * 255) << 24) | ((int) Math.round(colour.getRed() * 255) << 16)
+                | ((int) Math.round(colour.getGreen() * 255) << 8) | (int) Math.round(colour.getBlue() * 255);
+    }
+
+    /**
+     * Get a shade of gray
+     * @param brightness The brightness, from 0 (black) to 1 (white); values outside that range are clamped
+     * @return The packed colour
+     */
+    public static int gray(float brightness) {
+        int level = (int) (Math.max(0f, Math.min(1f, brightness)) * 255);
+        return rgb(level, level, level);
+    }
+
+    /**
+     * Generate a colour that is a mix between two colours with a ratio based on an intensity value
+     * if the intensity is closer to 0, the mixed colour will be closer to the first colour
+     * if the intensity is closer to 1, the mixed colour will be closer to the second colour
+     * The intensity is raised to the power of sharpen first, so that the higher sharpen is,
+     * the longer the mix stays close to the first colour
+     * @param first The first colour to mix
+     * @param second The second colour to mix
+     * @param intensity The intensity value (clamped to the range 0 to 1)
+     * @param sharpen The power to raise the intensity to: 1, 2, 5 or 64
+     * @return The mixed colour
+     */
+    public static int mix(int first, int second, float intensity, int sharpen) {
+        int[] curve;
+        switch (sharpen) {
+            case 1: curve = LINEAR; break;
+            case 2: curve = SQUARE; break;
+            case 5: curve = POWER_5; break;
+            case 64: curve = POWER_64; break;
+            default: throw new IllegalArgumentException("No sharpen curve for the power " + sharpen);
+        }
+        // Intensities that are NaN or outside the range are clamped
+        if (!(intensity > 0f)) intensity = 0f;
+        else if (intensity > 1f) intensity = 1f;
+        int weight = curve[(int) (intensity * (CURVE_SIZE - 1) + 0.5f)];
+
+        int red = lerp((first >> 16) & 0xff, (second >> 16) & 0xff, weight);
+        int green = lerp((first >> 8) & 0xff, (second >> 8) & 0xff, weight);
+        int blue = lerp(first & 0xff, second & 0xff, weight);
+        return rgb(red, green, blue);
+    }
+
+    /**
+     * Mix two colour components
+     * @param from The first component
+     * @param to The second component
+     * @param weight The weight of the second component (0 to FULL_WEIGHT)
+     * @return The mixed component
+     */
+    private static int lerp(int from, int to, int weight) {
+        return from + (((to - from) * weight) / FULL_WEIGHT);
+    }
+
+    /**
+     * Precompute a sharpen curve
+     * @param power The power the intensity is raised to
+     * @return The weight of the second colour for CURVE_SIZE evenly spaced intensities from 0 to 1
+     */
+    private static int[] curve(int power) {
+        int[] curve = new int[CURVE_SIZE];
+        for (int i = 0; i < CURVE_SIZE; i++) {
+            curve[i] = (int) Math.round(Math.pow((double) i / (CURVE_SIZE - 1), power) * FULL_WEIGHT);
+        }
+        return curve;
+    }
+}
@@ -1,82 +1,247 @@
 package aib;
 
+import aib.environment.Pixel;
 import aib.environment.TerrainSections;
 import aib.environment.World;
+import aib.environment.WorldGrid;
 import aib.life.Animal;
-import javafx.scene.Group;
-import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.effect.ColorAdjust;
-import javafx.scene.image.ImageView;
-import javafx.scene.image.PixelWriter;
-import javafx.scene.input.MouseEvent;
-import javafx.scene.paint.Color;
+import aib.life.AnimalStore;
+import aib.life.SpeciesTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * The application renderer, used to handle all major map drawing
  */
 public class Renderer {
 
+    /** The colour of the lowest greenhouse gas levels on the greenhouse gas map */
+    private static final int LOW_GREENHOUSE_COLOUR = PackedColour.rgb(30, 165, 55);
+    /** The colour of the highest greenhouse gas levels on the greenhouse gas map */
+    private static final int HIGH_GREENHOUSE_COLOUR = PackedColour.rgb(255, 0, 0);
+    /** The colours of the coast distance map: land at the coast and inland, water at the coast and offshore */
+    private static final int COAST_LAND_COLOUR = PackedColour.rgb(240, 220, 120), INLAND_COLOUR = PackedColour.rgb(20, 90, 30),
+            COAST_WATER_COLOUR = PackedColour.rgb(150, 210, 240), OFFSHORE_COLOUR = PackedColour.rgb(10, 30, 110);
+
+    /**
+     * Render the colour of every pixel of the map
+     * @param mapType The type of map to be drawn
+     * @param showEquatorLine If the equator line is drawn on the map
+     * @return The colour of every pixel, packed into ints (see PackedColour), row by row (index y * MAP_SIZE_X + x)
+     */
+    public static int[] renderFrame(String mapType, boolean showEquatorLine) {
+        int[] frame = new int[Constants.MAP_SIZE_X * Constants.MAP_SIZE_Y];
+        renderRegion(mapType, showEquatorLine, frame, 0, 0, Constants.MAP_SIZE_X, Constants.MAP_SIZE_Y);
+        return frame;
+    }
+
     /**
-     * Draw the map pixel by pixel
+     * Render the colour of every pixel in a region of the map into a frame
      * @param mapType The type of map to be drawn
-     * @return The drawn map
+     * @param showEquatorLine If the equator line is drawn on the map
+     * @param frame The colour of every pixel of the map, row by row (index y * MAP_SIZE_X + x)
+     * @param minX The first column of the region
+     * @param minY The first row of the region
+     * @param maxX The column after the last column of the region
+     * @param maxY The row after the last row of the region
      */
-    public static Group drawPixels(String mapType) {
-        // The container for the map, and the canvas used to draw it
-        Group root = new Group();
-        Canvas canvas = new Canvas(Constants.MAP_SIZE_X,Constants.MAP_SIZE_Y);
-        GraphicsContext gc = canvas.getGraphicsContext2D();
-
-        // Draw Image Data
-        PixelWriter pixelWriter = gc.getPixelWriter();
-
-        // Set the colour for each pixel of the world, depending on the type of map that is being drawn
-        for (int x = 0; x < World.pixels.length; x++) {
-            for (int y = 0; y < World.pixels[x].length; y++) {
-                Color colour;
+    public static void renderRegion(String mapType, boolean showEquatorLine, int[] frame, int minX, int minY, int maxX, int maxY) {
+        // Set the colour for each pixel of the region, depending on the type of map that is being drawn
+        // (column by column, the order World.pixels keeps them in; renderGrid is for grids kept elsewhere)
+        for (int x = minX; x < maxX; x++) {
+            Pixel[] column = World.pixels[x];
+            for (int y = minY; y < maxY; y++) {
+                Pixel pixel = column[y];
+                int colour;
                 switch (mapType) {
                     // For the terrain height map, pixels will be a different intensity of gray
                     // based on their height (from the perlin noise height map)
-                    case "Height":
-                        if(World.pixels[x][y].getNoiseHeight() > 1) {colour = Color.gray(1.0);}
-                        else if(World.pixels[x][y].getNoiseHeight() < 0) {colour = Color.gray(0.0);}
-                        else {colour = Color.gray(World.pixels[x][y].getNoiseHeight());}
-                        break;
+                    case "Height": colour = PackedColour.gray(pixel.getNoiseHeight()); break;
                     // For the greenhouse gas map, pixels will have a colour between green and red
-                    // the higher the greenhouse gas, the colour will be closer to red
-                    // the lower the greenhouse gas, the colour will be closer to green
-                    case "Greenhouse Gas":
-                        if(World.pixels[x][y].getGreenhouseGasFactor() > 2) {
-                            colour = Color.RED;
-                        }
-                        else if(World.pixels[x][y].getGreenhouseGasFactor() < 0.1) {
-                            colour = Color.rgb(30,165,55);
-                        }
-                        else {
-                            float intensity = scaleToRange(
-                                    0.1f,2f,0f,1f,World.pixels[x][y].getGreenhouseGasFactor());
-                            colour = Renderer.generateColor(Color.rgb(
-                                    30, 165, 55), Color.RED,intensity, 0, 2);
-                        }
+                    case "Greenhouse Gas": colour = greenhouseColour(pixel.getGreenhouseGasFactor()); break;
+                    // For the coast distance map, land pixels go from yellow at the coast to dark green inland,
+                    // and water pixels from light blue at the coast to dark blue offshore (up to 100 pixels away)
+                    case "Coast Distance":
+                        float distanceIntensity = World.getCoastDistance(x, y) / 100f;
+                        if(Constants.WATER_TERRAINS.contains(pixel.getTerrainType().getId()))
+                            colour = PackedColour.mix(COAST_WATER_COLOUR, OFFSHORE_COLOUR, distanceIntensity, 1);
+                        else
+                            colour = PackedColour.mix(COAST_LAND_COLOUR, INLAND_COLOUR, distanceIntensity, 1);
                         break;
                     // For the temperature map, the pixel's colour will be determined by its temperature
-                    case "Temperature": colour = World.pixels[x][y].getTemperature().colour; break;
+                    case "Temperature": colour = pixel.getTemperatureColour(); break;
                     // For the default case, which covers terrain maps, the pixel's colour will be determined by its terrain type
-                    default: colour = World.pixels[x][y].getColour();
+                    default: colour = pixel.getColour();
                 }
+                frame[y * Constants.MAP_SIZE_X + x] = colour;
+            }
+        }
 
-                // Draw the equator line halfway on the map
-                if(Main.userInterface.showEquatorLineCheck.isSelected())
-                    if(y >= (Constants.MAP_SIZE_Y/2)-1 && y <= (Constants.MAP_SIZE_Y/2))
-                        colour = Color.BLACK;
+        // Draw the equator line halfway on the map
+        if(showEquatorLine) {
+            for (int y = Math.max(minY, (Constants.MAP_SIZE_Y/2)-1); y <= Math.min(maxY - 1, Constants.MAP_SIZE_Y/2); y++) {
+                for (int x = minX; x < maxX; x++) frame[y * Constants.MAP_SIZE_X + x] = PackedColour.BLACK;
+            }
+        }
+    }
 
-                pixelWriter.setColor(x, y, colour);
+    /**
+     * Render the colour of every pixel in a region of a scaled down map of a grid, which may be any size and kept
+     * outside the heap (see WorldGrid); the pixel (x, y) of the scaled down map is the grid pixel (x * stride, y * stride)
+     * The rows are rendered in parallel
+     * @param grid The grid
+     * @param mapType The type of map to be drawn (the coast distance map needs the whole world, so it is not supported)
+     * @param stride The number of grid pixels (in each direction) per pixel of the scaled down map
+     * @param frame The colour of every pixel, row by row (index (y - frameY) * frameWidth + x)
+     * @param frameY The row of the scaled down map the first row of the frame is
+     * @param frameWidth The width of the rows of the frame
+     * @param minX The first column of the region, in the scaled down map
+     * @param minY The first row of the region
+     * @param maxX The column after the last column of the region
+     * @param maxY The row after the last row of the region
+     * @throws IllegalArgumentException If the map type is not supported
+     */
+    public static void renderGrid(WorldGrid grid, String mapType, int stride, int[] frame, int frameY, int frameWidth,
+                                  int minX, int minY, int maxX, int maxY) {
+        if (mapType.equals("Coast Distance")) throw new IllegalArgumentException("The coast distance map needs the whole world in memory");
+        IntStream.range(minY, maxY).parallel().forEach(y -> {
+            int gridY = y * stride;
+            int row = (y - frameY) * frameWidth;
+            for (int x = minX; x < maxX; x++) {
+                int gridX = x * stride;
+                int colour;
+                switch (mapType) {
+                    // For the terrain height map, pixels will be a different intensity of gray
+                    // based on their height (from the perlin noise height map)
+                    case "Height": colour = PackedColour.gray(grid.getNoiseHeight(gridX, gridY)); break;
+                    // For the greenhouse gas map, pixels will have a colour between green and red
+                    case "Greenhouse Gas": colour = greenhouseColour(grid.getGreenhouseGas(gridX, gridY)); break;
+                    // For the temperature map, the pixel's colour will be determined by its temperature
+                    case "Temperature": colour = grid.getTemperatureColour(gridX, gridY); break;
+                    // For the default case, which covers terrain maps, the pixel's colour will be determined by its terrain type
+                    default: colour = grid.getTerrainColour(gridX, gridY);
+                }
+                frame[row + x] = colour;
             }
+        });
+    }
+
+    /**
+     * Get the colour of a greenhouse gas level on the greenhouse gas map: between green and red,
+     * the higher the greenhouse gas, the closer to red
+     * @param level The greenhouse gas level
+     * @return The colour, packed into an int (see PackedColour)
+     */
+    private static int greenhouseColour(float level) {
+        if(level > 2) return HIGH_GREENHOUSE_COLOUR;
+        if(level < 0.1) return LOW_GREENHOUSE_COLOUR;
+        float intensity = scaleToRange(0.1f,2f,0f,1f,level);
+        return PackedColour.mix(LOW_GREENHOUSE_COLOUR, HIGH_GREENHOUSE_COLOUR, intensity, 2);
+    }
+
+    /**
+     * Mix two frames pixel by pixel, e.g. to show the years between two updates of the world
+     * The rows are mixed in parallel
+     * @param first The first frame
+     * @param second The second frame
+     * @param intensity How close the result is to the second frame (0 to 1)
+     * @return The mixed frame
+     */
+    public static int[] interpolateFrames(int[] first, int[] second, float intensity) {
+        int[] frame = new int[first.length];
+        IntStream.range(0, Constants.MAP_SIZE_Y).parallel().forEach(y -> {
+            for (int i = y * Constants.MAP_SIZE_X; i < (y + 1) * Constants.MAP_SIZE_X; i++) {
+                frame[i] = PackedColour.mix(first[i], second[i], intensity, 1);
+            }
+        });
+        return frame;
+    }
+
+    /**
+     * Build a mipmap pyramid from a frame: every level has half the width and height of the previous one
+     * (1/2, 1/4, 1/8 and so on), each of its pixels being the average of a 2x2 block of the previous level.
+     * The rows of each level are computed in parallel
+     * @param frame The colour of every pixel of the map, packed into ints, row by row
+     * @param width The width of the frame
+     * @param height The height of the frame
+     * @param smallestSize Levels are added until the width and height of the last level are at most this size
+     * @return The levels, the first one being the frame itself
+     */
+    public static int[][] buildMipmaps(int[] frame, int width, int height, int smallestSize) {
+        List<int[]> levels = new ArrayList<>();
+        levels.add(frame);
+        int levelWidth = width, levelHeight = height;
+        while (levelWidth > smallestSize || levelHeight > smallestSize) {
+            int[] source = levels.get(levels.size() - 1);
+            int sourceWidth = levelWidth, sourceHeight = levelHeight;
+            levelWidth = (levelWidth + 1) / 2;
+            levelHeight = (levelHeight + 1) / 2;
+            int[] level = new int[levelWidth * levelHeight];
+            int targetWidth = levelWidth;
+            IntStream.range(0, levelHeight).parallel().forEach(y ->
+                    downsampleRow(source, sourceWidth, sourceHeight, level, targetWidth, y, 0, targetWidth));
+            levels.add(level);
+        }
+        return levels.toArray(new int[0][]);
+    }
+
+    /**
+     * Update the levels of a mipmap pyramid after a region of the frame (its first level) changed;
+     * on every level, only the pixels covering the region are computed again
+     * @param levels The pyramid (see buildMipmaps)
+     * @param width The width of the frame
+     * @param height The height of the frame
+     * @param minX The first column of the region that changed
+     * @param minY The first row of the region that changed
+     * @param maxX The column after the last column of the region that changed
+     * @param maxY The row after the last row of the region that changed
+     */
+    public static void updateMipmaps(int[][] levels, int width, int height, int minX, int minY, int maxX, int maxY) {
+        int sourceWidth = width, sourceHeight = height;
+        for (int i = 1; i < levels.length; i++) {
+            int targetWidth = (sourceWidth + 1) / 2, targetHeight = (sourceHeight + 1) / 2;
+            // A pixel of this level covers two columns and rows of the previous one
+            minX /= 2;
+            minY /= 2;
+            maxX = Math.min(targetWidth, (maxX + 1) / 2);
+            maxY = Math.min(targetHeight, (maxY + 1) / 2);
+            for (int y = minY; y < maxY; y++)
+                downsampleRow(levels[i - 1], sourceWidth, sourceHeight, levels[i], targetWidth, y, minX, maxX);
+            sourceWidth = targetWidth;
+            sourceHeight = targetHeight;
         }
+    }
 
-        root.getChildren().add(canvas);
-        return root;
+    /**
+     * Compute part of a row of a mipmap level from the previous level, with a 2x2 box filter
+     * At odd sized edges, the last row or column of the previous level is used twice
+     * @param source The previous level
+     * @param sourceWidth The width of the previous level
+     * @param sourceHeight The height of the previous level
+     * @param target The level being computed
+     * @param targetWidth The width of the level being computed
+     * @param y The row to compute
+     * @param minX The first column to compute
+     * @param maxX The column after the last column to compute
+     */
+    private static void downsampleRow(int[] source, int sourceWidth, int sourceHeight, int[] target, int targetWidth,
+                                      int y, int minX, int maxX) {
+        int top = 2 * y * sourceWidth;
+        int bottom = Math.min(2 * y + 1, sourceHeight - 1) * sourceWidth;
+        for (int x = minX; x < maxX; x++) {
+            int left = 2 * x;
+            int right = Math.min(2 * x + 1, sourceWidth - 1);
+            int a = source[top + left], b = source[top + right], c = source[bottom + left], d = source[bottom + right];
+            // Average every channel (alpha, red, green and blue), rounding to the nearest value
+            int colour = 0;
+            for (int shift = 0; shift < 32; shift += 8) {
+                int sum = ((a >>> shift) & 0xff) + ((b >>> shift) & 0xff) + ((c >>> shift) & 0xff) + ((d >>> shift) & 0xff);
+                colour |= ((sum + 2) >> 2) << shift;
+            }
+            target[y * targetWidth + x] = colour;
+        }
     }
 
     /**
@@ -94,91 +259,41 @@ public class Renderer {
     }
 
     /**
-     * Generate a colour that is a mix between two colours with a ration based on an intensity value
-     * if intensity ( 0 > intensity > 1) is closer to 0, the mixed colour will be closer to the first colour
-     * if intensity ( 0 > intensity > 1) is closer to 1, the mixed colour will be closer to the second colour
-     * @param col1 The first colour to mix
-     * @param col2 The second colour to mix
-     * @param intensity The intensity value
-     * @param function Flag that indicates if these particular colours should mix or not
-     * @param SHARPEN Value that determines how much the colour should mix
-     *                i.e. a high level of gradient (transition is smooth) or an abrupt transition (you can see transition lines)
-     * @return The new colour
+     * Draw the animals on the map
+     * All the animals are drawn on a single layer on top of the map, and only the ones in the visible region
      */
-    public static Color generateColor(Color col1, Color col2, float intensity, int function, double SHARPEN) {
-        // If function is 0, use SHARPEN to determine how much to mix colours
-        if (function == 0)
-            intensity = (float) Math.pow(intensity, SHARPEN);
-        // Otherwise, make the transition more abrupt
-        // (used for ice, as ice does not blend into other terrains
-        //  but rather is sharp and you can clearly see where it begins and ends)
-        else if (function == 1)
-            intensity = (float) Math.pow(intensity, 64);
-        else
-            intensity = 0;
-
-        // Calculate new colour
-        double newRed   = (col1.getRed() + (col2.getRed() - col1.getRed()) * intensity) * 255;
-        double newGreen   = (col1.getGreen() + (col2.getGreen() - col1.getGreen()) * intensity) * 255;
-        double newBlue   = (col1.getBlue() + (col2.getBlue() - col1.getBlue()) * intensity) * 255;
-
-        return Color.rgb((int)newRed, (int)newGreen, (int)newBlue);
+    public static void drawAnimals() {
+        AnimalLayer animalLayer = Main.userInterface.animalLayer;
+        animalLayer.invalidate();
+        animalLayer.update(Main.userInterface.mapZoomablePane.getVisibleBounds());
+
+        // Add the layer on top of the map (the map is kept between redraws, so the layer may already be there)
+        if(!Main.userInterface.map.getChildren().contains(animalLayer.getCanvas()))
+            Main.userInterface.map.getChildren().add(animalLayer.getCanvas());
     }
 
     /**
-     * Draw the animals on the map
+     * Inform the user of the state of an animal
+     * @param animal The index of the animal that was clicked
      */
-    public static void drawAnimals() {
-        int imgWidth = 40;
-        int x;
-        int y;
-        // Greyscale filter for when animals are dead
-        ColorAdjust greyscale = new ColorAdjust();
-        greyscale.setBrightness(-0.8);
-        greyscale.setHue(0.0);
-
-        // Display the image for each animal
-        for(Animal animal : World.getAnimals()) {
-            ImageView iv = new ImageView();
-            iv.setImage(animal.getImage());
-
-            // set its position (the center of the image will be on the animal coordinates)
-            x = animal.getX() - imgWidth/2;
-            y = animal.getY() - imgWidth/2;
-            // but not outside the map boundaries
-            if(x < 0) x = 0;
-            if(y < 0) y = 0;
-            iv.setX(x);
-            iv.setY(y);
-            iv.setFitWidth(imgWidth);
-            iv.setPreserveRatio(true);
-            iv.setSmooth(true);
-            iv.setCache(true);
-
-            // Differentiate between alive and dead animals using the greyscale filter
-            if(!animal.isAlive())
-                iv.setEffect(greyscale);
-
-            // Add the image on top of the map
-            Main.userInterface.map.getChildren().add(iv);
-
-            // When the animal is clicked, informed the user of its state
-            iv.addEventHandler(MouseEvent.MOUSE_CLICKED, event -> {
-                // Create a string of all the compatible habitats
-                String habitats = "";
-                for(int id: animal.getCompatibleTerrainsIDs()) {
-                    habitats += TerrainSections.getTerrainByID(id).getName() + ", ";
-                }
-                habitats = habitats.substring(0, habitats.length()-2);
-
-                Main.userInterface.printToUserTextBox("--------------------------------------------------------");
-                Main.userInterface.printToUserTextBox("Species: " + animal.getName());
-                Main.userInterface.printToUserTextBox("Animal center coordinates: x: " + animal.getX() + " y: " + animal.getY());
-                Main.userInterface.printToUserTextBox("Habitats: " + habitats);
-                Main.userInterface.printToUserTextBox("Current terrain: " + World.pixels[animal.getX()][animal.getY()].getTerrainType().getName());
-                Main.userInterface.printToUserTextBox("State: " + ((animal.isAlive()) ? "alive" : "dead"));
+    public static void printAnimalInformation(int animal) {
+        AnimalStore animals = World.getAnimals();
+        Animal species = SpeciesTable.get(animals.getSpecies(animal));
+        int x = animals.getX(animal);
+        int y = animals.getY(animal);
 
-            });
+        // Create a string of all the compatible habitats
+        String habitats = "";
+        for(int id: species.getCompatibleTerrains().toArray()) {
+            habitats += TerrainSections.getTerrainByID(id).getName() + ", ";
         }
+        habitats = habitats.substring(0, habitats.length()-2);
+
+        Main.userInterface.printToUserTextBox("--------------------------------------------------------");
+        Main.userInterface.printToUserTextBox("Species: " + species.getName());
+        Main.userInterface.printToUserTextBox("Animal center coordinates: x: " + x + " y: " + y);
+        Main.userInterface.printToUserTextBox("Habitats: " + habitats);
+        Main.userInterface.printToUserTextBox("Current terrain: " + World.pixels[x][y].getTerrainType().getName());
+        Main.userInterface.printToUserTextBox("State: " + ((animals.isAlive(animal)) ? "alive" : "dead"));
     }
 }
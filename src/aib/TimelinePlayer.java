@@ -0,0 +1,187 @@
+package aib;
+
+import aib.environment.World;
+import javafx.animation.AnimationTimer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Plays the timeline as an animation, year by year, up to the last year of the timeline.
+ * A background thread moves the world forward one decade at a time, renders the map of every decade (the keyframes)
+ * and interpolates the years in between; the frames wait in a bounded queue, so the next frames are computed
+ * while the current one is on screen, without keeping the whole animation in memory.
+ * On the javafx application thread, an animation timer (called at the display refresh rate) takes the frames that
+ * are due from the queue without ever waiting for them: if it fell behind, only the latest due frame is shown
+ * and the others are dropped, and if the background thread fell behind, the current frame stays on screen.
+ */
+public class TimelinePlayer {
+    /** The last year of the timeline */
+    public static final int END_YEAR = 2100;
+    /** The number of years between two keyframes (the world is updated one decade at a time) */
+    public static final int YEARS_PER_KEYFRAME = 10;
+    /** The number of frames (years) shown per second */
+    public static final int FRAMES_PER_SECOND = 10;
+    /** The maximum number of frames computed ahead of the one on screen */
+    public static final int FRAME_QUEUE_SIZE = 6;
+
+    /** The time between two frames, in nanoseconds */
+    private static final long FRAME_INTERVAL = 1_000_000_000L / FRAMES_PER_SECOND;
+    /** The frame put in the queue after the last one, to mark the end of the animation */
+    private static final Frame END = new Frame(END_YEAR, null);
+
+    /** The frames computed but not shown yet */
+    private final BlockingQueue<Frame> frames = new ArrayBlockingQueue<>(FRAME_QUEUE_SIZE);
+    /** The year the animation starts at */
+    private final int startYear;
+    /** The type of map animated */
+    private final String mapType;
+    /** If the equator line is drawn on the frames */
+    private final boolean showEquatorLine;
+    /** The year the world was last updated to */
+    private volatile int worldYear;
+    /** The time the next frame is due (in nanoseconds, from the animation timer), or 0 before the first frame */
+    private long nextFrameTime;
+    /** The time the first frame was shown */
+    private long startTime;
+    /** The number of frames shown and dropped */
+    private int shownFrames, droppedFrames;
+
+    /**
+     * A frame of the animation
+     */
+    private static class Frame {
+        /** The year the frame shows */
+        final int year;
+        /** The mipmap pyramid of the frame (see Renderer.buildMipmaps) */
+        final int[][] levels;
+
+        /**
+         * Create a frame
+         * @param year The year the frame shows
+         * @param levels The mipmap pyramid of the frame
+         */
+        Frame(int year, int[][] levels) {
+            this.year = year;
+            this.levels = levels;
+        }
+    }
+
+    /**
+     * Create a player for the timeline
+     * @param startYear The year the world is at (a multiple of YEARS_PER_KEYFRAME)
+     * @param mapType The type of map to animate
+     * @param showEquatorLine If the equator line is drawn on the frames
+     */
+    public TimelinePlayer(int startYear, String mapType, boolean showEquatorLine) {
+        this.startYear = startYear;
+        this.mapType = mapType;
+        this.showEquatorLine = showEquatorLine;
+        this.worldYear = startYear;
+    }
+
+    /**
+     * Start the animation: the frames are computed on a new thread and shown on the javafx application thread
+     * Must be called on the javafx application thread
+     */
+    public void play() {
+        Main.userInterface.startPlayback();
+        Thread producer = new Thread(this::computeFrames);
+        producer.setDaemon(true);
+        producer.start();
+
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (showDueFrame(now)) {
+                    stop();
+                    finish(now);
+                }
+            }
+        }.start();
+    }
+
+    /**
+     * Compute every frame of the animation and put them in the queue, waiting whenever it is full
+     */
+    private void computeFrames() {
+        try {
+            int[] previous = Renderer.renderFrame(mapType, showEquatorLine);
+            for (int year = startYear; year < END_YEAR; year += YEARS_PER_KEYFRAME) {
+                World.updateMapCalculation(1, true, year + YEARS_PER_KEYFRAME);
+                worldYear = year + YEARS_PER_KEYFRAME;
+                int[] next = Renderer.renderFrame(mapType, showEquatorLine);
+                for (int step = 1; step <= YEARS_PER_KEYFRAME; step++) {
+                    int[] frame = step == YEARS_PER_KEYFRAME ? next
+                            : Renderer.interpolateFrames(previous, next, (float) step / YEARS_PER_KEYFRAME);
+                    frames.put(new Frame(year + step, Renderer.buildMipmaps(frame, Constants.MAP_SIZE_X,
+                            Constants.MAP_SIZE_Y, MapView.TILE_SIZE)));
+                }
+                previous = next;
+            }
+            frames.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            endEarly();
+        } catch (RuntimeException e) {
+            endEarly();
+            throw e;
+        }
+    }
+
+    /**
+     * Let the animation timer know there are no more frames after a failure,
+     * dropping the frames that were not shown yet so the end is not stuck behind a full queue
+     */
+    private void endEarly() {
+        frames.clear();
+        frames.offer(END);
+    }
+
+    /**
+     * Show the latest frame that is due, dropping the older ones
+     * @param now The current time (in nanoseconds)
+     * @return If the animation ended
+     */
+    private boolean showDueFrame(long now) {
+        if (nextFrameTime != 0 && now < nextFrameTime) return false;
+        // The number of frames that should have been shown since the last one
+        long due = nextFrameTime == 0 ? 1 : 1 + (now - nextFrameTime) / FRAME_INTERVAL;
+        Frame frame = null;
+        int taken = 0;
+        while (taken < due) {
+            Frame polled = frames.poll();
+            if (polled == null) break;
+            if (polled == END) {
+                if (frame == null) return true;
+                // Show the last frame first, the animation ends on the next call
+                frames.offer(END);
+                break;
+            }
+            if (frame != null) droppedFrames++;
+            frame = polled;
+            taken++;
+        }
+        // If no frame is ready, keep the current one on screen
+        if (frame == null) return false;
+
+        Main.userInterface.showPlaybackFrame(frame.year, frame.levels);
+        if (shownFrames == 0) startTime = now;
+        shownFrames++;
+        // If the queue ran dry, the next frame is due one interval from now rather than catching up
+        nextFrameTime = (taken < due || nextFrameTime == 0) ? now + FRAME_INTERVAL : nextFrameTime + due * FRAME_INTERVAL;
+        return false;
+    }
+
+    /**
+     * Let the user interface know the animation ended, and report the frame rate achieved
+     * @param now The current time (in nanoseconds)
+     */
+    private void finish(long now) {
+        double seconds = (now - startTime) / 1e9;
+        Main.userInterface.stopPlayback(worldYear);
+        Main.userInterface.printToUserTextBox("Played " + shownFrames + " frames in " + String.format("%.1f", seconds)
+                + " seconds (" + String.format("%.1f", seconds > 0 ? shownFrames / seconds : 0) + " fps, "
+                + droppedFrames + " frames dropped)");
+    }
+}
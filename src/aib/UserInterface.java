@@ -1,6 +1,8 @@
 package aib;
 
+import aib.environment.RegionStats;
 import aib.environment.World;
+import aib.environment.WorldSettings;
 import aib.environment.WorldThread;
 import aib.libraries.FastNoise;
 import aib.libraries.ZoomableScrollPane;
@@ -11,6 +13,7 @@ import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.Event;
+import javafx.geometry.Bounds;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Group;
@@ -21,13 +24,15 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
 
+import java.util.BitSet;
 import java.util.Random;
 
 /**
  * UserInterface class, which handles building the application interaction interface.
  */
-public class UserInterface {
+public class UserInterface implements WorldSettings {
     /** Generic slider width */
     public final int SLIDER_WIDTH = 380;
     /** UserInterface container */
@@ -44,30 +49,52 @@ public class UserInterface {
     public Button randomSeed;
     /** Button to generate animals */
     public Button generateAnimals;
+    /** Button to play the timeline as an animation */
+    public Button playButton;
     /** Boolean to determine if the animals should be shown or hidden on the map */
     public boolean showAnimals;
     /** Checkbox to select if animals are shown or hidden */
     public CheckBox showAnimalsCheck;
+    /** Boolean to determine if animals should migrate to a new habitat when theirs becomes uninhabitable */
+    public boolean animalMigration;
+    /** Checkbox to select if animals migrate or not */
+    public CheckBox animalMigrationCheck;
     /** Boolean to determine if the equator line show be displayed or hidden **/
     public boolean showEquatorLine;
     /** CheckBox to show or hide the equator line **/
     public CheckBox showEquatorLineCheck;
+    /** Boolean to determine if greenhouse gas should spread over the map as time passes **/
+    public boolean greenhouseDispersion;
+    /** CheckBox to turn greenhouse gas dispersion on or off **/
+    public CheckBox greenhouseDispersionCheck;
 
     /** Map containers -> ZoomableScrollPane to zoom and scroll */
     public ZoomableScrollPane mapZoomablePane;
     /** VBox nested in ZoomableScrollPane with editable children because scrollPane is non-modifiable */
     public Group mapHolder;
     /** Map, nested in VBox nested in ZoomableScrollPane */
-    public Group map;
+    public MapView map;
+    /** The layer the animals are drawn on, on top of the map */
+    public AnimalLayer animalLayer;
+    /** The rectangle showing the region of the map selected by dragging with shift held */
+    public Rectangle selectionRectangle;
+    /** Label showing the statistics of the selected region */
+    public Label regionStatsLabel;
+    /** The corners of the selected region (where the drag started and where it is now) */
+    private double selectionStartX, selectionStartY, selectionEndX, selectionEndY;
+    /** The type of map, equator line setting and world generation (see World.getGeneration) the map was last drawn with */
+    private String drawnMapType;
+    private boolean drawnEquatorLine;
+    private int drawnGeneration = -1;
 
     /** Information dialog */
     public String dialogText;
     public VBox dialogOverlay;
 
     /** All the settings sliders */
-    public Slider timelineSlider, scaleSlider, octavesSlider, lacunaritySlider, persistenceSlider, offsetXSlider, offsetYSlider;
+    public Slider timelineSlider, scaleSlider, octavesSlider, lacunaritySlider, persistenceSlider, offsetXSlider, offsetYSlider, diffusionSlider;
     /** All the slider value labels */
-    public Label timelineValue, scaleValue, octavesValue, lacunarityValue, persistenceValue, offsetXValue, offsetYValue;
+    public Label timelineValue, scaleValue, octavesValue, lacunarityValue, persistenceValue, offsetXValue, offsetYValue, diffusionValue;
     /** Noise type list **/
     public ComboBox<FastNoise.NoiseType> noiseTypeComboBox;
 
@@ -79,6 +106,8 @@ public class UserInterface {
      * UserInterface constructor, that sets up all the prerequisite initialisations
      */
     public UserInterface() {
+        // The world takes its settings from the controls of the interface
+        World.settings = this;
         // UserInterface container
         menu = new VBox();
         // Map containers
@@ -87,7 +116,15 @@ public class UserInterface {
         mapZoomablePane.setMinHeight(400.0);
         mapZoomablePane.setMinWidth(400.0);
         mapZoomablePane.setPrefSize(1300.0, 1020.0);
-        map = new Group();
+        map = new MapView(Constants.MAP_SIZE_X, Constants.MAP_SIZE_Y);
+        animalLayer = new AnimalLayer();
+        selectionRectangle = new Rectangle();
+        selectionRectangle.setFill(Color.rgb(255, 255, 255, 0.15));
+        selectionRectangle.setStroke(Color.WHITE);
+        selectionRectangle.setMouseTransparent(true);
+        selectionRectangle.setVisible(false);
+        regionStatsLabel = new Label("Shift + drag on the map to select a region");
+        regionStatsLabel.setWrapText(true);
 
         // Information boxes
         messageText = new TextArea("Interact with the map!\n");
@@ -115,8 +152,11 @@ public class UserInterface {
         seedField = new TextField();
         randomSeed = new Button("Random");
         generateAnimals = new Button("Generate Animals");
+        playButton = new Button("Play");
         showAnimalsCheck = new CheckBox();
+        animalMigrationCheck = new CheckBox();
         showEquatorLineCheck = new CheckBox();
+        greenhouseDispersionCheck = new CheckBox();
         initSliders();
         noiseTypeComboBox = new ComboBox<FastNoise.NoiseType>();
 
@@ -143,6 +183,8 @@ public class UserInterface {
         offsetXValue = new Label("" + (int) offsetXSlider.getValue());
         offsetYSlider = new Slider(-5000, 5000, 0);
         offsetYValue = new Label("" + (int) offsetYSlider.getValue());
+        diffusionSlider = new Slider(0, 50, 0);
+        diffusionValue = new Label("" + (int) diffusionSlider.getValue());
     }
 
     /**
@@ -177,6 +219,46 @@ public class UserInterface {
         });
     }
 
+    @Override
+    public int getSeed() {
+        return Integer.parseInt(seedField.getText());
+    }
+
+    @Override
+    public FastNoise.NoiseType getNoiseType() {
+        return noiseTypeComboBox.getValue();
+    }
+
+    @Override
+    public int getDiffusionIterations() {
+        return (int) diffusionSlider.getValue();
+    }
+
+    @Override
+    public boolean isGreenhouseDispersion() {
+        return greenhouseDispersion;
+    }
+
+    @Override
+    public boolean isAnimalMigration() {
+        return animalMigration;
+    }
+
+    @Override
+    public double getYear() {
+        return timelineSlider.getValue();
+    }
+
+    @Override
+    public void printMessage(String text) {
+        printToUserTextBox(text);
+    }
+
+    @Override
+    public void addDialogText(String text) {
+        dialogText += text;
+    }
+
     /**
      * Create and draw a new map with the setting from the menu
      */
@@ -192,6 +274,7 @@ public class UserInterface {
 
         // Hide the show animals checkbox until animals are generated
         showAnimalsCheck.setVisible(false);
+        animalMigrationCheck.setVisible(false);
         generateAnimals.setVisible(true);
 
         // Whenever a new map is created, reset the time slider to its initial position
@@ -220,15 +303,63 @@ public class UserInterface {
      */
     public void drawMap() {
         dismissDialog();
-        // Remove existing map from the container
-        mapHolder.getChildren().remove(map);
 
         // Draw the type of map the user has selected - i.e. terrain, temperature etc.
+        // Only the tiles in the visible region of the map, from the mipmap level matching the zoom, are added to the scene
         String mapType = mapTypeCombo.getValue();
-        map = Renderer.drawPixels(mapType);
+        boolean equatorLine = showEquatorLineCheck.isSelected();
+        BitSet dirtyTiles = World.takeDirtyTiles();
+        // If only the timeline moved, only the tiles where the terrain or temperature colours changed are drawn again
+        // (the greenhouse gas and coast distance maps can change anywhere, so they are always drawn in full)
+        boolean partial = map.getLevels() != null && mapType.equals(drawnMapType) && equatorLine == drawnEquatorLine
+                && World.getGeneration() == drawnGeneration
+                && (mapType.equals("Terrain") || mapType.equals("Temperature") || mapType.equals("Height"));
+        if(partial) {
+            int[][] levels = map.getLevels();
+            int tileColumns = (Constants.MAP_SIZE_X + Constants.MAP_TILE_SIZE - 1) / Constants.MAP_TILE_SIZE;
+            for(int tile = dirtyTiles.nextSetBit(0); tile >= 0; tile = dirtyTiles.nextSetBit(tile + 1)) {
+                int minX = (tile % tileColumns) * Constants.MAP_TILE_SIZE;
+                int minY = (tile / tileColumns) * Constants.MAP_TILE_SIZE;
+                int maxX = Math.min(Constants.MAP_SIZE_X, minX + Constants.MAP_TILE_SIZE);
+                int maxY = Math.min(Constants.MAP_SIZE_Y, minY + Constants.MAP_TILE_SIZE);
+                Renderer.renderRegion(mapType, equatorLine, levels[0], minX, minY, maxX, maxY);
+                Renderer.updateMipmaps(levels, Constants.MAP_SIZE_X, Constants.MAP_SIZE_Y, minX, minY, maxX, maxY);
+                map.refreshRegion(minX, minY, maxX, maxY);
+            }
+        }
+        else {
+            int[] frame = Renderer.renderFrame(mapType, equatorLine);
+            map.setFrame(Renderer.buildMipmaps(frame, Constants.MAP_SIZE_X, Constants.MAP_SIZE_Y, MapView.TILE_SIZE),
+                    mapZoomablePane.getVisibleBounds(), mapHolder.getScaleX());
+            drawnMapType = mapType;
+            drawnEquatorLine = equatorLine;
+            drawnGeneration = World.getGeneration();
+        }
+
+        // The map changed, so the statistics of the selected region may have too
+        if(selectionRectangle.isVisible()) updateRegionSelection();
+
+        // Draw the animals in the world
+        if(showAnimals) Renderer.drawAnimals();
+        else map.getChildren().remove(animalLayer.getCanvas());
+    }
 
+    /**
+     * Set the mouse interactions with the map: clicking a point gives information about it,
+     * and dragging with shift held selects a region
+     */
+    private void addMapHandlers() {
         // When the user clicks any point on the map, provide all the information for that location
         map.addEventHandler(MouseEvent.MOUSE_CLICKED, m -> {
+            // Clicks with shift held select regions instead
+            if(m.isShiftDown()) return;
+
+            // If an animal is drawn where the user clicked, inform the user of its state first
+            if(showAnimals) {
+                int animal = World.getAnimalGrid().findAt(m.getX(), m.getY());
+                if(animal >= 0) Renderer.printAnimalInformation(animal);
+            }
+
             int x = (int) m.getX();
             int y = (int) m.getY();
 
@@ -238,16 +369,55 @@ public class UserInterface {
             printToUserTextBox("Noise height: " + World.pixels[x][y].getNoiseHeight());
             printToUserTextBox("Height in meters: " + Math.round(World.pixels[x][y].getTerrainHeight()));
             printToUserTextBox("Terrain: " + World.pixels[x][y].getTerrainType().getName());
-            printToUserTextBox("Temperature: " + String.format("%.2f", World.pixels[x][y].getTemperature().value) + "\u00B0" + "C");
+            printToUserTextBox("Temperature: " + String.format("%.2f", World.pixels[x][y].getTemperature()) + "\u00B0" + "C");
             printToUserTextBox("Greenhouse Gas Factor: " + World.pixels[x][y].getGreenhouseGasFactor());
 
         });
 
-        // Draw the animals in the world
-        if(showAnimals) Renderer.drawAnimals();
+        // Dragging on the map with shift held selects a region, and shows its statistics as it changes
+        // (consuming the events stops the map from panning at the same time)
+        map.addEventHandler(MouseEvent.MOUSE_PRESSED, m -> {
+            if(!m.isShiftDown()) return;
+            selectionStartX = m.getX();
+            selectionStartY = m.getY();
+            selectionEndX = m.getX();
+            selectionEndY = m.getY();
+            updateRegionSelection();
+            m.consume();
+        });
+        map.addEventHandler(MouseEvent.MOUSE_DRAGGED, m -> {
+            if(!m.isShiftDown()) return;
+            selectionEndX = m.getX();
+            selectionEndY = m.getY();
+            updateRegionSelection();
+            m.consume();
+        });
+    }
 
-        // Add the newly drawn map to the map container
-        mapHolder.getChildren().add(0, map);
+    /**
+     * Show the selected region on the map, and its statistics
+     * The statistics come from the world summed-area tables, so they take the same time for any region size
+     */
+    public void updateRegionSelection() {
+        int minX = (int) Math.max(0, Math.min(selectionStartX, selectionEndX));
+        int minY = (int) Math.max(0, Math.min(selectionStartY, selectionEndY));
+        int maxX = (int) Math.min(Constants.MAP_SIZE_X, Math.max(selectionStartX, selectionEndX) + 1);
+        int maxY = (int) Math.min(Constants.MAP_SIZE_Y, Math.max(selectionStartY, selectionEndY) + 1);
+
+        selectionRectangle.setX(minX);
+        selectionRectangle.setY(minY);
+        selectionRectangle.setWidth(Math.max(0, maxX - minX));
+        selectionRectangle.setHeight(Math.max(0, maxY - minY));
+        selectionRectangle.setVisible(true);
+
+        RegionStats.Region region = World.getRegionStats(minX, minY, maxX, maxY);
+        regionStatsLabel.setText("Region x: " + minX + "-" + (maxX - 1) + " y: " + minY + "-" + (maxY - 1) +
+                " (" + region.getPixelCount() + " pixels)\n" +
+                "Temperature: " + String.format("%.2f", region.getMeanTemperature()) + "\u00B0" + "C" +
+                "   Greenhouse Gas Factor: " + String.format("%.2f", region.getMeanGreenhouseGas()) + "\n" +
+                "Water: " + String.format("%.2f", region.getWaterPercentage()) + "%" +
+                "   Ice: " + String.format("%.2f", region.getIcePercentage()) + "%" +
+                "   Land: " + String.format("%.2f", region.getLandPercentage()) + "%");
     }
 
     /**
@@ -303,7 +473,7 @@ public class UserInterface {
 
         // Dropdown list that allows the user to select which type of map they want to draw
         Label mapTypeLabel = new Label("Map Type:");
-        mapTypeCombo.getItems().addAll("Height", "Temperature", "Terrain", "Greenhouse Gas");
+        mapTypeCombo.getItems().addAll("Height", "Temperature", "Terrain", "Greenhouse Gas", "Coast Distance");
         mapTypeCombo.setValue("Terrain");
         mapTypeCombo.setPrefWidth(SLIDER_WIDTH);
         GridPane.setConstraints(mapTypeLabel, 0, 3);
@@ -326,20 +496,12 @@ public class UserInterface {
                     Main.userInterface.startLoading();
                 });
                 // On the separate thread, create the animals
-                try {
-
-                    Life.generateLife();
-                } catch (IllegalAccessException e) {
-                    System.out.println("Illegal Access Exception in menu when generating animals");
-                    e.printStackTrace();
-                } catch (InstantiationException e) {
-                    System.out.println("Instantiation Exception in menu when generating animals");
-                    e.printStackTrace();
-                }
+                Life.generateLife();
                 // Once animals are created, stop the loading animation and draw the animals on the map
                 Platform.runLater(() -> {
                     Main.userInterface.stopLoading();
                     Main.userInterface.showAnimalsCheck.setVisible(true);
+                    Main.userInterface.animalMigrationCheck.setVisible(true);
                     Main.userInterface.generateAnimals.setVisible(false);
                 });
             })).start();
@@ -358,6 +520,16 @@ public class UserInterface {
         GridPane.setConstraints(showAnimalsCheck, 1, 4);
         importantGrid.getChildren().add(showAnimalsCheck);
 
+        // Animal migration checkbox
+        // allowing the user to decide if animals look for a new habitat when theirs becomes uninhabitable
+        animalMigrationCheck.setSelected(false);
+        animalMigration = animalMigrationCheck.isSelected();
+        animalMigrationCheck.setText("Animal Migration");
+        animalMigrationCheck.setTextFill(Color.WHITE);
+        animalMigrationCheck.selectedProperty().addListener((observable, oldValue, newValue) -> animalMigration = newValue);
+        GridPane.setConstraints(animalMigrationCheck, 1, 5);
+        importantGrid.getChildren().add(animalMigrationCheck);
+
 
         // Time slider, which allows the user to observe changes on the map through time
         Label timelineLabel = new Label("Year: ");
@@ -374,6 +546,25 @@ public class UserInterface {
         GridPane.setConstraints(timelineValue, 2, 6);
         importantGrid.getChildren().add(timelineValue);
 
+        // Button to play the timeline year by year, from the current year to the last one
+        GridPane.setConstraints(playButton, 1, 7);
+        importantGrid.getChildren().add(playButton);
+        playButton.getStyleClass().add("menuButton");
+        playButton.setPrefWidth(SLIDER_WIDTH);
+        playButton.addEventHandler(MouseEvent.MOUSE_CLICKED, event -> {
+            if ((int) World.prevYear >= TimelinePlayer.END_YEAR) {
+                printToUserTextBox("The timeline is already at " + TimelinePlayer.END_YEAR);
+                return;
+            }
+            printToUserTextBox("--------------------------------------------------------");
+            dialogText = "";
+            new TimelinePlayer((int) World.prevYear, mapTypeCombo.getValue(), showEquatorLineCheck.isSelected()).play();
+        });
+
+        // Statistics of the region selected on the map
+        GridPane.setConstraints(regionStatsLabel, 0, 8, 3, 1);
+        importantGrid.getChildren().add(regionStatsLabel);
+
         // Grid with map settings, which is collapsible
         // it is useful but not essential to the user
         GridPane mapSettingsGrid = new GridPane();
@@ -494,6 +685,30 @@ public class UserInterface {
         GridPane.setConstraints(persistenceValue, 2, 8);
         mapSettingsGrid.getChildren().add(persistenceValue);
 
+        // Heat diffusion slider (the number of times heat spreads to neighbouring pixels, 0 => no diffusion)
+        Label diffusionLabel = new Label("Heat Diffusion: ");
+        diffusionSlider.setBlockIncrement(1f);
+        diffusionSlider.setShowTickMarks(true);
+        diffusionSlider.setShowTickLabels(true);
+        diffusionSlider.setMajorTickUnit(10);
+        diffusionSlider.setMinorTickCount(4);
+        GridPane.setConstraints(diffusionLabel, 0, 9);
+        mapSettingsGrid.getChildren().add(diffusionLabel);
+        GridPane.setConstraints(diffusionSlider, 1, 9);
+        mapSettingsGrid.getChildren().add(diffusionSlider);
+        GridPane.setConstraints(diffusionValue, 2, 9);
+        mapSettingsGrid.getChildren().add(diffusionValue);
+
+        // Greenhouse gas dispersion checkbox (applied when the year changes)
+        greenhouseDispersionCheck.setSelected(false);
+        greenhouseDispersion = greenhouseDispersionCheck.isSelected();
+        greenhouseDispersionCheck.setText("Greenhouse gas dispersion");
+        greenhouseDispersionCheck.setTextFill(Color.WHITE);
+        greenhouseDispersionCheck.selectedProperty().addListener((observable, oldValue, newValue) -> greenhouseDispersion = newValue);
+        GridPane.setConstraints(greenhouseDispersionCheck, 1, 10);
+        GridPane.setColumnSpan(greenhouseDispersionCheck, 3);
+        mapSettingsGrid.getChildren().add(greenhouseDispersionCheck);
+
         // Add on change event handlers for all menu settings, so they can auto update
         addHandlers();
 
@@ -561,11 +776,23 @@ public class UserInterface {
         // Application root node, with the menu on the left and the map on the right
         root.getChildren().addAll(finalMenu, mapZoomablePane);
 
+        // When the visible region of the map changes (zooming or panning), add the map tiles and draw the animals that became visible
+        ChangeListener<Object> viewportListener = (observable, oldValue, newValue) -> {
+            Bounds visibleRegion = mapZoomablePane.getVisibleBounds();
+            map.update(visibleRegion, mapHolder.getScaleX());
+            if (showAnimals) animalLayer.update(visibleRegion);
+        };
+        mapZoomablePane.viewportBoundsProperty().addListener(viewportListener);
+        mapZoomablePane.hvalueProperty().addListener(viewportListener);
+        mapZoomablePane.vvalueProperty().addListener(viewportListener);
+        mapHolder.scaleXProperty().addListener(viewportListener);
+
         // Draw map on start
+        addMapHandlers();
         createMap();
 
         // Set the position of the loading animation for when it appears
-        mapHolder.getChildren().addAll(map,progressIndicator);
+        mapHolder.getChildren().addAll(map,selectionRectangle,progressIndicator);
 
         return root;
     }
@@ -631,6 +858,8 @@ public class UserInterface {
         // When the user changes the offset, create a new map with that offset if auto update is on
         intSlidersHandler(offsetXSlider, offsetXValue);
         intSlidersHandler(offsetYSlider, offsetYValue);
+        // When the user changes the heat diffusion, create a new map with that diffusion if auto update is on
+        intSlidersHandler(diffusionSlider, diffusionValue);
     }
 
     /**
@@ -681,6 +910,38 @@ public class UserInterface {
         toggleMenuItems(false);
     }
 
+    /**
+     * Start playing the timeline: nothing that changes the world can be used until it ends
+     */
+    public void startPlayback() {
+        dismissDialog();
+        disableMenuItems();
+        // The frames are rendered for one type of map, so it cannot change during the animation
+        mapTypeCombo.setDisable(true);
+    }
+
+    /**
+     * Show a frame of the timeline animation
+     * @param year The year the frame shows
+     * @param levels The mipmap pyramid of the frame (see Renderer.buildMipmaps)
+     */
+    public void showPlaybackFrame(int year, int[][] levels) {
+        map.replaceFrame(levels);
+        timelineSlider.setValue(year);
+    }
+
+    /**
+     * Stop playing the timeline, and draw the map of the year the world reached
+     * @param year The year the world reached
+     */
+    public void stopPlayback(int year) {
+        World.prevYear = year;
+        timelineSlider.setValue(year);
+        mapTypeCombo.setDisable(false);
+        enableMenuItems();
+        drawMap();
+    }
+
     /**
      * Block all sliders from being modifiable
      */
@@ -697,12 +958,14 @@ public class UserInterface {
         randomSeed.setDisable(flag);
         generateAnimals.setDisable(flag);
         timelineSlider.setDisable(flag);
+        playButton.setDisable(flag);
         scaleSlider.setDisable(flag);
         lacunaritySlider.setDisable(flag);
         octavesSlider.setDisable(flag);
         persistenceSlider.setDisable(flag);
         offsetXSlider.setDisable(flag);
         offsetYSlider.setDisable(flag);
+        diffusionSlider.setDisable(flag);
     }
 
     /**
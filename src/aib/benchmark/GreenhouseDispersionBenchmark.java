@@ -0,0 +1,54 @@
+package aib.benchmark;
+
+import aib.environment.GreenhouseDispersion;
+
+import java.util.Random;
+
+/**
+ * Measures how long greenhouse gas dispersion takes for the widest kernel (in 2100),
+ * on a map the size of the application map and on an 8K map
+ * Run the main method; no JavaFX is needed
+ */
+public class GreenhouseDispersionBenchmark {
+    /** The number of runs done before measuring, so the JIT compiler has optimised the code */
+    private static final int WARMUP_RUNS = 2;
+    /** The number of measured runs */
+    private static final int MEASURED_RUNS = 3;
+
+    /**
+     * Run the benchmark
+     * @param args Not used
+     */
+    public static void main(String[] args) {
+        float sigma = GreenhouseDispersion.kernelWidth(100);
+        run(1300, 1000, sigma);
+        run(7680, 4320, sigma);
+    }
+
+    /**
+     * Measure the dispersion of a random field of a given size
+     * @param width The field width
+     * @param height The field height
+     * @param sigma The kernel width
+     */
+    private static void run(int width, int height, float sigma) {
+        float[] field = new float[width * height];
+        Random random = new Random(1);
+        for (int i = 0; i < field.length; i++) {
+            field[i] = random.nextFloat();
+        }
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            GreenhouseDispersion.disperse(field, width, height, sigma);
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            GreenhouseDispersion.disperse(field, width, height, sigma);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        System.out.println(String.format("%dx%d, sigma %.1f: %.1f ms", width, height, sigma, best / 1e6));
+    }
+}
@@ -0,0 +1,55 @@
+package aib.benchmark;
+
+import aib.environment.HeatDiffusion;
+
+import java.util.Random;
+
+/**
+ * Measures how long the heat diffusion stage takes, on a map the size of the application map and on an 8K map
+ * Run the main method; no JavaFX is needed
+ */
+public class HeatDiffusionBenchmark {
+    /** The number of diffusion iterations in every measured run */
+    private static final int ITERATIONS = 20;
+    /** The number of runs done before measuring, so the JIT compiler has optimised the code */
+    private static final int WARMUP_RUNS = 3;
+    /** The number of measured runs */
+    private static final int MEASURED_RUNS = 5;
+
+    /**
+     * Run the benchmark
+     * @param args Not used
+     */
+    public static void main(String[] args) {
+        run(1300, 1000);
+        run(7680, 4320);
+    }
+
+    /**
+     * Measure the diffusion of a random temperature field of a given size
+     * @param width The field width
+     * @param height The field height
+     */
+    private static void run(int width, int height) {
+        float[] field = new float[width * height];
+        Random random = new Random(1);
+        for (int i = 0; i < field.length; i++) {
+            field[i] = random.nextFloat() * 60 - 20;
+        }
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            HeatDiffusion.diffuse(field, width, height, ITERATIONS, HeatDiffusion.DIFFUSION_RATE);
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            HeatDiffusion.diffuse(field, width, height, ITERATIONS, HeatDiffusion.DIFFUSION_RATE);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        System.out.println(String.format("%dx%d: %d iterations in %.1f ms (%.2f ms per iteration, %.2f ns per pixel)",
+                width, height, ITERATIONS, best / 1e6, best / 1e6 / ITERATIONS,
+                (double) best / ITERATIONS / field.length));
+    }
+}
@@ -0,0 +1,47 @@
+package aib.benchmark;
+
+import aib.sweep.ParameterGrid;
+import aib.sweep.SweepCoordinator;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Measures how a sweep scales with the number of worker processes, from 1 to N (see SweepCoordinator)
+ * Every measurement starts new worker processes, so the times include starting Java and compiling the code
+ * Run the main method, optionally with N (default the number of processors), with JavaFX on the class path:
+ * the workers are started with the class path of this process, and their worlds use the JavaFX colours
+ */
+public class SweepScalingBenchmark {
+    /** The number of worlds of the sweep (one per seed) */
+    private static final int RUNS = 12;
+    /** The year the worlds are updated to */
+    private static final String YEAR = "2050";
+    /** The maximum heap size of every worker process in MB */
+    private static final int PROCESS_MEMORY = 600;
+
+    /**
+     * Run the benchmark
+     * @param args The largest number of worker processes (optional)
+     * @throws IOException If some runs could not be done
+     */
+    public static void main(String[] args) throws IOException {
+        int maxProcesses = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        ParameterGrid grid = new ParameterGrid();
+        grid.add("seed", "1.." + RUNS);
+        grid.add("year", YEAR);
+
+        double single = 0;
+        for (int processes = 1; processes <= maxProcesses; processes++) {
+            SweepCoordinator coordinator = new SweepCoordinator(grid,
+                    Arrays.asList("--seed", "1.." + RUNS, "--year", YEAR, "--format", "csv"), processes, PROCESS_MEMORY, 1,
+                    SweepCoordinator.DEFAULT_RUN_TIMEOUT);
+            long start = System.nanoTime();
+            coordinator.run(row -> { });
+            double seconds = (System.nanoTime() - start) / 1e9;
+            if (processes == 1) single = seconds;
+            System.out.println(String.format("%d processes: %d runs in %.2f s (%.2f runs per second, %.2fx the speed of 1 process)",
+                    processes, RUNS, seconds, RUNS / seconds, single / seconds));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package aib.benchmark;
+
+import aib.Constants;
+import aib.environment.TemperatureTables;
+
+import java.util.Random;
+
+/**
+ * Measures the per pixel cost of the latitude, sea level temperature and height in metres calculations,
+ * computed for every pixel (as the temperature calculation used to) and read from the precomputed tables
+ * Run the main method; no JavaFX is needed
+ */
+public class TemperatureTablesBenchmark {
+    /** The number of runs done before measuring, so the JIT compiler has optimised the code */
+    private static final int WARMUP_RUNS = 5;
+    /** The number of measured runs */
+    private static final int MEASURED_RUNS = 10;
+    /** The sea level used for the height calculation */
+    private static final float SEA_LEVEL = Constants.BASE_SEA_LEVEL;
+
+    /** The sum of all results, printed so the calculations are not optimised away */
+    private static double sink;
+
+    /**
+     * Run the benchmark
+     * @param args Not used
+     */
+    public static void main(String[] args) {
+        int width = Constants.MAP_SIZE_X;
+        int height = Constants.MAP_SIZE_Y;
+        float[][] noiseMap = new float[width][height];
+        Random random = new Random(1);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                noiseMap[x][y] = random.nextFloat();
+            }
+        }
+        TemperatureTables.setSeaLevel(SEA_LEVEL);
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            sink += perPixel(noiseMap, width, height);
+            sink += tables(noiseMap, width, height);
+        }
+
+        long bestPerPixel = Long.MAX_VALUE, bestTables = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            sink += perPixel(noiseMap, width, height);
+            bestPerPixel = Math.min(bestPerPixel, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            sink += tables(noiseMap, width, height);
+            bestTables = Math.min(bestTables, System.nanoTime() - start);
+        }
+
+        int pixels = width * height;
+        System.out.println(String.format("Computed per pixel: %.1f ms (%.2f ns per pixel)",
+                bestPerPixel / 1e6, (double) bestPerPixel / pixels));
+        System.out.println(String.format("Precomputed tables: %.1f ms (%.2f ns per pixel)",
+                bestTables / 1e6, (double) bestTables / pixels));
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    /**
+     * Compute the latitude, sea level temperature and height in metres of every pixel, the way the
+     * temperature calculation did before the tables
+     * @param noiseMap The noise heights
+     * @param width The map width
+     * @param height The map height
+     * @return The sum of the results
+     */
+    private static double perPixel(float[][] noiseMap, int width, int height) {
+        double sum = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int latitude = -(y - height/2);
+                float latitudeDegrees = latitude/(height/2/90f);
+                float latitudeTemperature = 7.5f*(float)Math.cos((float)latitude/160) +12.5f;
+
+                float noiseHeight = noiseMap[x][y];
+                float terrHeight;
+                if (noiseHeight >= SEA_LEVEL) {
+                    float rmax = 1f;
+                    if (SEA_LEVEL >= rmax) rmax = SEA_LEVEL + 0.01f;
+                    terrHeight = scaleToRange(SEA_LEVEL, rmax, 0f, Constants.MAX_TERRAIN_HEIGHT, noiseHeight);
+                } else
+                    terrHeight = scaleToRange(0, SEA_LEVEL, Constants.MIN_TERRAIN_HEIGHT, 0f, noiseHeight);
+
+                sum += latitudeDegrees + latitudeTemperature - 0.00649f * Math.abs(terrHeight);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Get the same values from the precomputed tables
+     * @param noiseMap The noise heights
+     * @param width The map width
+     * @param height The map height
+     * @return The sum of the results
+     */
+    private static double tables(float[][] noiseMap, int width, int height) {
+        double sum = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                float terrHeight = TemperatureTables.heightInMetres(noiseMap[x][y]);
+                sum += TemperatureTables.getLatitude(y) + TemperatureTables.getLatitudeTemperature(y)
+                        - 0.00649f * Math.abs(terrHeight);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * The same as Renderer.scaleToRange, copied so the benchmark does not need JavaFX
+     * @param rmin Current range minimum value
+     * @param rmax Current range maximum value
+     * @param tmin Target range minimum value
+     * @param tmax Target range maximum value
+     * @param m The value to scale
+     * @return The scaled value
+     */
+    private static float scaleToRange(float rmin, float rmax, float tmin, float tmax, float m) {
+        return ((m - rmin) / (rmax - rmin)) * (tmax - tmin) + tmin;
+    }
+}
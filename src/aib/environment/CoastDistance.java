@@ -0,0 +1,198 @@
+package aib.environment;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The exact (Euclidean) distance from every pixel to the coast: for land pixels the distance to the nearest water
+ * pixel, and for water pixels the distance to the nearest land pixel.
+ * It is computed with the Felzenszwalb-Huttenlocher distance transform, in two passes that take linear time:
+ * first the horizontal distance to the nearest pixel of the other kind is found along every row, then those are
+ * combined along every column by taking the lower envelope of parabolas. Rows, and then columns, are computed in parallel.
+ * When the coastline changes, only the rows that changed are scanned again, and only the columns
+ * whose horizontal distances changed are combined again.
+ */
+public class CoastDistance {
+    /** The width of the map */
+    private final int width;
+    /** The height of the map */
+    private final int height;
+    /** A distance larger than any distance on the map, used when a row has no pixels of the other kind */
+    private final int far;
+    /** Which pixels are water, row by row (index y * width + x) */
+    private final boolean[] water;
+    /** For land pixels, the horizontal distance to the nearest water pixel in the same row */
+    private final int[] rowDistanceToWater;
+    /** For water pixels, the horizontal distance to the nearest land pixel in the same row */
+    private final int[] rowDistanceToLand;
+    /** The distance from every pixel to the coast */
+    private final float[] distance;
+    /** The rows that changed since the last update */
+    private final boolean[] dirtyRows;
+    /** The columns whose horizontal distances changed and must be combined again */
+    private final boolean[] dirtyColumns;
+    /** If any row changed since the last update */
+    private boolean dirty;
+
+    /**
+     * Create the distance field for a map, with every pixel being land
+     * @param width The width of the map
+     * @param height The height of the map
+     */
+    public CoastDistance(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.far = width + height;
+        this.water = new boolean[width * height];
+        this.rowDistanceToWater = new int[width * height];
+        this.rowDistanceToLand = new int[width * height];
+        this.distance = new float[width * height];
+        this.dirtyRows = new boolean[height];
+        this.dirtyColumns = new boolean[width];
+        reset();
+    }
+
+    /**
+     * Make every pixel land again, so the next update computes the whole field
+     */
+    public void reset() {
+        Arrays.fill(water, false);
+        Arrays.fill(dirtyRows, true);
+        dirty = true;
+    }
+
+    /**
+     * Set whether a pixel is water; the distances are only recomputed on the next update
+     * @param pixel The pixel index (y * width + x)
+     * @param isWater If the pixel is water
+     */
+    public void setWater(int pixel, boolean isWater) {
+        if (water[pixel] == isWater) return;
+        water[pixel] = isWater;
+        dirtyRows[pixel / width] = true;
+        dirty = true;
+    }
+
+    /**
+     * Recompute the distances affected by the pixels that changed since the last update
+     */
+    public void update() {
+        if (!dirty) return;
+
+        // Scan the changed rows again, remembering which columns their horizontal distances changed in
+        IntStream.range(0, height).parallel().filter(y -> dirtyRows[y]).forEach(this::scanRow);
+        // Then combine the changed columns again
+        IntStream.range(0, width).parallel().filter(x -> dirtyColumns[x]).forEach(this::combineColumn);
+
+        Arrays.fill(dirtyRows, false);
+        Arrays.fill(dirtyColumns, false);
+        dirty = false;
+    }
+
+    /**
+     * Get the distance from a pixel to the coast (as of the last update)
+     * @param pixel The pixel index (y * width + x)
+     * @return The distance, in pixels
+     */
+    public float getDistance(int pixel) {
+        return distance[pixel];
+    }
+
+    /**
+     * Find the horizontal distance from every pixel in a row to the nearest pixel of the other kind in that row,
+     * with one sweep from the left and one from the right
+     * @param y The row
+     */
+    private void scanRow(int y) {
+        int row = y * width;
+        int[] toWater = new int[width];
+        int[] toLand = new int[width];
+
+        int lastWater = -far, lastLand = -far;
+        for (int x = 0; x < width; x++) {
+            if (water[row + x]) lastWater = x;
+            else lastLand = x;
+            toWater[x] = water[row + x] ? 0 : x - lastWater;
+            toLand[x] = water[row + x] ? x - lastLand : 0;
+        }
+        lastWater = 2 * far;
+        lastLand = 2 * far;
+        for (int x = width - 1; x >= 0; x--) {
+            if (water[row + x]) lastWater = x;
+            else lastLand = x;
+            toWater[x] = Math.min(far, Math.min(toWater[x], lastWater - x));
+            toLand[x] = Math.min(far, Math.min(toLand[x], lastLand - x));
+        }
+
+        for (int x = 0; x < width; x++) {
+            if (rowDistanceToWater[row + x] != toWater[x] || rowDistanceToLand[row + x] != toLand[x]) {
+                rowDistanceToWater[row + x] = toWater[x];
+                rowDistanceToLand[row + x] = toLand[x];
+                // Several rows may mark the same column at the same time, which is harmless
+                dirtyColumns[x] = true;
+            }
+        }
+    }
+
+    /**
+     * Combine the horizontal distances in a column into the exact distances to the coast
+     * @param x The column
+     */
+    private void combineColumn(int x) {
+        float[] squaredToWater = new float[height];
+        float[] squaredToLand = new float[height];
+        for (int y = 0; y < height; y++) {
+            int h = rowDistanceToWater[y * width + x];
+            squaredToWater[y] = (float) h * h;
+            h = rowDistanceToLand[y * width + x];
+            squaredToLand[y] = (float) h * h;
+        }
+
+        float[] envelopeToWater = lowerEnvelope(squaredToWater);
+        float[] envelopeToLand = lowerEnvelope(squaredToLand);
+        for (int y = 0; y < height; y++) {
+            int pixel = y * width + x;
+            distance[pixel] = (float) Math.sqrt(water[pixel] ? envelopeToLand[y] : envelopeToWater[y]);
+        }
+    }
+
+    /**
+     * The 1D squared distance transform of Felzenszwalb and Huttenlocher:
+     * for every position q, the minimum over all positions p of (q - p)^2 + f(p)
+     * @param f The squared horizontal distances along a column
+     * @return The squared distances
+     */
+    private static float[] lowerEnvelope(float[] f) {
+        int n = f.length;
+        float[] d = new float[n];
+        // The positions of the parabolas in the lower envelope, and the boundaries between them
+        int[] v = new int[n];
+        float[] z = new float[n + 1];
+
+        int k = 0;
+        v[0] = 0;
+        z[0] = Float.NEGATIVE_INFINITY;
+        z[1] = Float.POSITIVE_INFINITY;
+        for (int q = 1; q < n; q++) {
+            // Where the parabola at q intersects the last parabola of the envelope
+            float s = ((f[q] + (float) q * q) - (f[v[k]] + (float) v[k] * v[k])) / (2 * q - 2 * v[k]);
+            // Drop the parabolas the new one hides completely
+            while (s <= z[k]) {
+                k--;
+                s = ((f[q] + (float) q * q) - (f[v[k]] + (float) v[k] * v[k])) / (2 * q - 2 * v[k]);
+            }
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = Float.POSITIVE_INFINITY;
+        }
+
+        k = 0;
+        for (int q = 0; q < n; q++) {
+            while (z[k + 1] < q) k++;
+            float offset = q - v[k];
+            d[q] = offset * offset + f[v[k]];
+        }
+        return d;
+    }
+}
@@ -0,0 +1,272 @@
+package aib.environment;
+
+import java.util.Arrays;
+
+/**
+ * A fast Fourier transform over float arrays, for a given length.
+ * Lengths must be products of 2, 3 and 5 (see nextSmoothSize), so sequences can be padded much less than to a power
+ * of 2. The real and imaginary parts of complex values are kept in separate arrays.
+ * The result of the inverse transform still needs to be divided by the length.
+ */
+public class FFT {
+    /** cos(2 * pi / 5), cos(4 * pi / 5), sin(2 * pi / 5), sin(4 * pi / 5) and sin(2 * pi / 3), for the butterflies */
+    private static final float C5_1 = (float) Math.cos(2 * Math.PI / 5), C5_2 = (float) Math.cos(4 * Math.PI / 5),
+            S5_1 = (float) Math.sin(2 * Math.PI / 5), S5_2 = (float) Math.sin(4 * Math.PI / 5),
+            S3 = (float) Math.sin(2 * Math.PI / 3);
+
+    /** The transform length */
+    private final int n;
+    /** The radix of every pass of the transform (4, 2, 3 or 5), whose product is the length */
+    private final int[] radices;
+    /** cos(2 * pi * k / n) and sin(2 * pi * k / n) for k from 0 to n - 1 (the twiddle factors) */
+    private final float[] cos, sin;
+
+    /**
+     * Prepare the transforms of a length
+     * @param n The transform length (a product of 2, 3 and 5)
+     */
+    public FFT(int n) {
+        if (!isSmooth(n)) throw new IllegalArgumentException("The length " + n + " is not a product of 2, 3 and 5");
+        this.n = n;
+        this.radices = radices(n);
+
+        this.cos = new float[n];
+        this.sin = new float[n];
+        for (int k = 0; k < n; k++) {
+            cos[k] = (float) Math.cos(2 * Math.PI * k / n);
+            sin[k] = (float) Math.sin(2 * Math.PI * k / n);
+        }
+    }
+
+    /**
+     * Get the transform length
+     * @return The length
+     */
+    public int getLength() {
+        return n;
+    }
+
+    /**
+     * Transform sequences of complex values in place, several at a time (Stockham autosort, so no reordering pass
+     * is needed: every pass reads one pair of arrays and writes the other, in order)
+     * The sequences are interleaved, value i of sequence l at index i * count + l, so every pass does the same
+     * operations on neighbouring values, and the arrays are read and written in long runs rather than a value at a time
+     * @param re The real parts, of the transform length times the number of sequences
+     * @param im The imaginary parts
+     * @param workRe Space for the real parts between passes, of the same length
+     * @param workIm Space for the imaginary parts between passes, of the same length
+     * @param count The number of sequences
+     * @param inverse If the inverse transform is done (whose result still needs to be divided by the length)
+     */
+    public void transform(float[] re, float[] im, float[] workRe, float[] workIm, int count, boolean inverse) {
+        // The sign of the imaginary part of the roots of unity
+        float sign = inverse ? 1 : -1;
+        float[] xr = re, xi = im, yr = workRe, yi = workIm;
+        // Every pass splits the sequences of the previous one (of the given length, s of them interleaved)
+        // into radix shorter ones
+        int length = n, s = count;
+        for (int radix : radices) {
+            int m = length / radix;
+            // The twiddle factors of a pass only depend on the length of the sequences, not on their number
+            int t = s / count;
+            switch (radix) {
+                case 2: pass2(xr, xi, yr, yi, m, s, t, sign); break;
+                case 3: pass3(xr, xi, yr, yi, m, s, t, sign); break;
+                case 4: pass4(xr, xi, yr, yi, m, s, t, sign); break;
+                default: pass5(xr, xi, yr, yi, m, s, t, sign); break;
+            }
+            float[] swap = xr; xr = yr; yr = swap;
+            swap = xi; xi = yi; yi = swap;
+            length = m;
+            s *= radix;
+        }
+        if (xr != re) {
+            System.arraycopy(xr, 0, re, 0, n * count);
+            System.arraycopy(xi, 0, im, 0, n * count);
+        }
+    }
+
+    /**
+     * Do a pass of radix 2
+     * @param xr The real parts read
+     * @param xi The imaginary parts read
+     * @param yr The real parts written
+     * @param yi The imaginary parts written
+     * @param m The length of the sequences written
+     * @param s The number of interleaved sequences read
+     * @param t The step in the twiddle factor tables
+     * @param sign The sign of the imaginary part of the roots of unity
+     */
+    private void pass2(float[] xr, float[] xi, float[] yr, float[] yi, int m, int s, int t, float sign) {
+        for (int p = 0; p < m; p++) {
+            float w1r = cos[t * p], w1i = sign * sin[t * p];
+            for (int q = 0; q < s; q++) {
+                int a = q + s * p, b = a + s * m;
+                float dr = xr[a] - xr[b], di = xi[a] - xi[b];
+                int out = q + s * 2 * p;
+                yr[out] = xr[a] + xr[b];
+                yi[out] = xi[a] + xi[b];
+                yr[out + s] = dr * w1r - di * w1i;
+                yi[out + s] = dr * w1i + di * w1r;
+            }
+        }
+    }
+
+    /**
+     * Do a pass of radix 3
+     * @param xr The real parts read
+     * @param xi The imaginary parts read
+     * @param yr The real parts written
+     * @param yi The imaginary parts written
+     * @param m The length of the sequences written
+     * @param s The number of interleaved sequences read
+     * @param t The step in the twiddle factor tables
+     * @param sign The sign of the imaginary part of the roots of unity
+     */
+    private void pass3(float[] xr, float[] xi, float[] yr, float[] yi, int m, int s, int t, float sign) {
+        float s3 = sign * S3;
+        for (int p = 0; p < m; p++) {
+            float w1r = cos[t * p], w1i = sign * sin[t * p];
+            float w2r = cos[2 * t * p], w2i = sign * sin[2 * t * p];
+            for (int q = 0; q < s; q++) {
+                int a0 = q + s * p, a1 = a0 + s * m, a2 = a1 + s * m;
+                float tr = xr[a1] + xr[a2], ti = xi[a1] + xi[a2];
+                float cr = xr[a0] - 0.5f * tr, ci = xi[a0] - 0.5f * ti;
+                // i * sin(2 * pi / 3) times the difference
+                float er = -s3 * (xi[a1] - xi[a2]), ei = s3 * (xr[a1] - xr[a2]);
+                int out = q + s * 3 * p;
+                yr[out] = xr[a0] + tr;
+                yi[out] = xi[a0] + ti;
+                twiddle(yr, yi, out + s, cr + er, ci + ei, w1r, w1i);
+                twiddle(yr, yi, out + 2 * s, cr - er, ci - ei, w2r, w2i);
+            }
+        }
+    }
+
+    /**
+     * Do a pass of radix 4
+     * @param xr The real parts read
+     * @param xi The imaginary parts read
+     * @param yr The real parts written
+     * @param yi The imaginary parts written
+     * @param m The length of the sequences written
+     * @param s The number of interleaved sequences read
+     * @param t The step in the twiddle factor tables
+     * @param sign The sign of the imaginary part of the roots of unity
+     */
+    private void pass4(float[] xr, float[] xi, float[] yr, float[] yi, int m, int s, int t, float sign) {
+        for (int p = 0; p < m; p++) {
+            float w1r = cos[t * p], w1i = sign * sin[t * p];
+            float w2r = cos[2 * t * p], w2i = sign * sin[2 * t * p];
+            float w3r = cos[3 * t * p], w3i = sign * sin[3 * t * p];
+            for (int q = 0; q < s; q++) {
+                int a0 = q + s * p, a1 = a0 + s * m, a2 = a1 + s * m, a3 = a2 + s * m;
+                float sr = xr[a0] + xr[a2], si = xi[a0] + xi[a2];
+                float dr = xr[a0] - xr[a2], di = xi[a0] - xi[a2];
+                float tr = xr[a1] + xr[a3], ti = xi[a1] + xi[a3];
+                // i * sign times the difference of the odd values
+                float ur = -sign * (xi[a1] - xi[a3]), ui = sign * (xr[a1] - xr[a3]);
+                int out = q + s * 4 * p;
+                yr[out] = sr + tr;
+                yi[out] = si + ti;
+                twiddle(yr, yi, out + s, dr + ur, di + ui, w1r, w1i);
+                twiddle(yr, yi, out + 2 * s, sr - tr, si - ti, w2r, w2i);
+                twiddle(yr, yi, out + 3 * s, dr - ur, di - ui, w3r, w3i);
+            }
+        }
+    }
+
+    /**
+     * Do a pass of radix 5
+     * @param xr The real parts read
+     * @param xi The imaginary parts read
+     * @param yr The real parts written
+     * @param yi The imaginary parts written
+     * @param m The length of the sequences written
+     * @param s The number of interleaved sequences read
+     * @param t The step in the twiddle factor tables
+     * @param sign The sign of the imaginary part of the roots of unity
+     */
+    private void pass5(float[] xr, float[] xi, float[] yr, float[] yi, int m, int s, int t, float sign) {
+        float s1 = sign * S5_1, s2 = sign * S5_2;
+        for (int p = 0; p < m; p++) {
+            float w1r = cos[t * p], w1i = sign * sin[t * p];
+            float w2r = cos[2 * t * p], w2i = sign * sin[2 * t * p];
+            float w3r = cos[3 * t * p], w3i = sign * sin[3 * t * p];
+            float w4r = cos[4 * t * p], w4i = sign * sin[4 * t * p];
+            for (int q = 0; q < s; q++) {
+                int a0 = q + s * p, a1 = a0 + s * m, a2 = a1 + s * m, a3 = a2 + s * m, a4 = a3 + s * m;
+                float t1r = xr[a1] + xr[a4], t1i = xi[a1] + xi[a4], d1r = xr[a1] - xr[a4], d1i = xi[a1] - xi[a4];
+                float t2r = xr[a2] + xr[a3], t2i = xi[a2] + xi[a3], d2r = xr[a2] - xr[a3], d2i = xi[a2] - xi[a3];
+                float b1r = xr[a0] + C5_1 * t1r + C5_2 * t2r, b1i = xi[a0] + C5_1 * t1i + C5_2 * t2i;
+                float b2r = xr[a0] + C5_2 * t1r + C5_1 * t2r, b2i = xi[a0] + C5_2 * t1i + C5_1 * t2i;
+                // i times the sines times the differences
+                float e1r = -(s1 * d1i + s2 * d2i), e1i = s1 * d1r + s2 * d2r;
+                float e2r = -(s2 * d1i - s1 * d2i), e2i = s2 * d1r - s1 * d2r;
+                int out = q + s * 5 * p;
+                yr[out] = xr[a0] + t1r + t2r;
+                yi[out] = xi[a0] + t1i + t2i;
+                twiddle(yr, yi, out + s, b1r + e1r, b1i + e1i, w1r, w1i);
+                twiddle(yr, yi, out + 2 * s, b2r + e2r, b2i + e2i, w2r, w2i);
+                twiddle(yr, yi, out + 3 * s, b2r - e2r, b2i - e2i, w3r, w3i);
+                twiddle(yr, yi, out + 4 * s, b1r - e1r, b1i - e1i, w4r, w4i);
+            }
+        }
+    }
+
+    /**
+     * Write a value multiplied by a twiddle factor
+     * @param yr The real parts written
+     * @param yi The imaginary parts written
+     * @param index The index written
+     * @param r The real part of the value
+     * @param i The imaginary part of the value
+     * @param wr The real part of the twiddle factor
+     * @param wi The imaginary part of the twiddle factor
+     */
+    private static void twiddle(float[] yr, float[] yi, int index, float r, float i, float wr, float wi) {
+        yr[index] = r * wr - i * wi;
+        yi[index] = r * wi + i * wr;
+    }
+
+    /**
+     * Check if a length is a product of 2, 3 and 5
+     * @param value The length
+     * @return If it is
+     */
+    public static boolean isSmooth(int value) {
+        if (value < 1) return false;
+        for (int radix : new int[] {2, 3, 5}) {
+            while (value % radix == 0) value /= radix;
+        }
+        return value == 1;
+    }
+
+    /**
+     * Split a length into the radices of the passes of its transform: as many passes of radix 4 as possible, which
+     * take about as long as one pass of radix 2 for twice the work
+     * @param n The length (a product of 2, 3 and 5)
+     * @return The radices
+     */
+    private static int[] radices(int n) {
+        int passes = 0;
+        int[] factors = new int[32];
+        int rest = n;
+        for (int radix : new int[] {4, 2, 3, 5}) {
+            while (rest % radix == 0) { factors[passes++] = radix; rest /= radix; }
+        }
+        return Arrays.copyOf(factors, passes);
+    }
+
+    /**
+     * Get the smallest product of 2, 3 and 5 that is at least a given value
+     * (the next one is never more than a few percent larger, where the next power of 2 can be twice as large)
+     * @param value The value
+     * @return The length
+     */
+    public static int nextSmoothSize(int value) {
+        int size = Math.max(1, value);
+        while (!isSmooth(size)) size++;
+        return size;
+    }
+}
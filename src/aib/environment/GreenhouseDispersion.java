@@ -0,0 +1,322 @@
+package aib.environment;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Spreads greenhouse gas over the map as time passes, by blurring the greenhouse gas field with a Gaussian kernel
+ * that gets wider the more years have passed.
+ * The blur is computed in the frequency domain (with FFT), where it is a simple multiplication,
+ * so it takes the same time however wide the kernel is.
+ * A 2D Gaussian is the product of a horizontal and a vertical one, so the field is blurred with 1D transforms:
+ * every row is transformed, and only the frequencies the kernel lets through are kept (a few hundred for a wide
+ * kernel), blurred along the columns and transformed back along the rows.
+ * Because the field and the kernel are real, two rows share one complex transform, one as the real part and the
+ * other as the imaginary part. Blocks of rows and groups of frequencies are transformed together and in parallel.
+ * The sequences are mirrored far enough past the edges for the kernel to fall below 1e-9, and then up to the next
+ * product of 2, 3 and 5 (see FFT.nextSmoothSize).
+ */
+public class GreenhouseDispersion {
+    /** How much the width (standard deviation, in pixels) of the dispersion kernel grows every year */
+    public static final float SPREAD_PER_YEAR = 0.5f;
+    /** The number of sequences transformed together (see FFT.transform): two rows, or a frequency, in each */
+    private static final int LANES = 16;
+
+    /**
+     * Get the width of the dispersion kernel after a number of years
+     * @param years The number of years passed
+     * @return The standard deviation of the kernel (in pixels)
+     */
+    public static float kernelWidth(double years) {
+        return (float) Math.max(0, years * SPREAD_PER_YEAR);
+    }
+
+    /**
+     * Blur a field with a Gaussian kernel
+     * The field is mirrored at its edges, so gas does not leak out of the map
+     * @param field The values, row by row (index y * width + x); it is not modified
+     * @param width The field width
+     * @param height The field height
+     * @param sigma The standard deviation of the Gaussian kernel (in pixels)
+     * @return The blurred field, with the same layout as the input
+     */
+    public static float[] disperse(float[] field, int width, int height, float sigma) {
+        if (sigma <= 0) return field.clone();
+        float[] dispersed = new float[field.length];
+
+        Blur rowBlur = new Blur(width, sigma);
+        Blur columnBlur = new Blur(height, sigma);
+        // The frequencies of every row the kernel lets through, in groups of LANES frequencies
+        // (index [frequency / LANES][y * LANES + frequency % LANES]), so the columns of a group are blurred together
+        // as they are, rather than read a value every row of the field
+        float[][] spectrumRe = new float[(rowBlur.frequencies() + LANES - 1) / LANES][];
+        float[][] spectrumIm = new float[spectrumRe.length][];
+        for (int group = 0; group < spectrumRe.length; group++) {
+            spectrumRe[group] = new float[columnBlur.length() * LANES];
+            spectrumIm[group] = new float[columnBlur.length() * LANES];
+        }
+
+        // The space for the transforms of a thread, used again by every block of rows it transforms
+        ThreadLocal<float[][]> rowBuffers = ThreadLocal.withInitial(rowBlur::buffers);
+
+        // Transform every row and keep the frequencies, two rows in every sequence of a transform
+        int blocks = (height + 2 * LANES - 1) / (2 * LANES);
+        IntStream.range(0, blocks).parallel().forEach(block -> {
+            float[][] buffers = rowBuffers.get();
+            rowBlur.load(field, block * 2 * LANES, height, buffers);
+            rowBlur.transform(buffers, false);
+            rowBlur.storeFrequencies(buffers, block * 2 * LANES, height, spectrumRe, spectrumIm);
+        });
+
+        // Blur the frequencies along the columns (a frequency is complex, so it takes a whole sequence)
+        IntStream.range(0, spectrumRe.length).parallel().forEach(group -> {
+            float[][] buffers = columnBlur.buffers();
+            buffers[0] = spectrumRe[group];
+            buffers[1] = spectrumIm[group];
+            columnBlur.pad(buffers);
+            columnBlur.transform(buffers, false);
+            columnBlur.filter(buffers);
+            columnBlur.transform(buffers, true);
+        });
+
+        // Then transform every row back from its blurred frequencies
+        IntStream.range(0, blocks).parallel().forEach(block -> {
+            float[][] buffers = rowBuffers.get();
+            rowBlur.loadFrequencies(buffers, block * 2 * LANES, height, spectrumRe, spectrumIm);
+            rowBlur.transform(buffers, true);
+            rowBlur.store(buffers, block * 2 * LANES, height, dispersed);
+        });
+
+        return dispersed;
+    }
+
+    /**
+     * A 1D Gaussian blur of sequences of a given length, computed with FFT, LANES complex sequences at a time
+     * (interleaved, value i of sequence l at index i * LANES + l, see FFT.transform)
+     * Two real sequences are blurred together as the real and imaginary parts of one complex sequence
+     */
+    private static class Blur {
+        /** The number of standard deviations of mirrored values padded on both sides of a sequence
+         * (the part of the kernel further away is less than 1e-9 of it) */
+        private static final int PADDING = 6;
+        /** The gain below which a frequency is left out, far below the precision of a float */
+        private static final double SMALLEST_GAIN = 1e-12;
+
+        /** The length of the blurred sequences */
+        private final int size;
+        /** The transform, of the padded length (a product of 2, 3 and 5) */
+        private final FFT fft;
+        /** The gain of the Gaussian kernel for every frequency, divided by the transform length */
+        private final float[] gain;
+        /** The number of frequencies from 0 whose gain is not negligible */
+        private final int frequencies;
+
+        /**
+         * Prepare a blur
+         * @param size The length of the blurred sequences
+         * @param sigma The standard deviation of the Gaussian kernel
+         */
+        Blur(int size, float sigma) {
+            this.size = size;
+            // Leave room for PADDING standard deviations of mirrored values on both sides,
+            // so the (circular) FFT convolution does not mix the two ends of the sequence
+            this.fft = new FFT(FFT.nextSmoothSize(size + 2 * (int) Math.ceil(PADDING * sigma)));
+            int length = fft.getLength();
+
+            // The Fourier transform of a Gaussian is a Gaussian, so the kernel is applied directly to the frequencies
+            this.gain = new float[length];
+            double factor = -2 * Math.PI * Math.PI * sigma * sigma;
+            int frequencies = 0;
+            for (int k = 0; k < length; k++) {
+                double f = (double) ((k <= length / 2) ? k : k - length) / length;
+                double g = Math.exp(factor * f * f);
+                gain[k] = (float) (g / length);
+                if (k <= length / 2 && g >= SMALLEST_GAIN) frequencies = k + 1;
+            }
+            this.frequencies = frequencies;
+        }
+
+        /**
+         * Get the transform length
+         * @return The padded length
+         */
+        int length() {
+            return fft.getLength();
+        }
+
+        /**
+         * Get the number of frequencies the kernel lets through
+         * @return The frequencies from 0 whose gain is not negligible (the gain of the others is 0 in a float)
+         */
+        int frequencies() {
+            return frequencies;
+        }
+
+        /**
+         * Make room for a transform (the buffers can be used for any number of transforms)
+         * @return The real and imaginary parts of the sequences, and the space the transform needs between passes
+         */
+        float[][] buffers() {
+            return new float[4][fft.getLength() * LANES];
+        }
+
+        /**
+         * Load rows of a field (two in every sequence) and mirror them into their padding
+         * @param field The field, row by row
+         * @param first The first row
+         * @param rows The number of rows of the field
+         * @param buffers The buffers (see buffers)
+         */
+        void load(float[] field, int first, int rows, float[][] buffers) {
+            for (int lane = 0; lane < LANES; lane++) {
+                int row = first + 2 * lane;
+                if (row >= rows) break;
+                int rowRe = row * size, rowIm = Math.min(row + 1, rows - 1) * size;
+                float[] re = buffers[0], im = buffers[1];
+                for (int i = 0; i < size; i++) {
+                    re[i * LANES + lane] = field[rowRe + i];
+                    im[i * LANES + lane] = field[rowIm + i];
+                }
+            }
+            pad(buffers);
+        }
+
+        /**
+         * Store rows of a field transformed back (see load)
+         * @param buffers The buffers, with the rows in the first values of the sequences
+         * @param first The first row
+         * @param rows The number of rows of the field
+         * @param field The field, row by row
+         */
+        void store(float[][] buffers, int first, int rows, float[] field) {
+            for (int lane = 0; lane < LANES; lane++) {
+                int row = first + 2 * lane;
+                if (row >= rows) break;
+                float[] re = buffers[0], im = buffers[1];
+                for (int i = 0; i < size; i++) {
+                    field[row * size + i] = re[i * LANES + lane];
+                }
+                if (row + 1 < rows) {
+                    for (int i = 0; i < size; i++) {
+                        field[(row + 1) * size + i] = im[i * LANES + lane];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Mirror the sequences into their padding
+         * @param buffers The buffers, with the sequences in their first values
+         */
+        void pad(float[][] buffers) {
+            float[] re = buffers[0], im = buffers[1];
+            for (int i = size; i < fft.getLength(); i++) {
+                int source = mirror(i) * LANES;
+                for (int lane = 0; lane < LANES; lane++) {
+                    re[i * LANES + lane] = re[source + lane];
+                    im[i * LANES + lane] = im[source + lane];
+                }
+            }
+        }
+
+        /**
+         * Transform the sequences
+         * @param buffers The buffers (see buffers)
+         * @param inverse If the inverse transform is done (the kernel already divided the frequencies by the length)
+         */
+        void transform(float[][] buffers, boolean inverse) {
+            fft.transform(buffers[0], buffers[1], buffers[2], buffers[3], LANES, inverse);
+        }
+
+        /**
+         * Apply the kernel to the frequencies of the sequences
+         * @param buffers The buffers, with the frequencies
+         */
+        void filter(float[][] buffers) {
+            float[] re = buffers[0], im = buffers[1];
+            for (int k = 0; k < fft.getLength(); k++) {
+                for (int lane = 0; lane < LANES; lane++) {
+                    re[k * LANES + lane] *= gain[k];
+                    im[k * LANES + lane] *= gain[k];
+                }
+            }
+        }
+
+        /**
+         * Separate the frequencies of the two rows of every sequence (see load), apply the kernel and store the
+         * frequencies it lets through
+         * (the frequency k of a real sequence is the conjugate of the frequency -k, so only those from 0 are kept)
+         * @param buffers The buffers, with the frequencies of the sequences
+         * @param first The first row
+         * @param rows The number of rows of the field
+         * @param spectrumRe The real parts of the stored frequencies (see disperse)
+         * @param spectrumIm The imaginary parts of the stored frequencies
+         */
+        void storeFrequencies(float[][] buffers, int first, int rows, float[][] spectrumRe, float[][] spectrumIm) {
+            float[] re = buffers[0], im = buffers[1];
+            int length = fft.getLength();
+            for (int lane = 0; lane < LANES; lane++) {
+                int row = first + 2 * lane;
+                if (row >= rows) break;
+                int second = Math.min(row + 1, rows - 1);
+                for (int k = 0; k < frequencies; k++) {
+                    int positive = k * LANES + lane, negative = ((length - k) % length) * LANES + lane;
+                    float[] groupRe = spectrumRe[k / LANES], groupIm = spectrumIm[k / LANES];
+                    float g = 0.5f * gain[k];
+                    // The first row is the even part of the transform, the second one the odd part divided by i
+                    groupRe[second * LANES + k % LANES] = g * (im[positive] + im[negative]);
+                    groupIm[second * LANES + k % LANES] = g * (re[negative] - re[positive]);
+                    groupRe[row * LANES + k % LANES] = g * (re[positive] + re[negative]);
+                    groupIm[row * LANES + k % LANES] = g * (im[positive] - im[negative]);
+                }
+            }
+        }
+
+        /**
+         * Load the stored frequencies of the rows, to transform them back two in every sequence
+         * (the frequencies the kernel does not let through are 0)
+         * @param buffers The buffers the frequencies of the sequences are written to (see buffers)
+         * @param first The first row
+         * @param rows The number of rows of the field
+         * @param spectrumRe The real parts of the stored frequencies (see disperse)
+         * @param spectrumIm The imaginary parts of the stored frequencies
+         */
+        void loadFrequencies(float[][] buffers, int first, int rows, float[][] spectrumRe, float[][] spectrumIm) {
+            float[] re = buffers[0], im = buffers[1];
+            int length = fft.getLength();
+            Arrays.fill(re, 0);
+            Arrays.fill(im, 0);
+            for (int lane = 0; lane < LANES; lane++) {
+                int row = first + 2 * lane;
+                if (row >= rows) break;
+                int second = Math.min(row + 1, rows - 1);
+                for (int k = frequencies - 1; k >= 0; k--) {
+                    float[] groupRe = spectrumRe[k / LANES], groupIm = spectrumIm[k / LANES];
+                    float firstRe = groupRe[row * LANES + k % LANES], firstIm = groupIm[row * LANES + k % LANES];
+                    float secondRe = groupRe[second * LANES + k % LANES], secondIm = groupIm[second * LANES + k % LANES];
+                    // The first row plus i times the second one, at k and at -k (with the conjugate frequencies)
+                    re[k * LANES + lane] = firstRe - secondIm;
+                    im[k * LANES + lane] = firstIm + secondRe;
+                    if (k > 0) {
+                        re[(length - k) * LANES + lane] = firstRe + secondIm;
+                        im[(length - k) * LANES + lane] = secondRe - firstIm;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Find which position of the sequence a position in the padded sequence copies.
+         * Positions past the end of the sequence mirror its end, and positions further on (which wrap around to
+         * before the start of the sequence in the circular convolution) mirror its start
+         * @param i The position in the padded sequence
+         * @return The position in the sequence
+         */
+        private int mirror(int i) {
+            int length = fft.getLength();
+            if (i < size) return i;
+            int j = (i < size + (length - size) / 2) ? 2 * size - 1 - i : length - 1 - i;
+            return Math.max(0, Math.min(size - 1, j));
+        }
+    }
+}
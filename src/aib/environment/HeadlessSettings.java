@@ -0,0 +1,122 @@
+package aib.environment;
+
+import aib.libraries.FastNoise;
+
+import java.io.PrintStream;
+
+/**
+ * Fixed world settings, for tools that generate worlds without the user interface (such as the exporters)
+ * The default values are the initial values of the user interface controls
+ */
+public class HeadlessSettings implements WorldSettings {
+    /** The seed of the world */
+    private int seed = 1;
+    /** The type of noise */
+    private FastNoise.NoiseType noiseType = FastNoise.NoiseType.Perlin;
+    /** The number of heat diffusion iterations */
+    private int diffusionIterations;
+    /** If greenhouse gas dispersion is on */
+    private boolean greenhouseDispersion;
+    /** If animal migration is on */
+    private boolean animalMigration;
+    /** The year the world is being updated to */
+    private double year = 2000;
+    /** Where the messages are printed, or null to discard them */
+    private PrintStream messages;
+
+    @Override
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Set the seed of the world
+     * @param seed The seed
+     */
+    public void setSeed(int seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public FastNoise.NoiseType getNoiseType() {
+        return noiseType;
+    }
+
+    /**
+     * Set the type of noise
+     * @param noiseType The noise type
+     */
+    public void setNoiseType(FastNoise.NoiseType noiseType) {
+        this.noiseType = noiseType;
+    }
+
+    @Override
+    public int getDiffusionIterations() {
+        return diffusionIterations;
+    }
+
+    /**
+     * Set the number of heat diffusion iterations
+     * @param diffusionIterations The number of iterations (0 for no diffusion)
+     */
+    public void setDiffusionIterations(int diffusionIterations) {
+        this.diffusionIterations = diffusionIterations;
+    }
+
+    @Override
+    public boolean isGreenhouseDispersion() {
+        return greenhouseDispersion;
+    }
+
+    /**
+     * Turn greenhouse gas dispersion on or off
+     * @param greenhouseDispersion If greenhouse gas dispersion is on
+     */
+    public void setGreenhouseDispersion(boolean greenhouseDispersion) {
+        this.greenhouseDispersion = greenhouseDispersion;
+    }
+
+    @Override
+    public boolean isAnimalMigration() {
+        return animalMigration;
+    }
+
+    /**
+     * Turn animal migration on or off
+     * @param animalMigration If animal migration is on
+     */
+    public void setAnimalMigration(boolean animalMigration) {
+        this.animalMigration = animalMigration;
+    }
+
+    @Override
+    public double getYear() {
+        return year;
+    }
+
+    /**
+     * Set the year the world is being updated to
+     * @param year The year
+     */
+    public void setYear(double year) {
+        this.year = year;
+    }
+
+    /**
+     * Set where the messages are printed
+     * @param messages The stream the messages are printed to, or null to discard them
+     */
+    public void setMessages(PrintStream messages) {
+        this.messages = messages;
+    }
+
+    @Override
+    public void printMessage(String text) {
+        if (messages != null) messages.println(text);
+    }
+
+    @Override
+    public void addDialogText(String text) {
+        // There is no dialog, and the same information is printed as messages
+    }
+}
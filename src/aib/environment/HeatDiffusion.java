@@ -0,0 +1,94 @@
+package aib.environment;
+
+import java.util.stream.IntStream;
+
+/**
+ * Spreads heat between neighbouring pixels, so temperature does not change abruptly between e.g. land and water.
+ * Each iteration moves every pixel's temperature towards the average of its 4 neighbours (a 5 point stencil).
+ * The field is kept in two flat buffers (row by row) that swap roles after every iteration, and every iteration
+ * processes the map in square tiles, with bands of tile rows computed in parallel.
+ */
+public class HeatDiffusion {
+    /** How much heat moves between neighbouring pixels in one iteration (must be at most 0.25 to stay stable) */
+    public static final float DIFFUSION_RATE = 0.2f;
+    /** The size of the square tiles the map is processed in (in pixels) */
+    public static final int TILE_SIZE = 64;
+
+    /**
+     * Diffuse a temperature field
+     * @param field The temperature of every pixel, row by row (index y * width + x); it is not modified
+     * @param width The width of the field
+     * @param height The height of the field
+     * @param iterations The number of diffusion iterations
+     * @param rate How much heat moves between neighbouring pixels in one iteration
+     * @return The diffused temperature field, with the same layout as the input
+     */
+    public static float[] diffuse(float[] field, int width, int height, int iterations, float rate) {
+        float[] current = field.clone();
+        if (iterations <= 0) return current;
+        float[] next = new float[current.length];
+
+        int tileRows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        for (int i = 0; i < iterations; i++) {
+            float[] source = current;
+            float[] target = next;
+            IntStream.range(0, tileRows).parallel().forEach(tileRow ->
+                    diffuseBand(source, target, width, height, tileRow * TILE_SIZE,
+                            Math.min(height, (tileRow + 1) * TILE_SIZE), rate));
+            // The result of this iteration is the source of the next one
+            next = current;
+            current = target;
+        }
+        return current;
+    }
+
+    /**
+     * Apply one diffusion iteration to a band of rows, one tile at a time
+     * At the edges of the map, the missing neighbours are replaced by the edge pixel itself (no heat leaves the map)
+     * @param source The field before the iteration
+     * @param target The field after the iteration
+     * @param width The width of the field
+     * @param height The height of the field
+     * @param minY The first row of the band
+     * @param maxY The row after the last row of the band
+     * @param rate How much heat moves between neighbouring pixels
+     */
+    private static void diffuseBand(float[] source, float[] target, int width, int height, int minY, int maxY, float rate) {
+        for (int minX = 0; minX < width; minX += TILE_SIZE) {
+            int maxX = Math.min(width, minX + TILE_SIZE);
+            for (int y = minY; y < maxY; y++) {
+                int row = y * width;
+                int up = (y > 0) ? row - width : row;
+                int down = (y < height - 1) ? row + width : row;
+                // The first and last pixels of a row are missing a neighbour, the others are computed without checks
+                int from = Math.max(minX, 1);
+                int to = Math.min(maxX, width - 1);
+                if (minX == 0) diffusePixel(source, target, width, row, up, down, 0, rate);
+                for (int x = from; x < to; x++) {
+                    float centre = source[row + x];
+                    target[row + x] = centre + rate * (source[row + x - 1] + source[row + x + 1]
+                            + source[up + x] + source[down + x] - 4 * centre);
+                }
+                if (maxX == width && width > 1) diffusePixel(source, target, width, row, up, down, width - 1, rate);
+            }
+        }
+    }
+
+    /**
+     * Apply one diffusion iteration to a single pixel, replacing its missing neighbours by the pixel itself
+     * @param source The field before the iteration
+     * @param target The field after the iteration
+     * @param width The width of the field
+     * @param row The index of the first pixel in the row
+     * @param up The index of the first pixel in the row above (or the row itself at the top edge)
+     * @param down The index of the first pixel in the row below (or the row itself at the bottom edge)
+     * @param x The column of the pixel
+     * @param rate How much heat moves between neighbouring pixels
+     */
+    private static void diffusePixel(float[] source, float[] target, int width, int row, int up, int down, int x, float rate) {
+        float centre = source[row + x];
+        float left = (x > 0) ? source[row + x - 1] : centre;
+        float right = (x < width - 1) ? source[row + x + 1] : centre;
+        target[row + x] = centre + rate * (left + right + source[up + x] + source[down + x] - 4 * centre);
+    }
+}
@@ -0,0 +1,274 @@
+package aib.environment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Properties;
+
+/**
+ * A world stored in a file that is mapped into memory, for worlds too large for the heap (a 65536x65536 world
+ * takes 56 GB): the operating system loads the parts of the file that are used, and writes back the parts that changed
+ * Every pixel has a height, a temperature, a greenhouse gas level and a terrain; each of these is a column of the file,
+ * with the values of the pixels row by row. The file starts with a header with the map size and some properties
+ * (the world parameters, for instance)
+ * A file can only be mapped in parts of up to 2 GB, so the file is mapped as a list of segments
+ * It is the grid (see WorldGrid) of a world kept outside the heap, so the garbage collector never scans or moves it
+ * Values can be read and written from several threads at the same time, as long as no two threads write the same pixel
+ */
+public class MappedWorldStore implements Closeable, WorldGrid {
+    /** The first bytes of every file ("AIBW") */
+    private static final int MAGIC = 0x41494257;
+    /** The version of the file format */
+    private static final int VERSION = 1;
+    /** The size of the header, in bytes */
+    private static final int HEADER_SIZE = 4096;
+    /** The size of every mapped segment (the last one may be smaller) */
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    /** The columns of the file: the value of each pixel, and its size in bytes */
+    private enum Column {
+        HEIGHT(4), TEMPERATURE(4), GREENHOUSE(4), TERRAIN(1);
+
+        /** The size of a value, in bytes */
+        final int size;
+
+        /**
+         * Create a column
+         * @param size The size of a value, in bytes
+         */
+        Column(int size) {
+            this.size = size;
+        }
+    }
+
+    /** The file */
+    private final RandomAccessFile file;
+    /** The mapped segments of the file */
+    private final MappedByteBuffer[] segments;
+    /** The map width and height */
+    private final int width, height;
+    /** The offset of every column in the file */
+    private final long[] columnOffsets = new long[Column.values().length];
+    /** If the file can be written to */
+    private final boolean writable;
+    /** The properties stored in the header */
+    private final Properties properties = new Properties();
+
+    /**
+     * Map a file
+     * @param file The file
+     * @param width The map width
+     * @param height The map height
+     * @param writable If the file can be written to
+     * @throws IOException If the file cannot be mapped
+     */
+    private MappedWorldStore(RandomAccessFile file, int width, int height, boolean writable) throws IOException {
+        this.file = file;
+        this.width = width;
+        this.height = height;
+        this.writable = writable;
+        long pixels = (long) width * height;
+        long offset = HEADER_SIZE;
+        for (Column column : Column.values()) {
+            columnOffsets[column.ordinal()] = offset;
+            offset += pixels * column.size;
+        }
+        if (file.length() < offset) file.setLength(offset);
+
+        FileChannel channel = file.getChannel();
+        segments = new MappedByteBuffer[(int) ((offset + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = i * SEGMENT_SIZE;
+            segments[i] = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                    start, Math.min(SEGMENT_SIZE, offset - start));
+            segments[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Create a file for a world (the file is sparse, the disk space is only used as the world is written)
+     * @param path The file, which is replaced if it exists
+     * @param width The map width
+     * @param height The map height
+     * @return The store
+     * @throws IOException If the file cannot be created
+     */
+    public static MappedWorldStore create(File path, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Invalid map size " + width + "x" + height);
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            file.setLength(0);
+            MappedWorldStore store = new MappedWorldStore(file, width, height, true);
+            store.writeHeader();
+            return store;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open the file of a world
+     * @param path The file
+     * @param writable If the world can be changed
+     * @return The store
+     * @throws IOException If the file cannot be read, or is not a world file
+     */
+    public static MappedWorldStore open(File path, boolean writable) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, writable ? "rw" : "r");
+        try {
+            if (file.length() < HEADER_SIZE || file.readInt() != MAGIC) throw new IOException(path + " is not a world file");
+            if (file.readInt() != VERSION) throw new IOException(path + " was written by another version");
+            int width = file.readInt(), height = file.readInt();
+            byte[] text = new byte[file.readInt()];
+            file.readFully(text);
+            MappedWorldStore store = new MappedWorldStore(file, width, height, writable);
+            store.properties.load(new ByteArrayInputStream(text));
+            return store;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Get the properties stored in the header, which are written when the store is closed
+     * @return The properties
+     */
+    public Properties getProperties() {
+        return properties;
+    }
+
+    @Override
+    public float getNoiseHeight(int x, int y) {
+        return getFloat(Column.HEIGHT, x, y);
+    }
+
+    @Override
+    public void setNoiseHeight(int x, int y, float noiseHeight) {
+        putFloat(Column.HEIGHT, x, y, noiseHeight);
+    }
+
+    @Override
+    public float getTemperature(int x, int y) {
+        return getFloat(Column.TEMPERATURE, x, y);
+    }
+
+    @Override
+    public void setTemperature(int x, int y, float temperature) {
+        putFloat(Column.TEMPERATURE, x, y, temperature);
+    }
+
+    @Override
+    public float getGreenhouseGas(int x, int y) {
+        return getFloat(Column.GREENHOUSE, x, y);
+    }
+
+    @Override
+    public void setGreenhouseGas(int x, int y, float level) {
+        putFloat(Column.GREENHOUSE, x, y, level);
+    }
+
+    @Override
+    public int getTerrainId(int x, int y) {
+        long offset = offset(Column.TERRAIN, x, y);
+        return segments[(int) (offset / SEGMENT_SIZE)].get((int) (offset % SEGMENT_SIZE));
+    }
+
+    @Override
+    public void setTerrainId(int x, int y, int terrainID) {
+        long offset = offset(Column.TERRAIN, x, y);
+        segments[(int) (offset / SEGMENT_SIZE)].put((int) (offset % SEGMENT_SIZE), (byte) terrainID);
+    }
+
+    /**
+     * Write the header and the changed parts of the file to the disk, and close the file
+     * @throws IOException If the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (writable) {
+                writeHeader();
+                for (MappedByteBuffer segment : segments) segment.force();
+            }
+        } finally {
+            // The segments stay mapped until they are garbage collected
+            file.close();
+        }
+    }
+
+    /**
+     * Write the header: the map size and the properties
+     * @throws IOException If the properties do not fit in the header
+     */
+    private void writeHeader() throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        properties.store(text, null);
+        if (text.size() > HEADER_SIZE - 20) throw new IOException("The world properties do not fit in the header");
+        MappedByteBuffer header = segments[0];
+        // The header is big endian, the way RandomAccessFile reads it in open
+        header.order(ByteOrder.BIG_ENDIAN);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(8, width);
+        header.putInt(12, height);
+        header.putInt(16, text.size());
+        byte[] bytes = text.toByteArray();
+        for (int i = 0; i < bytes.length; i++) header.put(20 + i, bytes[i]);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Get a value of a column of 4 byte floats
+     * @param column The column
+     * @param x The pixel x coordinate
+     * @param y The pixel y coordinate
+     * @return The value
+     */
+    private float getFloat(Column column, int x, int y) {
+        long offset = offset(column, x, y);
+        // Values are aligned to their size, so a value is never split between two segments
+        return segments[(int) (offset / SEGMENT_SIZE)].getFloat((int) (offset % SEGMENT_SIZE));
+    }
+
+    /**
+     * Set a value of a column of 4 byte floats
+     * @param column The column
+     * @param x The pixel x coordinate
+     * @param y The pixel y coordinate
+     * @param value The value
+     */
+    private void putFloat(Column column, int x, int y, float value) {
+        long offset = offset(column, x, y);
+        segments[(int) (offset / SEGMENT_SIZE)].putFloat((int) (offset % SEGMENT_SIZE), value);
+    }
+
+    /**
+     * Get the offset of the value of a pixel in the file
+     * @param column The column
+     * @param x The pixel x coordinate
+     * @param y The pixel y coordinate
+     * @return The offset, in bytes
+     */
+    private long offset(Column column, int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) throw new IndexOutOfBoundsException("No pixel (" + x + ", " + y + ")");
+        return columnOffsets[column.ordinal()] + ((long) y * width + x) * column.size;
+    }
+}
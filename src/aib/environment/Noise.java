@@ -1,6 +1,5 @@
 package aib.environment;
 
-import aib.Main;
 import aib.libraries.FastNoise;
 
 import java.util.Random;
@@ -32,60 +31,16 @@ public class Noise {
         float[][] noiseMap = new float[mapWidth][mapHeight];
 
         // Use library to generate the noise sample
-        FastNoise myNoise = new FastNoise();
-        myNoise.SetNoiseType(Main.userInterface.noiseTypeComboBox.getValue());
-
-        // Octaves offsets
-        Random rand = new Random(seed);
-        float[] octavesOffsetsX = new float[octaves];
-        float[] octavesOffsetsY = new float[octaves];
-        for (int i = 0; i < octaves; i++) {
-            octavesOffsetsX[i] = (rand.nextInt(100000 + 100000) - 100000) + offsetX;
-            octavesOffsetsY[i] = (rand.nextInt(100000 + 100000) - 100000) + offsetY;
-        }
-
-        // Ensure scale is > 0 to avoid division by 0
-        if (scale <= 0) {
-            scale = 0.0001f;
-        }
+        NoiseField field = new NoiseField(mapWidth, mapHeight, World.settings.getNoiseType(), seed, scale, octaves,
+                persistence, lacunarity, offsetX, offsetY);
 
         // Track max and min noise height to normalise the map later
         float maxHeight = -1f;
         float minHeight = 1f;
 
-        // Zooming (scale) to the center instead of top right
-        float halfWidth = mapWidth / 2f;
-        float halfHeight = mapHeight / 2f;
-
         for (int y = 0; y < mapHeight; y++) {
             for (int x = 0; x < mapWidth; x++) {
-                float amplitude = 1;
-                float frequency = 1;
-                float noiseHeight = 0;
-
-
-                // Iterate through octaves
-                for (int i = 0; i < octaves; i++) {
-                    // set the sample for perlin noise
-                    // the higher the frequency, the further apart the sample points will be
-                    // => the height values will change more rapidly
-                    float sampleX = (x - halfWidth) / scale * frequency + octavesOffsetsX[i];
-                    float sampleY = (y - halfHeight) / scale * frequency + octavesOffsetsY[i];
-
-                    // get the perlin noise from the sample
-                    // for more interesting noise, have perlinValue in range -1 to 1, so noiseHeight can also decrease
-                    float perlinValue = myNoise.GetNoise(sampleX, sampleY);
-
-                    // Increase noiseHeight by perlin value of each octave
-                    noiseHeight += perlinValue * amplitude;
-
-                    // at the end of each octave, decrease the amplitude (because persistence is in range 0-1)
-                    amplitude *= persistence;
-
-                    // frequency increases at each octave since lacunarity should be greater than 1
-                    // each octave adds more finer detail
-                    frequency *= lacunarity;
-                }
+                float noiseHeight = field.sample(x, y);
 
                 // Obtain the range of noise height of our map (for normalisation)
                 if (noiseHeight > maxHeight) maxHeight = noiseHeight;
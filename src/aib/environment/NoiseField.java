@@ -0,0 +1,97 @@
+package aib.environment;
+
+import aib.libraries.FastNoise;
+
+import java.util.Random;
+
+/**
+ * Fractal noise over a map, which can be sampled at any pixel without computing the rest of the map
+ * Used by Noise.generateNoiseMap for the whole map at once, and by StreamingWorldGenerator one tile at a time
+ * The noise height of a pixel is not normalised: it is roughly between -1 and 1, depending on the octaves
+ */
+public class NoiseField {
+    /** The noise generator */
+    private final FastNoise noise = new FastNoise();
+    /** The number of octaves */
+    private final int octaves;
+    /** The scale, persistence and lacunarity of the noise */
+    private final float scale, persistence, lacunarity;
+    /** The offset of every octave */
+    private final float[] octavesOffsetsX, octavesOffsetsY;
+    /** The centre of the map, which the noise is scaled around */
+    private final float halfWidth, halfHeight;
+
+    /**
+     * Create the noise of a map
+     * @param mapWidth Map width
+     * @param mapHeight Map height
+     * @param noiseType The noise type
+     * @param seed Map seed
+     * @param scale Scale for the noise
+     * @param octaves Number of octaves for the noise (higher -> more smaller detail)
+     * @param persistence Persistence for the noise
+     * @param lacunarity Lacunarity for the noise
+     * @param offsetX Horizontal noise offset
+     * @param offsetY Vertical noise offset
+     */
+    public NoiseField(int mapWidth, int mapHeight, FastNoise.NoiseType noiseType, int seed, float scale, int octaves,
+                      float persistence, float lacunarity, float offsetX, float offsetY) {
+        noise.SetNoiseType(noiseType);
+
+        // Octaves offsets
+        Random rand = new Random(seed);
+        octavesOffsetsX = new float[octaves];
+        octavesOffsetsY = new float[octaves];
+        for (int i = 0; i < octaves; i++) {
+            octavesOffsetsX[i] = (rand.nextInt(100000 + 100000) - 100000) + offsetX;
+            octavesOffsetsY[i] = (rand.nextInt(100000 + 100000) - 100000) + offsetY;
+        }
+
+        // Ensure scale is > 0 to avoid division by 0
+        this.scale = scale <= 0 ? 0.0001f : scale;
+        this.octaves = octaves;
+        this.persistence = persistence;
+        this.lacunarity = lacunarity;
+
+        // Zooming (scale) to the center instead of top right
+        halfWidth = mapWidth / 2f;
+        halfHeight = mapHeight / 2f;
+    }
+
+    /**
+     * Get the noise height of a pixel
+     * The generator is only read, so pixels can be sampled from several threads at the same time
+     * @param x The pixel x coordinate
+     * @param y The pixel y coordinate
+     * @return The noise height, not normalised
+     */
+    public float sample(float x, float y) {
+        float amplitude = 1;
+        float frequency = 1;
+        float noiseHeight = 0;
+
+        // Iterate through octaves
+        for (int i = 0; i < octaves; i++) {
+            // set the sample for perlin noise
+            // the higher the frequency, the further apart the sample points will be
+            // => the height values will change more rapidly
+            float sampleX = (x - halfWidth) / scale * frequency + octavesOffsetsX[i];
+            float sampleY = (y - halfHeight) / scale * frequency + octavesOffsetsY[i];
+
+            // get the perlin noise from the sample
+            // for more interesting noise, have perlinValue in range -1 to 1, so noiseHeight can also decrease
+            float perlinValue = noise.GetNoise(sampleX, sampleY);
+
+            // Increase noiseHeight by perlin value of each octave
+            noiseHeight += perlinValue * amplitude;
+
+            // at the end of each octave, decrease the amplitude (because persistence is in range 0-1)
+            amplitude *= persistence;
+
+            // frequency increases at each octave since lacunarity should be greater than 1
+            // each octave adds more finer detail
+            frequency *= lacunarity;
+        }
+        return noiseHeight;
+    }
+}
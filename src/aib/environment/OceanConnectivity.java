@@ -0,0 +1,167 @@
+package aib.environment;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Tracks which pixels below the sea level are connected to the ocean, so rising seas only flood the land
+ * water can actually reach, and not inland basins that are cut off from the ocean.
+ * The ocean is the water (below the base sea level) that touches the edges of the map.
+ * Pixels below the sea level are grouped into connected regions with a union-find structure that can be
+ * updated from several threads at once. When the sea rises, only the pixels in the newly submerged height band
+ * are added and joined to their submerged neighbours; existing regions are never relabelled.
+ * A union-find structure can not split regions, so when the sea level drops the regions are built again.
+ */
+public class OceanConnectivity {
+    /** The width of the map */
+    private final int width;
+    /** The height of the map */
+    private final int height;
+    /** The noise height of every pixel, row by row (index y * width + x) */
+    private final float[] heights;
+    /** The sea level below which water touching the map edges is the ocean */
+    private final float baseSeaLevel;
+    /** The pixel indexes sorted by increasing height, so every height band is a contiguous range */
+    private final int[] pixelsByHeight;
+    /** The parent of every pixel in the union-find structure; the extra last element is the ocean itself */
+    private final AtomicIntegerArray parent;
+    /** The index of the element that represents the ocean */
+    private final int ocean;
+    /** Which pixels are below the current sea level */
+    private final boolean[] submerged;
+    /** The number of pixels (at the start of pixelsByHeight) below the current sea level */
+    private int submergedCount;
+    /** The current sea level */
+    private float seaLevel;
+
+    /**
+     * Create the ocean connectivity for a map, at the base sea level
+     * @param heights The noise height of every pixel, row by row (index y * width + x)
+     * @param width The width of the map
+     * @param height The height of the map
+     * @param baseSeaLevel The base sea level
+     */
+    public OceanConnectivity(float[] heights, int width, int height, float baseSeaLevel) {
+        this.width = width;
+        this.height = height;
+        this.heights = heights;
+        this.baseSeaLevel = baseSeaLevel;
+        this.ocean = width * height;
+        this.parent = new AtomicIntegerArray(width * height + 1);
+        this.submerged = new boolean[width * height];
+
+        // Sort the pixels by height, by sorting (height, index) pairs packed into longs
+        long[] keys = new long[width * height];
+        IntStream.range(0, keys.length).parallel().forEach(i ->
+                keys[i] = ((long) sortableBits(heights[i]) << 32) | i);
+        Arrays.parallelSort(keys);
+        this.pixelsByHeight = new int[keys.length];
+        IntStream.range(0, keys.length).parallel().forEach(i -> pixelsByHeight[i] = (int) keys[i]);
+
+        reset();
+        setSeaLevel(baseSeaLevel);
+    }
+
+    /**
+     * Change the sea level
+     * Rising the sea level only adds the newly submerged pixels, lowering it builds the regions again
+     * @param level The new sea level
+     */
+    public void setSeaLevel(float level) {
+        if (level < seaLevel) reset();
+        seaLevel = level;
+
+        // Find the band of pixels that are now below the sea level
+        int from = submergedCount;
+        int to = from;
+        while (to < pixelsByHeight.length && heights[pixelsByHeight[to]] < level) to++;
+        if (to == from) return;
+
+        // First mark the whole band as submerged, then join every pixel in it to its submerged neighbours,
+        // so pixels in the band see each other irrespective of the order they are processed in
+        final int bandEnd = to;
+        IntStream.range(from, bandEnd).parallel().forEach(i -> submerged[pixelsByHeight[i]] = true);
+        IntStream.range(from, bandEnd).parallel().forEach(i -> joinNeighbours(pixelsByHeight[i]));
+        submergedCount = bandEnd;
+    }
+
+    /**
+     * Check if a pixel is flooded by the ocean, i.e. it is below the sea level and water can reach it from the ocean
+     * @param pixel The pixel index (y * width + x)
+     * @return If the pixel is flooded
+     */
+    public boolean isFlooded(int pixel) {
+        return submerged[pixel] && find(pixel) == find(ocean);
+    }
+
+    /**
+     * Remove all the pixels from the structure, as if the sea level was below the lowest point of the map
+     */
+    private void reset() {
+        for (int i = 0; i < parent.length(); i++) parent.set(i, i);
+        Arrays.fill(submerged, false);
+        submergedCount = 0;
+        seaLevel = Float.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Join a submerged pixel with its submerged neighbours, and with the ocean if it is base level water on the map edge
+     * @param pixel The pixel index
+     */
+    private void joinNeighbours(int pixel) {
+        int x = pixel % width;
+        int y = pixel / width;
+        if (x > 0 && submerged[pixel - 1]) union(pixel, pixel - 1);
+        if (x < width - 1 && submerged[pixel + 1]) union(pixel, pixel + 1);
+        if (y > 0 && submerged[pixel - width]) union(pixel, pixel - width);
+        if (y < height - 1 && submerged[pixel + width]) union(pixel, pixel + width);
+        boolean onEdge = x == 0 || y == 0 || x == width - 1 || y == height - 1;
+        if (onEdge && heights[pixel] < baseSeaLevel) union(pixel, ocean);
+    }
+
+    /**
+     * Find the element that represents the region of an element, halving the path to it on the way
+     * (safe to call from several threads at once)
+     * @param element The element
+     * @return The representative of its region
+     */
+    private int find(int element) {
+        while (true) {
+            int p = parent.get(element);
+            if (p == element) return element;
+            int grandparent = parent.get(p);
+            // Point the element to its grandparent; if another thread changed it meanwhile, that is fine too
+            if (p != grandparent) parent.compareAndSet(element, p, grandparent);
+            element = grandparent;
+        }
+    }
+
+    /**
+     * Join the regions of two elements (safe to call from several threads at once)
+     * The representative with the higher index is linked under the one with the lower index
+     * @param a The first element
+     * @param b The second element
+     */
+    private void union(int a, int b) {
+        while (true) {
+            int rootA = find(a);
+            int rootB = find(b);
+            if (rootA == rootB) return;
+            int high = Math.max(rootA, rootB);
+            int low = Math.min(rootA, rootB);
+            // Only link if high is still a representative; otherwise another thread linked it, so try again
+            if (parent.compareAndSet(high, high, low)) return;
+        }
+    }
+
+    /**
+     * Get bits of a float that sort (as a signed int) in the same order as the float values
+     * @param value The float value
+     * @return The sortable bits
+     */
+    private static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return (bits < 0) ? bits ^ 0x7fffffff : bits;
+    }
+}
@@ -1,7 +1,5 @@
 package aib.environment;
 
-import javafx.scene.paint.Color;
-
 /**
  * Each pixel on the map holds relevant information. This class deals with storing that information.
  */
@@ -20,13 +18,14 @@ public class Pixel {
     private float greenhouseGasFactor;
     /** The initial greenhouse gas level of the point */
     private float greenhouseHeight;
-    /** Object with the final temperature information of this pixel, containing the temperature value,
-     * determined by the greenhouse gas level and the base temperature (heightTemperature) */
-    private TemperatureSettings.Temperature temperature;
+    /** The final temperature of this pixel, determined by the greenhouse gas level and the base temperature (heightTemperature) */
+    private float temperature;
+    /** The colour of the pixel on the temperature map, packed into an int (see PackedColour) */
+    private int temperatureColour;
     /** The terrain type of this pixel, determined by its height and temperature */
     private TerrainType terrainType;
-    /** The colour of the pixel, determined by its terrain type */
-    private Color colour;
+    /** The colour of the pixel, determined by its terrain type, packed into an int (see PackedColour) */
+    private int colour;
 
 
     /**
@@ -35,9 +34,7 @@ public class Pixel {
      */
     public Pixel(float noiseHeight) {
         this.noiseHeight = noiseHeight;
-        this.colour = null;
         this.terrainType = null;
-        this.temperature = null;
     }
 
     /**
@@ -153,21 +150,37 @@ public class Pixel {
     }
 
     /**
-     * Get the object with the final temperature information of this pixel
-     * @return The object with the final temperature information of this pixel
+     * Get the final temperature of this pixel
+     * @return The final temperature of this pixel
      */
-    public TemperatureSettings.Temperature getTemperature() {
+    public float getTemperature() {
         return temperature;
     }
 
     /**
-     * Set the object with the final temperature information of this pixel
-     * @param temperature The object with the final temperature information of this pixel
+     * Set the final temperature of this pixel
+     * @param temperature The final temperature of this pixel
      */
-    public void setTemperature(TemperatureSettings.Temperature temperature) {
+    public void setTemperature(float temperature) {
         this.temperature = temperature;
     }
 
+    /**
+     * Get the colour of the pixel on the temperature map
+     * @return The packed colour (see PackedColour)
+     */
+    public int getTemperatureColour() {
+        return temperatureColour;
+    }
+
+    /**
+     * Set the colour of the pixel on the temperature map
+     * @param temperatureColour The packed colour (see PackedColour)
+     */
+    public void setTemperatureColour(int temperatureColour) {
+        this.temperatureColour = temperatureColour;
+    }
+
     /**
      * Get the terrain type of this pixel, determined by its height and temperature
      * @return The terrain type of this pixel
@@ -186,17 +199,17 @@ public class Pixel {
 
     /**
      * Get the colour of the pixel, determined by its terrain type
-     * @return The colour of the pixel, determined by its terrain type
+     * @return The packed colour of the pixel (see PackedColour)
      */
-    public Color getColour() {
+    public int getColour() {
         return colour;
     }
 
     /**
      * Set the colour of the pixel, determined by its terrain type
-     * @param colour The colour of the pixel, determined by its terrain type
+     * @param colour The packed colour of the pixel (see PackedColour)
      */
-    public void setColour(Color colour) {
+    public void setColour(int colour) {
         this.colour = colour;
     }
 }
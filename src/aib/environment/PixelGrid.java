@@ -0,0 +1,73 @@
+package aib.environment;
+
+import aib.Constants;
+
+/**
+ * The grid of the application world, kept in the Pixel objects of World.pixels
+ * Setting a temperature or a terrain also sets the colours the application draws the pixel with, and the colours
+ * are the ones the pixels keep (the terrain colour of land the risen sea cannot reach is that of the lowest land)
+ */
+class PixelGrid implements WorldGrid {
+    @Override
+    public int getWidth() {
+        return Constants.MAP_SIZE_X;
+    }
+
+    @Override
+    public int getHeight() {
+        return Constants.MAP_SIZE_Y;
+    }
+
+    @Override
+    public float getNoiseHeight(int x, int y) {
+        return World.pixels[x][y].getNoiseHeight();
+    }
+
+    @Override
+    public void setNoiseHeight(int x, int y, float noiseHeight) {
+        World.pixels[x][y].setNoiseHeight(noiseHeight);
+    }
+
+    @Override
+    public float getTemperature(int x, int y) {
+        return World.pixels[x][y].getTemperature();
+    }
+
+    @Override
+    public void setTemperature(int x, int y, float temperature) {
+        World.findPixelTemperatureColour(x, y, temperature);
+    }
+
+    @Override
+    public float getGreenhouseGas(int x, int y) {
+        return World.pixels[x][y].getGreenhouseGasFactor();
+    }
+
+    @Override
+    public void setGreenhouseGas(int x, int y, float level) {
+        World.pixels[x][y].setGreenhouseGasFactor(level);
+    }
+
+    @Override
+    public int getTerrainId(int x, int y) {
+        return World.pixels[x][y].getTerrainType().getId();
+    }
+
+    @Override
+    public void setTerrainId(int x, int y, int terrainID) {
+        Pixel pixel = World.pixels[x][y];
+        pixel.setTerrainType(TerrainSections.getTerrainByID(terrainID));
+        // The colour of the terrain section of the pixel height and temperature
+        pixel.setColour(TerrainSections.find(pixel.getNoiseHeight(), pixel.getTemperature()).colour(pixel.getNoiseHeight()));
+    }
+
+    @Override
+    public int getTemperatureColour(int x, int y) {
+        return World.pixels[x][y].getTemperatureColour();
+    }
+
+    @Override
+    public int getTerrainColour(int x, int y) {
+        return World.pixels[x][y].getColour();
+    }
+}
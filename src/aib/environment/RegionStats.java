@@ -0,0 +1,189 @@
+package aib.environment;
+
+/**
+ * Summed-area tables over the map, so the statistics of any rectangular region
+ * (mean temperature and greenhouse gas, water, ice and land percentages) take constant time, whatever its size.
+ * Every entry of a table holds the sum of the values of all the pixels above and to the left of it, so the sum over
+ * a rectangle is found from the entries at its 4 corners.
+ * The tables are filled in the same loops that update the map, which go column by column, top to bottom:
+ * each entry only needs the entries to its left and above it, which were filled before.
+ */
+public class RegionStats {
+    /** The width of the map */
+    private final int width;
+    /** The height of the map */
+    private final int height;
+    /** The sum of the temperatures; the table has a column and a row of zeros before the map, and is stored column by column */
+    private final double[] temperature;
+    /** The sum of the greenhouse gas factors, with the same layout as the temperature table */
+    private final double[] greenhouseGas;
+    /** The number of water pixels, with the same layout as the temperature table */
+    private final int[] water;
+    /** The number of ice pixels, with the same layout as the temperature table */
+    private final int[] ice;
+
+    /**
+     * Create the tables for a map
+     * @param width The width of the map
+     * @param height The height of the map
+     */
+    public RegionStats(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int size = (width + 1) * (height + 1);
+        this.temperature = new double[size];
+        this.greenhouseGas = new double[size];
+        this.water = new int[size];
+        this.ice = new int[size];
+    }
+
+    /**
+     * Add a pixel to the tables
+     * Pixels must be added column by column (increasing x), and top to bottom (increasing y) inside each column
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @param pixelTemperature The temperature of the pixel
+     * @param pixelGreenhouseGas The greenhouse gas factor of the pixel
+     * @param isWater If the pixel is water
+     * @param isIce If the pixel is ice
+     */
+    public void add(int x, int y, float pixelTemperature, float pixelGreenhouseGas, boolean isWater, boolean isIce) {
+        int entry = index(x + 1, y + 1);
+        int left = entry - (height + 1);
+        int up = entry - 1;
+        int upLeft = left - 1;
+        temperature[entry] = pixelTemperature + temperature[left] + temperature[up] - temperature[upLeft];
+        greenhouseGas[entry] = pixelGreenhouseGas + greenhouseGas[left] + greenhouseGas[up] - greenhouseGas[upLeft];
+        water[entry] = (isWater ? 1 : 0) + water[left] + water[up] - water[upLeft];
+        ice[entry] = (isIce ? 1 : 0) + ice[left] + ice[up] - ice[upLeft];
+    }
+
+    /**
+     * Get the statistics of a rectangular region of the map (clamped to the map)
+     * @param minX The x coordinate of the first column of the region
+     * @param minY The y coordinate of the first row of the region
+     * @param maxX The x coordinate of the column after the last column of the region
+     * @param maxY The y coordinate of the row after the last row of the region
+     * @return The statistics of the region
+     */
+    public Region query(int minX, int minY, int maxX, int maxY) {
+        minX = Math.max(0, Math.min(width, minX));
+        maxX = Math.max(minX, Math.min(width, maxX));
+        minY = Math.max(0, Math.min(height, minY));
+        maxY = Math.max(minY, Math.min(height, maxY));
+
+        int a = index(minX, minY), b = index(maxX, minY), c = index(minX, maxY), d = index(maxX, maxY);
+        return new Region((maxX - minX) * (maxY - minY),
+                temperature[d] - temperature[b] - temperature[c] + temperature[a],
+                greenhouseGas[d] - greenhouseGas[b] - greenhouseGas[c] + greenhouseGas[a],
+                water[d] - water[b] - water[c] + water[a],
+                ice[d] - ice[b] - ice[c] + ice[a]);
+    }
+
+    /**
+     * Get the position of an entry in the tables
+     * @param x The column of the entry (0 is the column of zeros)
+     * @param y The row of the entry (0 is the row of zeros)
+     * @return The position in the tables
+     */
+    private int index(int x, int y) {
+        return x * (height + 1) + y;
+    }
+
+    /**
+     * The statistics of a rectangular region of the map
+     */
+    public static class Region {
+        /** The number of pixels in the region */
+        private final int pixelCount;
+        /** The sum of the temperatures in the region */
+        private final double temperatureSum;
+        /** The sum of the greenhouse gas factors in the region */
+        private final double greenhouseGasSum;
+        /** The number of water pixels in the region */
+        private final int waterPixels;
+        /** The number of ice pixels in the region */
+        private final int icePixels;
+
+        /**
+         * Create the statistics of a region
+         * @param pixelCount The number of pixels in the region
+         * @param temperatureSum The sum of the temperatures in the region
+         * @param greenhouseGasSum The sum of the greenhouse gas factors in the region
+         * @param waterPixels The number of water pixels in the region
+         * @param icePixels The number of ice pixels in the region
+         */
+        Region(int pixelCount, double temperatureSum, double greenhouseGasSum, int waterPixels, int icePixels) {
+            this.pixelCount = pixelCount;
+            this.temperatureSum = temperatureSum;
+            this.greenhouseGasSum = greenhouseGasSum;
+            this.waterPixels = waterPixels;
+            this.icePixels = icePixels;
+        }
+
+        /**
+         * Get the number of pixels in the region
+         * @return The number of pixels
+         */
+        public int getPixelCount() {
+            return pixelCount;
+        }
+
+        /**
+         * Get the sum of the temperatures in the region
+         * @return The temperature sum
+         */
+        public double getTemperatureSum() {
+            return temperatureSum;
+        }
+
+        /**
+         * Get the average temperature in the region
+         * @return The mean temperature (0 for an empty region)
+         */
+        public double getMeanTemperature() {
+            return (pixelCount == 0) ? 0 : temperatureSum / pixelCount;
+        }
+
+        /**
+         * Get the average greenhouse gas factor in the region
+         * @return The mean greenhouse gas factor (0 for an empty region)
+         */
+        public double getMeanGreenhouseGas() {
+            return (pixelCount == 0) ? 0 : greenhouseGasSum / pixelCount;
+        }
+
+        /**
+         * Get the percentage of water pixels in the region
+         * @return The water percentage (0 for an empty region)
+         */
+        public double getWaterPercentage() {
+            return percentage(waterPixels);
+        }
+
+        /**
+         * Get the percentage of ice pixels in the region
+         * @return The ice percentage (0 for an empty region)
+         */
+        public double getIcePercentage() {
+            return percentage(icePixels);
+        }
+
+        /**
+         * Get the percentage of land pixels (neither water nor ice) in the region
+         * @return The land percentage (0 for an empty region)
+         */
+        public double getLandPercentage() {
+            return percentage(pixelCount - waterPixels - icePixels);
+        }
+
+        /**
+         * Get the percentage of the region a number of pixels cover
+         * @param pixels The number of pixels
+         * @return The percentage
+         */
+        private double percentage(int pixels) {
+            return (pixelCount == 0) ? 0 : pixels * 100.0 / pixelCount;
+        }
+    }
+}
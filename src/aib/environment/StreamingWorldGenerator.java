@@ -0,0 +1,212 @@
+package aib.environment;
+
+import aib.Constants;
+import aib.libraries.FastNoise;
+
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Generates worlds of any size (a continent at 65536x65536, for instance) straight into a grid (see WorldGrid),
+ * such as a MappedWorldStore, a tile at a time, so the memory used does not depend on the map size
+ * The map is the world of the same parameters in the application, in more detail: the noise is zoomed so the map
+ * covers the same part of the noise and the same climates, and octaves are added for the detail of the larger map
+ * The noise heights are normalised by the lowest and highest noise heights, which are only known once the whole
+ * map is computed; so they are estimated first from a grid of samples spread over the map, and the few pixels
+ * outside the estimated range are clamped to it
+ * The heights, temperatures and terrains are those of the first year; heat diffusion and the ocean connectivity
+ * need the whole map, so they are not computed
+ */
+public class StreamingWorldGenerator {
+    /** The default width and height of the tiles the map is generated in */
+    public static final int DEFAULT_TILE_SIZE = 1024;
+    /** The default number of samples along each side of the map used to estimate the noise range */
+    public static final int DEFAULT_SAMPLES = 1024;
+
+    /** The map width and height */
+    private final int width, height;
+    /** The noise of the heights and of the initial greenhouse gas levels */
+    private final NoiseField heightNoise, greenhouseNoise;
+    /** The number of map pixels per pixel of the application map */
+    private final float zoom;
+    /** The number of octaves of the height noise, with the ones added for the detail */
+    private final int octaves;
+    /** The world settings */
+    private final WorldSettings settings;
+
+    /**
+     * Set up the generation of a world
+     * @param width The map width
+     * @param height The map height
+     * @param settings The world settings (the seed and noise type)
+     * @param scale The scale for the noise
+     * @param octaves The number of octaves of the application world, to which octaves are added for the detail
+     * @param persistence The persistence for the noise
+     * @param lacunarity The lacunarity for the noise
+     * @param offsetX The horizontal offset for the noise
+     * @param offsetY The vertical offset for the noise
+     */
+    public StreamingWorldGenerator(int width, int height, WorldSettings settings, float scale, int octaves,
+                                   float persistence, float lacunarity, float offsetX, float offsetY) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Invalid map size " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        this.settings = settings;
+        zoom = (float) height / Constants.MAP_SIZE_Y;
+
+        // Every octave is lacunarity times finer than the previous one, so the octaves the zoom adds are the detail
+        // the application map is too small to show (the first octaves have the same offsets, so the same shapes)
+        int detail = zoom > 1 && lacunarity > 1 ? (int) Math.ceil(Math.log(zoom) / Math.log(lacunarity)) : 0;
+        this.octaves = octaves + detail;
+
+        // The noise is sampled at the pixels of a map of the application map height, so it keeps its shapes
+        int noiseWidth = Math.max(1, Math.round(width / zoom));
+        FastNoise.NoiseType noiseType = settings.getNoiseType();
+        heightNoise = new NoiseField(noiseWidth, Constants.MAP_SIZE_Y, noiseType, settings.getSeed(), scale,
+                this.octaves, persistence, lacunarity, offsetX, offsetY);
+        // The second layer of noise, for the initial greenhouse gas levels (the same as World.calculateMap)
+        Random r = new Random(settings.getSeed());
+        greenhouseNoise = new NoiseField(noiseWidth, Constants.MAP_SIZE_Y, noiseType, r.nextInt(),
+                2.5f, 5, 0.4f, 2.7f, 0, 0);
+    }
+
+    /**
+     * Get the number of octaves of the height noise
+     * @return The octaves, with the ones added for the detail
+     */
+    public int getOctaves() {
+        return octaves;
+    }
+
+    /**
+     * Generate the world into a grid
+     * @param grid The grid, of the map size
+     * @param samples The number of samples along each side of the map used to estimate the noise range
+     * @param tileSize The width and height of the tiles
+     * @return The parameters, the noise ranges and the world statistics, e.g. to store with the world
+     */
+    public Properties generate(WorldGrid grid, int samples, int tileSize) {
+        if (grid.getWidth() != width || grid.getHeight() != height) throw new IllegalArgumentException("The grid is "
+                + grid.getWidth() + "x" + grid.getHeight() + ", not " + width + "x" + height);
+        if (samples < 2 || tileSize < 1) throw new IllegalArgumentException("Invalid number of samples or tile size");
+
+        // The sea level and terrain sections of the first year
+        World.initWorld();
+
+        // Estimate the noise ranges
+        long start = System.nanoTime();
+        float[] heightRange = sampleRange(heightNoise, samples);
+        float[] greenhouseRange = sampleRange(greenhouseNoise, samples);
+        settings.printMessage(String.format("Sampled the noise range from %d pixels in %.2f s", samples * samples,
+                (System.nanoTime() - start) / 1e9));
+
+        LongAdder waterPixels = new LongAdder(), icePixels = new LongAdder(), clampedPixels = new LongAdder();
+        DoubleAdder totalTemperature = new DoubleAdder();
+        int tileRows = (height + tileSize - 1) / tileSize, tileColumns = (width + tileSize - 1) / tileSize;
+        for (int tileY = 0; tileY < tileRows; tileY++) {
+            int minY = tileY * tileSize, maxY = Math.min(height, minY + tileSize);
+            // The tiles of a row are generated at the same time, and write to nearby parts of the store
+            IntStream.range(0, tileColumns).parallel().forEach(tileX -> {
+                int minX = tileX * tileSize, maxX = Math.min(width, minX + tileSize);
+                long water = 0, ice = 0, clamped = 0;
+                double temperatures = 0;
+                for (int y = minY; y < maxY; y++) {
+                    // The sea level temperature only depends on the row
+                    float latitudeTemperature = TemperatureTables.latitudeTemperature(y, height);
+                    for (int x = minX; x < maxX; x++) {
+                        float noiseHeight = Noise.inverseLerp(heightRange[0], heightRange[1], heightNoise.sample(x / zoom, y / zoom));
+                        if (noiseHeight < 0 || noiseHeight > 1) {
+                            noiseHeight = Math.max(0, Math.min(1, noiseHeight));
+                            clamped++;
+                        }
+                        float greenhouse = Noise.inverseLerp(greenhouseRange[0], greenhouseRange[1], greenhouseNoise.sample(x / zoom, y / zoom));
+                        greenhouse = Math.max(0, Math.min(1, greenhouse));
+
+                        // The same temperature as World.setTemperature
+                        float heightTemperature = latitudeTemperature - (0.00649f * Math.abs(TemperatureTables.heightInMetres(noiseHeight)));
+                        float temperature = heightTemperature + greenhouse;
+                        int terrainID = TerrainSections.find(noiseHeight, temperature).found.getId();
+
+                        grid.setNoiseHeight(x, y, noiseHeight);
+                        grid.setGreenhouseGas(x, y, greenhouse);
+                        grid.setTemperature(x, y, temperature);
+                        grid.setTerrainId(x, y, terrainID);
+
+                        boolean isWater = Constants.WATER_TERRAINS.contains(terrainID);
+                        if (isWater) water++;
+                        else if (Constants.ICE_TERRAINS.contains(terrainID)) ice++;
+                        temperatures += temperature;
+                    }
+                }
+                waterPixels.add(water);
+                icePixels.add(ice);
+                clampedPixels.add(clamped);
+                totalTemperature.add(temperatures);
+            });
+            settings.printMessage(String.format("Generated rows %d to %d of %d in %.1f s", minY, maxY - 1, height,
+                    (System.nanoTime() - start) / 1e9));
+        }
+
+        double pixels = (double) width * height;
+        Properties properties = new Properties();
+        properties.setProperty("seed", "" + settings.getSeed());
+        properties.setProperty("noise", settings.getNoiseType().name());
+        properties.setProperty("octaves", "" + octaves);
+        properties.setProperty("height-range", heightRange[0] + "," + heightRange[1]);
+        properties.setProperty("greenhouse-range", greenhouseRange[0] + "," + greenhouseRange[1]);
+        properties.setProperty("clamped-pixels", "" + clampedPixels.sum());
+        properties.setProperty("average-temperature", format(totalTemperature.sum() / pixels));
+        properties.setProperty("water-percentage", format(waterPixels.sum() * 100 / pixels));
+        properties.setProperty("ice-percentage", format(icePixels.sum() * 100 / pixels));
+
+        settings.printMessage("Average world temperature: " + properties.getProperty("average-temperature") + "\u00B0" + "C");
+        settings.printMessage("Water percentage: " + properties.getProperty("water-percentage") + "%");
+        settings.printMessage("Ice percentage: " + properties.getProperty("ice-percentage") + "%");
+        settings.printMessage(String.format("Pixels outside the sampled noise range: %d (%.4f%%)", clampedPixels.sum(),
+                clampedPixels.sum() * 100 / pixels));
+        return properties;
+    }
+
+    /**
+     * Estimate the lowest and highest noise heights of the map from a grid of samples, each moved randomly
+     * inside its grid cell so the samples do not line up with the noise lattice
+     * @param field The noise
+     * @param samples The number of samples along each side of the map
+     * @return The lowest and highest noise heights found
+     */
+    private float[] sampleRange(NoiseField field, int samples) {
+        float cellWidth = (float) width / samples, cellHeight = (float) height / samples;
+        float[][] ranges = new float[samples][];
+        IntStream.range(0, samples).parallel().forEach(row -> {
+            // A generator per row, so the samples are the same whatever the number of threads
+            Random random = new Random(settings.getSeed() * 31L + row);
+            float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+            for (int column = 0; column < samples; column++) {
+                float x = (column + random.nextFloat()) * cellWidth, y = (row + random.nextFloat()) * cellHeight;
+                float noiseHeight = field.sample(x / zoom, y / zoom);
+                if (noiseHeight < min) min = noiseHeight;
+                if (noiseHeight > max) max = noiseHeight;
+            }
+            ranges[row] = new float[] {min, max};
+        });
+        float[] range = {Float.MAX_VALUE, -Float.MAX_VALUE};
+        for (float[] rowRange : ranges) {
+            range[0] = Math.min(range[0], rowRange[0]);
+            range[1] = Math.max(range[1], rowRange[1]);
+        }
+        return range;
+    }
+
+    /**
+     * Format a statistic the way the world statistics are printed
+     * @param value The value
+     * @return The value with two decimals
+     */
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
@@ -1,5 +1,6 @@
 package aib.environment;
 
+import aib.PackedColour;
 import javafx.scene.paint.Color;
 
 import java.util.ArrayList;
@@ -32,6 +33,45 @@ public class TemperatureSettings {
             new Temperature(60f, Color.rgb(130,0,0))
         ));
 
+    /**
+     * Get the colour of a temperature on the temperature map
+     * Temperatures outside the known bounds (-60 degrees and 60 degrees) get the colour of the nearest bound
+     * @param temperature The temperature
+     * @return The colour, packed into an int (see PackedColour)
+     */
+    public static int colour(float temperature) {
+        Temperature foundTemp = null, prevTemp = null;
+        /* The list temperatures is a collection of Temperature objects.
+         * A Temperature object has a value (degrees) and a colour (for the temperature colour map) associated with it
+         * Neighbouring entries in the list constitute ranges
+         * i.e. if we have the list [ {-15, Blue}, {0, Green}, {15, Red} ],
+         * we have 2 temperature ranges, (-15,0) and (0,15)
+         * For our temperature, we find the range it lies in (from this predefined set of temperature ranges)
+         * So we can use the range bounds colours to calculate the temperature colour for our current pixel
+         * It should be a mix between the colour bounds it lies between, and more similar to the one that it is closer to */
+        for (Temperature bound : temperatures) {
+            // if we find the upper bound (a temperature that is higher than our current one)
+            if(temperature < bound.value) {
+                // store the upper bound and end the search
+                foundTemp = bound;
+                break;
+            }
+            // the lower bound will be the one immediately before the found upper bound
+            prevTemp = bound;
+        }
+        if(prevTemp == null) return foundTemp.packedColour;
+        if(foundTemp == null) return prevTemp.packedColour;
+
+        // Compute the intensity, which informs which bound our temperature is closer to
+        // 0 < intensity < 1
+        float temperatureIntensity = (temperature - prevTemp.value) / (foundTemp.value - prevTemp.value);
+
+        // Using this intensity, create a colour that is a mix between the two bounds
+        // if intensity is closer to 0, the colour will be more like the lower bound colour
+        // if the intensity is closer to 1, the colour will be more like the upper bound colour
+        return PackedColour.mix(prevTemp.packedColour, foundTemp.packedColour, temperatureIntensity, 2);
+    }
+
     /**
      * Small inner class for temperature.
      * A temperature object hold a temperature value and an appropriate colour for that value
@@ -42,6 +82,8 @@ public class TemperatureSettings {
         public float value;
         /** An appropriate colour that is suggestive for the temperature value */
         public Color colour;
+        /** The same colour, packed into an int (see PackedColour) */
+        public int packedColour;
 
         /**
          * Create a new temperature for a given value and colour
@@ -51,6 +93,7 @@ public class TemperatureSettings {
         public Temperature(float value, Color colour) {
             this.value = value;
             this.colour = colour;
+            this.packedColour = PackedColour.fromColor(colour);
         }
     }
 }
@@ -0,0 +1,98 @@
+package aib.environment;
+
+import aib.Constants;
+
+/**
+ * Precomputed values used by the temperature calculation, shared by the map generation and the timeline updates.
+ * The latitude and the sea level temperature of a pixel only depend on its row, so they are computed once per row,
+ * and the factors that turn a noise height into metres only depend on the sea level, so they are computed
+ * once every time the sea level changes, instead of once per pixel.
+ */
+public class TemperatureTables {
+    /** The latitude (in degrees) of every row of the map */
+    private static float[] latitudes;
+    /** The sea level (0 meters) temperature of every row of the map */
+    private static float[] latitudeTemperatures;
+    /** The sea level the height factors were computed for */
+    private static float seaLevel;
+    /** The number of metres above sea level per unit of noise height, for heights above the sea level */
+    private static float metresPerHeightAbove;
+    /** The number of metres per unit of noise height, for heights below the sea level */
+    private static float metresPerHeightBelow;
+
+    static {
+        initRows(Constants.MAP_SIZE_Y);
+        setSeaLevel(Constants.BASE_SEA_LEVEL);
+    }
+
+    /**
+     * Compute the latitude and sea level temperature of every row
+     * @param mapHeight The number of rows of the map
+     */
+    public static void initRows(int mapHeight) {
+        latitudes = new float[mapHeight];
+        latitudeTemperatures = new float[mapHeight];
+        for (int y = 0; y < mapHeight; y++) {
+            // The latitude in pixels from the equator (positive in the north) and in degrees
+            int latitude = -(y - mapHeight/2);
+            latitudes[y] = latitude/(mapHeight/2/90f);
+            // The temperature at sea level (0 meters above water)
+            latitudeTemperatures[y] = 7.5f*(float)Math.cos((float)latitude/160) +12.5f;
+        }
+    }
+
+    /**
+     * Compute the factors that turn noise heights into metres for a sea level
+     * @param level The sea level
+     */
+    public static void setSeaLevel(float level) {
+        seaLevel = level;
+        // Heights between the sea level and the top of the noise range map to 0 to MAX_TERRAIN_HEIGHT metres
+        float rmax = 1f;
+        if (level >= rmax) rmax = level + 0.01f;
+        metresPerHeightAbove = Constants.MAX_TERRAIN_HEIGHT / (rmax - level);
+        // Heights between 0 and the sea level map to MIN_TERRAIN_HEIGHT to 0 metres
+        metresPerHeightBelow = -Constants.MIN_TERRAIN_HEIGHT / level;
+    }
+
+    /**
+     * Get the latitude of a row
+     * @param y The row
+     * @return The latitude, in degrees
+     */
+    public static float getLatitude(int y) {
+        return latitudes[y];
+    }
+
+    /**
+     * Get the sea level (0 meters) temperature of a row
+     * @param y The row
+     * @return The temperature
+     */
+    public static float getLatitudeTemperature(int y) {
+        return latitudeTemperatures[y];
+    }
+
+    /**
+     * Compute the sea level (0 meters) temperature of a row of a map of any height, without the tables
+     * The row is scaled to the rows of the application map, so a taller map spans the same climates (from the equator
+     * to the poles) rather than repeating them
+     * @param y The row
+     * @param mapHeight The number of rows of the map
+     * @return The temperature
+     */
+    public static float latitudeTemperature(long y, long mapHeight) {
+        float latitude = -(y - mapHeight/2) * ((float) Constants.MAP_SIZE_Y / mapHeight);
+        return 7.5f*(float)Math.cos(latitude/160) +12.5f;
+    }
+
+    /**
+     * Turn a noise height into metres above (or below) the sea level
+     * @param noiseHeight The noise height
+     * @return The height in metres
+     */
+    public static float heightInMetres(float noiseHeight) {
+        if (noiseHeight >= seaLevel) return (noiseHeight - seaLevel) * metresPerHeightAbove;
+        return Constants.MIN_TERRAIN_HEIGHT + noiseHeight * metresPerHeightBelow;
+    }
+}
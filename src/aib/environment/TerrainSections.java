@@ -1,5 +1,6 @@
 package aib.environment;
 
+import aib.PackedColour;
 import javafx.scene.paint.Color;
 
 import java.util.ArrayList;
@@ -174,6 +175,92 @@ public class TerrainSections {
         }});
     }
 
+    /**
+     * The terrain section a height and temperature fall in: the terrain found, and the terrain of the height section
+     * below it, whose colours are mixed so the terrains blend into each other
+     */
+    public static class Match {
+        /** The terrain found, and the terrain below it (null if there is none) */
+        public final TerrainType found, previous;
+        /** The top of the height section found, and of the section below it */
+        public final float foundHeight, previousHeight;
+
+        /**
+         * Create a match
+         * @param found The terrain found
+         * @param previous The terrain below it
+         * @param foundHeight The top of the height section found
+         * @param previousHeight The top of the section below it
+         */
+        Match(TerrainType found, TerrainType previous, float foundHeight, float previousHeight) {
+            this.found = found;
+            this.previous = previous;
+            this.foundHeight = foundHeight;
+            this.previousHeight = previousHeight;
+        }
+
+        /**
+         * Get the colour of the terrain at a height
+         * @param height The noise height the match was found for
+         * @return The colour, packed into an int (see PackedColour)
+         */
+        public int colour(float height) {
+            // Compute the intensity, which informs which of the two terrains ours is closer to
+            // 0 < intensity < 1
+            float intensity = (height - foundHeight) / (previousHeight - foundHeight);
+
+            // By default we want to have a smooth gradient between the terrain colours
+            int sharpen = 5;
+            // Except when the terrain type is ice. When we have ice, the transition should be crisp,
+            // because ice does not blend into terrain
+            if(found.getId() == 1)
+                sharpen = 64;
+
+            // Using this intensity, create a colour that is a mix between the previous and found terrain colours
+            // if intensity is closer to 0, the colour will be more like the found colour
+            // if the intensity is closer to 1, the colour will be more like the previous colour
+            return PackedColour.mix(found.getPackedColour(), previous.getPackedColour(), intensity, sharpen);
+        }
+    }
+
+    /**
+     * Find the terrain section of a height and temperature
+     * @param height The noise height
+     * @param temperature The temperature
+     * @return The terrain found and the one below it
+     */
+    public static Match find(float height, float temperature) {
+        float foundHeight = -1f, prevHeight = -1f;
+        int prevID = -1, foundID = -1;
+        // Name the outer loop so we can break out of it from a nested loop
+        outerloop:
+        for(Map.Entry<Integer,Map<Float,Integer>> tempSec : sections.entrySet()) {
+            /* To find the terrain we take a similar approach as with the temperature colour
+             * sections is a map of terrain types, sorted by temperature and height
+             * i.e. the terrain type is predetermined by the temperature and height
+             * one temperature and height pair only has one terrain type associated with it
+             * we must find that terrain type for our current temperature and height pair
+             * So, we first find the right temperature range
+             */
+            if(temperature < tempSec.getKey()) {
+                /* And, inside that temperature range, we must find the height range */
+                for (Map.Entry<Float,Integer> heightSec : tempSec.getValue().entrySet()) {
+                    if(height < heightSec.getKey()) {
+                        // By finding both of those, we determine the terrain our pixel needs to have
+                        foundHeight = heightSec.getKey();
+                        foundID = heightSec.getValue();
+                        // When we find the terrain that fits the criteria, stop looking
+                        break outerloop;
+                    }
+                    // The previous terrain will be the one immediately preceding the current one we found
+                    prevHeight = heightSec.getKey();
+                    prevID = heightSec.getValue();
+                }
+            }
+        }
+        return new Match(getTerrainByID(foundID), getTerrainByID(prevID), foundHeight, prevHeight);
+    }
+
     /**
      * Print the map of terrain sections
      * useful to see map values after sea level changes
@@ -0,0 +1,95 @@
+package aib.environment;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of terrain type IDs, kept as a 64 bit mask (bit n is set if the terrain with ID n is in the set).
+ * Checking if a terrain is in the set is a single bit test, without boxing the ID or allocating anything,
+ * so it can be done for every pixel of the map.
+ */
+public final class TerrainSet {
+    /** The highest terrain ID that fits in a terrain set */
+    public static final int MAX_TERRAIN_ID = 63;
+
+    /** The mask of the terrains in the set */
+    private final long mask;
+
+    /**
+     * Create a set from its mask
+     * @param mask The mask of the terrains in the set
+     */
+    private TerrainSet(long mask) {
+        this.mask = mask;
+    }
+
+    /**
+     * Create a set of terrains
+     * @param terrainIDs The IDs of the terrains in the set
+     * @return The terrain set
+     * @throws IllegalArgumentException If an ID does not fit in a terrain set
+     */
+    public static TerrainSet of(int... terrainIDs) {
+        long mask = 0;
+        for (int terrainID : terrainIDs) {
+            checkID(terrainID);
+            mask |= 1L << terrainID;
+        }
+        return new TerrainSet(mask);
+    }
+
+    /**
+     * Check that a terrain ID fits in a terrain set
+     * @param terrainID The terrain ID
+     * @throws IllegalArgumentException If the ID does not fit
+     */
+    public static void checkID(int terrainID) {
+        if (terrainID < 0 || terrainID > MAX_TERRAIN_ID)
+            throw new IllegalArgumentException("Terrain ID " + terrainID + " does not fit in a terrain set (0 to " + MAX_TERRAIN_ID + ")");
+    }
+
+    /**
+     * Check if a terrain is in the set
+     * @param terrainID The terrain ID
+     * @return If the terrain is in the set (IDs that do not fit in a terrain set never are)
+     */
+    public boolean contains(int terrainID) {
+        return terrainID >= 0 && terrainID <= MAX_TERRAIN_ID && (mask & (1L << terrainID)) != 0;
+    }
+
+    /**
+     * Get the number of terrains in the set
+     * @return The number of terrains
+     */
+    public int size() {
+        return Long.bitCount(mask);
+    }
+
+    /**
+     * Get the IDs of the terrains in the set
+     * @return The terrain IDs, in increasing order
+     */
+    public int[] toArray() {
+        int[] terrainIDs = new int[size()];
+        long remaining = mask;
+        for (int i = 0; remaining != 0; i++) {
+            terrainIDs[i] = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+        }
+        return terrainIDs;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof TerrainSet && ((TerrainSet) other).mask == mask;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(mask);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
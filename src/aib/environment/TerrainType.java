@@ -1,5 +1,6 @@
 package aib.environment;
 
+import aib.PackedColour;
 import javafx.scene.paint.Color;
 
 /**
@@ -11,6 +12,8 @@ public class TerrainType {
     private String name;
     /** The base colour for this type of terrain */
     private Color colour;
+    /** The base colour, packed into an int (see PackedColour) */
+    private int packedColour;
     /** The identifier for this terrain type */
     private int id;
 
@@ -23,6 +26,8 @@ public class TerrainType {
     public TerrainType(String name, Color colour, int id) {
         this.setName(name);
         this.setColour(colour);
+        // Terrain IDs are kept in terrain sets, so they must fit in one
+        TerrainSet.checkID(id);
         this.id = id;
     }
 
@@ -56,6 +61,15 @@ public class TerrainType {
      */
     public void setColour(Color colour) {
         this.colour = colour;
+        this.packedColour = PackedColour.fromColor(colour);
+    }
+
+    /**
+     * Get the colour for this terrain type, packed into an int
+     * @return The packed colour of the terrain (see PackedColour)
+     */
+    public int getPackedColour() {
+        return packedColour;
     }
 
     /**
@@ -1,23 +1,55 @@
 package aib.environment;
 
 import aib.Constants;
-import aib.Main;
+import aib.PackedColour;
 import aib.Renderer;
-import aib.life.Animal;
-import javafx.scene.paint.Color;
+import aib.life.AnimalGrid;
+import aib.life.AnimalStore;
+import aib.life.Migration;
+import aib.life.SpeciesTable;
 
 import java.util.*;
 
-import static aib.Main.userInterface;
-
 /**
  * The static World class handles
  */
 public class World {
+    /** The settings the world is generated and updated with (set by the user interface, or by a tool running without it) */
+    public static WorldSettings settings;
     /** The map of pixels */
     public static Pixel[][] pixels = new Pixel[Constants.MAP_SIZE_X][Constants.MAP_SIZE_Y];
-    /** The list of animals in the world */
-    private static List<Animal> animals = new ArrayList<>();
+    /** The animals in the world */
+    private static AnimalStore animals = new AnimalStore();
+    /** The spatial index over the animals in the world, used to find animals by their position on the map */
+    private static AnimalGrid animalGrid = new AnimalGrid(Constants.MAP_SIZE_X, Constants.MAP_SIZE_Y);
+    /** The index of the first animal on each pixel of the map (or -1), indexed by the pixel index (see pixelIndex) */
+    private static int[] firstAnimalOnPixel = new int[Constants.MAP_SIZE_X * Constants.MAP_SIZE_Y];
+    /** The index of the next animal on the same pixel (or -1), for each animal */
+    private static int[] nextAnimalOnPixel = new int[0];
+    /** The number of alive individuals of each species, indexed by the species ID */
+    private static int[] aliveCounts = new int[SpeciesTable.size()];
+    /** The number of dead individuals of each species, indexed by the species ID */
+    private static int[] deadCounts = new int[SpeciesTable.size()];
+    /** The pixels whose terrain type changed in the last map update, indexed by the pixel index */
+    private static BitSet dirtyPixels = new BitSet(Constants.MAP_SIZE_X * Constants.MAP_SIZE_Y);
+    /** The number of map tile columns (see Constants.MAP_TILE_SIZE) */
+    private static final int TILE_COLUMNS = (Constants.MAP_SIZE_X + Constants.MAP_TILE_SIZE - 1) / Constants.MAP_TILE_SIZE;
+    /** The map tiles (index tileY * TILE_COLUMNS + tileX) in which the terrain or temperature colour of a pixel
+     * changed since they were last taken by the renderer (see takeDirtyTiles) */
+    private static BitSet dirtyTiles = new BitSet();
+    /** The number of worlds generated so far, so the renderer knows when the whole map changed */
+    private static int generation;
+    /** Which pixels below the sea level are connected to the ocean, so only those flood when the sea rises */
+    private static OceanConnectivity oceanConnectivity;
+    /** The distance from every pixel to the coast */
+    private static CoastDistance coastDistance = new CoastDistance(Constants.MAP_SIZE_X, Constants.MAP_SIZE_Y);
+    /** The summed-area tables used to get the statistics of any region of the map */
+    private static RegionStats regionStats = new RegionStats(Constants.MAP_SIZE_X, Constants.MAP_SIZE_Y);
+    /** The final temperature of every pixel before heat diffusion (index y * MAP_SIZE_X + x), which every update
+     * diffuses again from, so diffusion does not build up on the pixels whose temperature is not recalculated */
+    private static final float[] undiffusedTemperatures = new float[Constants.MAP_SIZE_X * Constants.MAP_SIZE_Y];
+    /** The pixels of the map, as a grid (see WorldGrid) */
+    private static final WorldGrid grid = new PixelGrid();
 
     /** The variable that tracks the year the world is in, necessary when the user changes to a new year
      * so we know how much time has passed and thus how big the changes in the world should be */
@@ -49,8 +81,9 @@ public class World {
     public static void initWorld() {
         prevYear = 2000;
         SEA_LEVEL = Constants.BASE_SEA_LEVEL;
-        // Initialise the terrain sections map with the set SEA LEVEL
+        // Initialise the terrain sections map and the height scale factors with the set SEA LEVEL
         TerrainSections.initSectionsMap();
+        TemperatureTables.setSeaLevel(SEA_LEVEL);
 //        ICE_MELTED_SEA_LEVEL = (7-7*Constants.BASE_SEA_LEVEL)/250f + Constants.BASE_SEA_LEVEL;
         ICE_MELTED_SEA_LEVEL = 0.7f;
         lowestPoint = Integer.MAX_VALUE;
@@ -64,19 +97,232 @@ public class World {
     }
 
     /**
-     * Get the list of animals in the world
-     * @return The list of animals
+     * Get the animals in the world
+     * @return The animal store
      */
-    public static List<Animal> getAnimals() {
+    public static AnimalStore getAnimals() {
         return animals;
     }
 
     /**
-     * Set the list of animals in the world
-     * @param animals The list of animals
+     * Set the animals in the world
+     * @param animals The animal store
      */
-    public static void setAnimals(List<Animal> animals) {
+    public static void setAnimals(AnimalStore animals) {
         World.animals = animals;
+        animalGrid.rebuild(animals);
+
+        // Index the animals by the pixel they are on, and count the individuals of each species
+        Arrays.fill(firstAnimalOnPixel, -1);
+        nextAnimalOnPixel = new int[animals.size()];
+        Arrays.fill(aliveCounts, 0);
+        Arrays.fill(deadCounts, 0);
+        for (int animal = 0; animal < animals.size(); animal++) {
+            int pixel = pixelIndex(animals.getX(animal), animals.getY(animal));
+            nextAnimalOnPixel[animal] = firstAnimalOnPixel[pixel];
+            firstAnimalOnPixel[pixel] = animal;
+            if (animals.isAlive(animal)) aliveCounts[animals.getSpecies(animal)]++;
+            else deadCounts[animals.getSpecies(animal)]++;
+        }
+    }
+
+    /**
+     * Remove all the animals from the world
+     */
+    public static void clearAnimals() {
+        setAnimals(new AnimalStore());
+    }
+
+    /**
+     * Change the state of an animal, keeping the species counters up to date
+     * @param animal The index of the animal
+     * @param alive The new state of the animal
+     */
+    private static void setAnimalAlive(int animal, boolean alive) {
+        if (animals.isAlive(animal) == alive) return;
+        animals.setAlive(animal, alive);
+        int species = animals.getSpecies(animal);
+        aliveCounts[species] += (alive) ? 1 : -1;
+        deadCounts[species] += (alive) ? -1 : 1;
+    }
+
+    /**
+     * Move an animal to a new position, keeping the animal grid and the pixel index up to date
+     * @param animal The index of the animal
+     * @param x The new x coordinate of the animal
+     * @param y The new y coordinate of the animal
+     */
+    private static void moveAnimal(int animal, int x, int y) {
+        animalGrid.remove(animal);
+
+        // Unlink the animal from the animals on its old pixel
+        int pixel = pixelIndex(animals.getX(animal), animals.getY(animal));
+        if (firstAnimalOnPixel[pixel] == animal) {
+            firstAnimalOnPixel[pixel] = nextAnimalOnPixel[animal];
+        } else {
+            for (int a = firstAnimalOnPixel[pixel]; a != -1; a = nextAnimalOnPixel[a]) {
+                if (nextAnimalOnPixel[a] == animal) {
+                    nextAnimalOnPixel[a] = nextAnimalOnPixel[animal];
+                    break;
+                }
+            }
+        }
+
+        animals.setX(animal, x);
+        animals.setY(animal, y);
+
+        // Link it to the animals on its new pixel
+        pixel = pixelIndex(x, y);
+        nextAnimalOnPixel[animal] = firstAnimalOnPixel[pixel];
+        firstAnimalOnPixel[pixel] = animal;
+        animalGrid.add(animal);
+    }
+
+    /**
+     * Get the number of alive individuals of a species
+     * @param species The species ID
+     * @return The number of alive individuals
+     */
+    public static int getAliveCount(int species) {
+        return aliveCounts[species];
+    }
+
+    /**
+     * Get the number of dead individuals of a species
+     * @param species The species ID
+     * @return The number of dead individuals
+     */
+    public static int getDeadCount(int species) {
+        return deadCounts[species];
+    }
+
+    /**
+     * Get the average temperature of the world
+     * @return The average temperature
+     */
+    public static float getAverageTemperature() {
+        return averageWorldTemperature;
+    }
+
+    /**
+     * Get the average temperature of the world when it was generated (in 2000)
+     * @return The initial average temperature
+     */
+    public static float getInitialAverageTemperature() {
+        return initialAverageTemperature;
+    }
+
+    /**
+     * Get the percentage of the map covered by water
+     * @return The water percentage
+     */
+    public static float getWaterPercentage() {
+        return (waterPixels *100.0f)/(Constants.MAP_SIZE_Y * Constants.MAP_SIZE_X);
+    }
+
+    /**
+     * Get the percentage of the map covered by ice
+     * @return The ice percentage
+     */
+    public static float getIcePercentage() {
+        return (icePixels *100.0f)/(Constants.MAP_SIZE_Y * Constants.MAP_SIZE_X);
+    }
+
+    /**
+     * Get the index of a pixel, used to identify it in the pixel indexed structures
+     * Pixels are indexed row by row, so the index of (x, y) is y * map width + x
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @return The pixel index
+     */
+    public static int pixelIndex(int x, int y) {
+        return y * Constants.MAP_SIZE_X + x;
+    }
+
+    /**
+     * Get the x coordinate of a pixel from its index
+     * @param index The pixel index
+     * @return The x coordinate of the pixel
+     */
+    public static int pixelX(int index) {
+        return index % Constants.MAP_SIZE_X;
+    }
+
+    /**
+     * Get the y coordinate of a pixel from its index
+     * @param index The pixel index
+     * @return The y coordinate of the pixel
+     */
+    public static int pixelY(int index) {
+        return index / Constants.MAP_SIZE_X;
+    }
+
+    /**
+     * Mark the map tile a pixel is in as changed
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     */
+    private static void markTileDirty(int x, int y) {
+        dirtyTiles.set((y / Constants.MAP_TILE_SIZE) * TILE_COLUMNS + x / Constants.MAP_TILE_SIZE);
+    }
+
+    /**
+     * Take the map tiles (index tileY * tileColumns + tileX, see Constants.MAP_TILE_SIZE) in which the terrain or
+     * temperature colour of any pixel changed since the last time they were taken
+     * This is called on the javafx application thread once the update thread finished (see TemperatureThread)
+     * @return The changed tiles
+     */
+    public static BitSet takeDirtyTiles() {
+        BitSet tiles = dirtyTiles;
+        dirtyTiles = new BitSet();
+        return tiles;
+    }
+
+    /**
+     * Get the number of worlds generated so far, which changes every time a new world is generated
+     * @return The world generation number
+     */
+    public static int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Get the statistics of a rectangular region of the map
+     * @param minX The x coordinate of the first column of the region
+     * @param minY The y coordinate of the first row of the region
+     * @param maxX The x coordinate of the column after the last column of the region
+     * @param maxY The y coordinate of the row after the last row of the region
+     * @return The statistics of the region
+     */
+    public static RegionStats.Region getRegionStats(int minX, int minY, int maxX, int maxY) {
+        return regionStats.query(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Get the distance from a pixel to the coast
+     * (for land pixels, to the nearest water pixel, and for water pixels, to the nearest land pixel)
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @return The distance, in pixels
+     */
+    public static float getCoastDistance(int x, int y) {
+        return coastDistance.getDistance(pixelIndex(x, y));
+    }
+
+    /**
+     * Get the spatial index over the animals in the world
+     * @return The animal grid
+     */
+    public static AnimalGrid getAnimalGrid() {
+        return animalGrid;
+    }
+
+    /**
+     * Get the pixels of the map as a grid, for code that also works on worlds kept outside the heap
+     * @return The grid
+     */
+    public static WorldGrid getGrid() {
+        return grid;
     }
 
     /**
@@ -92,15 +338,19 @@ public class World {
     public static void calculateMap(int seed, float scale, int octaves, float persistence, float lacunarity, float offsetX, float offsetY) {
 
         // Clear the list of animals
-        World.getAnimals().clear();
+        clearAnimals();
+        dirtyPixels.clear();
         initWorld();
+        // The whole map changes, so the renderer draws it all rather than the dirty tiles
+        generation++;
+        dirtyTiles = new BitSet();
 
         // Create the Perlin noise height map
         float[][] noiseMap = Noise.generateNoiseMap(Constants.MAP_SIZE_X, Constants.MAP_SIZE_Y,
                 seed,scale,octaves,persistence,lacunarity,offsetX,offsetY);
 
         // Create a second layer of Perlin noise, for the initial greenhouse gas levels
-        Random r = new Random(Integer.parseInt(Main.userInterface.seedField.getText()));
+        Random r = new Random(seed);
         float[][] greenhouseMap = Noise.generateNoiseMap(Constants.MAP_SIZE_X, Constants.MAP_SIZE_Y,
                 r.nextInt(),2.5f,5,0.4f,2.7f,0,0);
 
@@ -115,26 +365,50 @@ public class World {
 
                 // Set the pixel temperature
                 setTemperature(x,y);
+            }
+        }
+
+        // Find which parts of the map the ocean can reach
+        float[] heights = new float[Constants.MAP_SIZE_X * Constants.MAP_SIZE_Y];
+        for (int x = 0; x < pixels.length; x++) {
+            for (int y = 0; y < pixels[x].length; y++) {
+                heights[pixelIndex(x, y)] = noiseMap[x][y];
+            }
+        }
+        oceanConnectivity = new OceanConnectivity(heights, Constants.MAP_SIZE_X, Constants.MAP_SIZE_Y, SEA_LEVEL);
+
+        // Let heat spread between neighbouring pixels, if the user asked for it
+        int diffusionIterations = settings.getDiffusionIterations();
+        if(diffusionIterations > 0) diffuseTemperature(diffusionIterations);
 
+        coastDistance.reset();
+        for (int x = 0; x < pixels.length; x++) {
+            for (int y = 0; y < pixels[x].length; y++) {
                 // Set the pixel terrain and terrain colour
-                Color terrainColour = getTerrain(x, y);
+                int terrainColour = getTerrain(x, y);
                 pixels[x][y].setColour(terrainColour);
 
                 // Count the number of water pixels
-                if(Constants.WATER_TERRAINS.contains(pixels[x][y].getTerrainType().getId())) waterPixels++;
+                boolean isWater = Constants.WATER_TERRAINS.contains(pixels[x][y].getTerrainType().getId());
+                if(isWater) waterPixels++;
                 // And the number of ice pixels
-                else if(Constants.ICE_TERRAINS.contains(pixels[x][y].getTerrainType().getId())) icePixels++;
+                boolean isIce = !isWater && Constants.ICE_TERRAINS.contains(pixels[x][y].getTerrainType().getId());
+                if(isIce) icePixels++;
+                coastDistance.setWater(pixelIndex(x, y), isWater);
+                regionStats.add(x, y, pixels[x][y].getTemperature(), pixels[x][y].getGreenhouseGasFactor(), isWater, isIce);
             }
         }
+        // Find the distance from every pixel to the coast
+        coastDistance.update();
 
         // Calculate the average world temperature
         averageWorldTemperature = totalMapTemperature / (pixels.length * pixels[0].length);
         initialAverageTemperature = averageWorldTemperature;
         // Display the temperature to the user
-        Main.userInterface.printToUserTextBox("Average world temperature: " + String.format("%.2f",averageWorldTemperature) + "\u00B0" + "C");
+        settings.printMessage("Average world temperature: " + String.format("%.2f",averageWorldTemperature) + "\u00B0" + "C");
         // Display the percentage of water and ice on the map to the user
-        Main.userInterface.printToUserTextBox("Water percentage: " +  String.format("%.2f",(waterPixels *100.0f)/(Constants.MAP_SIZE_Y * Constants.MAP_SIZE_X)) + "%");
-        Main.userInterface.printToUserTextBox("Ice percentage: " +  String.format("%.2f",(icePixels *100.0f)/(Constants.MAP_SIZE_Y * Constants.MAP_SIZE_X)) + "%");
+        settings.printMessage("Water percentage: " +  String.format("%.2f",(waterPixels *100.0f)/(Constants.MAP_SIZE_Y * Constants.MAP_SIZE_X)) + "%");
+        settings.printMessage("Ice percentage: " +  String.format("%.2f",(icePixels *100.0f)/(Constants.MAP_SIZE_Y * Constants.MAP_SIZE_X)) + "%");
     }
 
     /**
@@ -145,15 +419,12 @@ public class World {
     public static void setTemperature(int x, int y) {
         // Get the pixel at these coordinates
         Pixel pixel = pixels[x][y];
-        // Calculate the pixel latitude
-        int latitude = -(y - Constants.MAP_SIZE_Y/2);
-        // Set the point latitude
-        pixel.setLatitude(latitude/(Constants.MAP_SIZE_Y/2/90f));
+        // Set the point latitude (the same for the whole row)
+        pixel.setLatitude(TemperatureTables.getLatitude(y));
 
         // First step of temperature calculation:
-        // Calculate sea level (0 meters above water) temperature
-        float latitudeTemperature = 7.5f*(float)Math.cos((float)latitude/160) +12.5f;
-        pixel.setLatitudeTemperature(latitudeTemperature);
+        // Get the sea level (0 meters above water) temperature, which only depends on the row
+        pixel.setLatitudeTemperature(TemperatureTables.getLatitudeTemperature(y));
 
         // Second step of temperature calculation:
         // Calculate the temperature at any height, given the temperature at sea level
@@ -179,14 +450,9 @@ public class World {
     public static float calculateHeightTemperature(int x, int y) {
         Pixel pixel = pixels[x][y];
 
-        // Calculate the pixel height in meters (above or below sea level)
-        float terrHeight;
-        if(pixel.getNoiseHeight() >= SEA_LEVEL) {
-            float rmax = 1f;
-            if (SEA_LEVEL >= rmax) rmax = SEA_LEVEL + 0.01f;
-            terrHeight = Renderer.scaleToRange(SEA_LEVEL, rmax, 0f, Constants.MAX_TERRAIN_HEIGHT, pixel.getNoiseHeight());
-        } else
-            terrHeight = Renderer.scaleToRange(0,SEA_LEVEL, Constants.MIN_TERRAIN_HEIGHT,0f,pixel.getNoiseHeight());
+        // Calculate the pixel height in meters (above or below sea level),
+        // with the scale factors precomputed for the current sea level
+        float terrHeight = TemperatureTables.heightInMetres(pixel.getNoiseHeight());
 
         pixel.setTerrainHeight(terrHeight);
 
@@ -206,10 +472,38 @@ public class World {
     public static float calculateFinalTemperature(int x, int y) {
         // Deviate the temperature by the greenhouse gas factor
         float finalTemperature = pixels[x][y].getHeightTemperature() + pixels[x][y].getGreenhouseGasFactor();
+        undiffusedTemperatures[pixelIndex(x, y)] = finalTemperature;
         findPixelTemperatureColour(x,y,finalTemperature);
         return finalTemperature;
     }
 
+    /**
+     * Spread heat between neighbouring pixels, starting from the final temperature of every pixel before diffusion
+     * (so the same number of iterations spreads heat as far after any number of updates),
+     * and update the temperature colours and the temperature totals accordingly
+     * @param iterations The number of diffusion iterations (the more, the further heat spreads)
+     */
+    public static void diffuseTemperature(int iterations) {
+        int width = pixels.length;
+        int height = pixels[0].length;
+
+        float[] diffused = HeatDiffusion.diffuse(undiffusedTemperatures, width, height, iterations, HeatDiffusion.DIFFUSION_RATE);
+
+        // Refresh the temperature totals with the diffused temperatures
+        totalMapTemperature = 0;
+        minTemp = 100f;
+        maxTemp = -100f;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                float temperature = diffused[y * width + x];
+                findPixelTemperatureColour(x, y, temperature);
+                if(temperature < minTemp) minTemp = temperature;
+                if(temperature > maxTemp) maxTemp = temperature;
+                totalMapTemperature += temperature;
+            }
+        }
+    }
+
     /**
      * Set the pixel temperature colour for the temperature map
      * @param x The x coordinate of the pixel
@@ -217,113 +511,54 @@ public class World {
      * @param finalTemperature The pixel final temperature
      */
     public static void findPixelTemperatureColour(int x, int y, float finalTemperature) {
-        Color temperatureColour;
-        TemperatureSettings.Temperature foundTemp = null, prevTemp = null;
-        /* The list TemperatureSettings.temperatures is a collection of Temperature objects.
-         * A Temperature object has a value (degrees) and a colour (for the temperature colour map) associated with it
-         * Neighbouring entries in the list constitute ranges
-         * i.e. if we have the list [ {-15, Blue}, {0, Green}, {15, Red} ],
-         * we have 2 temperature ranges, (-15,0) and (0,15)
-         * For our temperature, we find the range it lies in (from this predefined set of temperature ranges)
-         * So we can use the range bounds colours to calculate the temperature colour for our current pixel
-         * It should be a mix between the colour bounds it lies between, and more similar to the one that it is closer to */
-        for (TemperatureSettings.Temperature temperature : TemperatureSettings.temperatures) {
-            // if we find the upper bound (a temperature that is higher than our current one)
-            if(finalTemperature < temperature.value) {
-                // store the upper bound and end the search
-                foundTemp = temperature;
-                break;
-            }
-            // the lower bound will be the one immediately before the found upper bound
-            prevTemp = temperature;
-        }
-
         // The temperature should never be out of known bounds (-60 degrees and 60 degrees)
-        if(prevTemp == null) System.out.println("Temperature is lower than -60 degrees;" +
+        List<TemperatureSettings.Temperature> temperatures = TemperatureSettings.temperatures;
+        if(finalTemperature < temperatures.get(0).value) System.out.println("Temperature is lower than -60 degrees;" +
                                                 " current temperature: " + finalTemperature);
-        if(foundTemp == null) System.out.println("Temperature is higher than 60 degrees;" +
+        if(finalTemperature >= temperatures.get(temperatures.size() - 1).value) System.out.println("Temperature is higher than 60 degrees;" +
                                                  " current temperature: " + finalTemperature +
                                                  " noise height: " + pixels[x][y].getNoiseHeight());
 
-        // Compute the intensity, which informs which bound our temperature is closer to
-        // 0 < intensity < 1
-        float temperatureIntensity = (finalTemperature - prevTemp.value) / (foundTemp.value - prevTemp.value);
-
-        // Using this intensity, create a colour that is a mix between the two bounds
-        // if intensity is closer to 0, the colour will be more like the lower bound colour
-        // if the intensity is closer to 1, the colour will be more like the upper bound colour
-        temperatureColour = Renderer.generateColor(prevTemp.colour, foundTemp.colour, temperatureIntensity, 0,2);
-        pixels[x][y].setTemperature(new TemperatureSettings.Temperature(finalTemperature,temperatureColour));
+        // The colour between the colours of the temperature range it lies in (see TemperatureSettings.colour)
+        int temperatureColour = TemperatureSettings.colour(finalTemperature);
+        if(temperatureColour != pixels[x][y].getTemperatureColour()) markTileDirty(x, y);
+        pixels[x][y].setTemperature(finalTemperature);
+        pixels[x][y].setTemperatureColour(temperatureColour);
     }
 
     /**
      * Set the type of terrain and colour on a pixel
      * @param x The x coordinate of the pixel
      * @param y The y coordinate of the pixel
-     * @return The colour for the terrain on the pixel
+     * @return The colour for the terrain on the pixel, packed into an int (see PackedColour)
      */
-    public static Color getTerrain(int x, int y){
+    public static int getTerrain(int x, int y){
         // Get the pixel at these coordinates
         Pixel pixel = pixels[x][y];
 
-        float foundHeight = -1f, prevHeight = -1f;
-        int prevID = -1, foundID = -1;
-        // Name the outer loop so we can break out of it from a nested loop
-        outerloop:
-        for(Map.Entry<Integer,Map<Float,Integer>> tempSec : TerrainSections.sections.entrySet()) {
-            /* To find the terrain we take a similar approach as with the temperature colour
-             * TerrainSections.section is a map of terrain types, sorted by temperature and height
-             * i.e. the terrain type is predetermined by the temperature and height
-             * one temperature and height pair only has one terrain type associated with it
-             * we must find that terrain type for our current temperature and height pair
-             * Sp, we first find the right temperature range
-             */
-            if(pixel.getTemperature().value < tempSec.getKey()) {
-                /* And, inside that temperature range, we must find the height range */
-                for (Map.Entry<Float,Integer> heightSec : tempSec.getValue().entrySet()) {
-                    if(pixel.getNoiseHeight() < heightSec.getKey()) {
-                        // By finding both of those, we determine the terrain our pixel needs to have
-                        foundHeight = heightSec.getKey();
-                        foundID = heightSec.getValue();
-                        // When we find the terrain that fits the criteria, stop looking
-                        break outerloop;
-                    }
-                    // The previous terrain will be the one immediately preceding the current one we found
-                    prevHeight = heightSec.getKey();
-                    prevID = heightSec.getValue();
-                }
-            }
+        // Land that sank below the risen sea level only becomes water if the ocean can reach it,
+        // otherwise it stays the lowest land terrain (water below the base sea level is always water)
+        float height = pixel.getNoiseHeight();
+        if (height < SEA_LEVEL && height >= Constants.BASE_SEA_LEVEL && oceanConnectivity != null
+                && !oceanConnectivity.isFlooded(pixelIndex(x, y))) {
+            height = SEA_LEVEL;
         }
 
-        // Compute the intensity, which informs which of the two terrains ours is closer to
-        // 0 < intensity < 1
-        float intensity = (pixel.getNoiseHeight() - foundHeight) / (prevHeight - foundHeight);
+        // Find the terrain section of the height and temperature (see TerrainSections.find)
+        TerrainSections.Match match = TerrainSections.find(height, pixel.getTemperature());
 
-        // By default we want to have a smooth gradient between the terrain colours
-        int function = 0;
-        // Except when the terrain type is ice. When we have ice, the transition should be crisp,
-        // because ice does not blend into terrain
-        if(foundID == 1)
-            function = 1;
-
-        // Get the terrains by the ids
-        TerrainType found, prev;
-        found = TerrainSections.getTerrainByID(foundID);
-        prev = TerrainSections.getTerrainByID(prevID);
+        TerrainType found = match.found, prev = match.previous;
 
         // Set the terrain type on the pixel
         pixel.setTerrainType(found);
 
         // The terrain should never be out of known bounds (noise height below 0 or above 1)
         if(found == null) System.out.println("Noise height is above 1; noise height: " + pixel.getNoiseHeight() +
-                                            "; temperature: " + pixel.getTemperature().value);
+                                            "; temperature: " + pixel.getTemperature());
         if(prev == null) System.out.println("Noise height is below 0; noise height: " + pixel.getNoiseHeight() +
-                                            "; temperature: " + pixel.getTemperature().value + " found: " + found.getName() );
+                                            "; temperature: " + pixel.getTemperature() + " found: " + found.getName() );
 
-        // Using this intensity, create a colour that is a mix between the previous and found terrain colours
-        // if intensity is closer to 0, the colour will be more like the found colour
-        // if the intensity is closer to 1, the colour will be more like the previous colour
-        return Renderer.generateColor(found.getColour(), prev.getColour(), intensity, function,5);
+        return match.colour(height);
     }
 
     /**
@@ -361,6 +596,11 @@ public class World {
                 TerrainSections.initSectionsMap();
             }
         }
+
+        // Update the height scale factors for the new sea level
+        TemperatureTables.setSeaLevel(SEA_LEVEL);
+        // Flood the newly submerged pixels the ocean can reach
+        if (oceanConnectivity != null) oceanConnectivity.setSeaLevel(SEA_LEVEL);
     }
 
     /**
@@ -378,16 +618,45 @@ public class World {
      * @param increase If the map temperature should increase or decrease
      */
     public static void updateMapCalculation(int decades, boolean increase) {
+        updateMapCalculation(decades, increase, settings.getYear());
+    }
+
+    /**
+     * Deal with all calculation necessary to update the map after the year changed
+     * @param decades How many decades the year changed by
+     * @param increase If the map temperature should increase or decrease
+     * @param year The year the map is updated to (so it can be updated without moving the timeline slider)
+     */
+    public static void updateMapCalculation(int decades, boolean increase, double year) {
         // Refresh global variables that track temperature and water and ice percentages
         totalMapTemperature = 0;
         waterPixels = 0;
         icePixels = 0;
+        dirtyPixels.clear();
 
         // If temperature needs to increase, increase the sea level
         // otherwise, decrease the sea level
         float sl = (increase) ? 0.0012f*decades : -0.0012f*decades;
         updateSeaLevel(sl);
 
+        // The pixels whose final temperature was recalculated
+        BitSet recalculated = new BitSet(pixels.length * pixels[0].length);
+
+        // When dispersion is on, the greenhouse gas spreads out from where it was in 2000,
+        // further the more years passed since then
+        float[] dispersedGreenhouse = null;
+        float elapsedDecades = (float) (year - 2000) / 10;
+        if(settings.isGreenhouseDispersion()) {
+            float[] initialGreenhouse = new float[pixels.length * pixels[0].length];
+            for(int x = 0; x < pixels.length; x++) {
+                for(int y = 0; y < pixels[x].length; y++) {
+                    initialGreenhouse[pixelIndex(x, y)] = pixels[x][y].getGreenhouseHeight();
+                }
+            }
+            dispersedGreenhouse = GreenhouseDispersion.disperse(initialGreenhouse, pixels.length, pixels[0].length,
+                    GreenhouseDispersion.kernelWidth(elapsedDecades * 10));
+        }
+
         // For each pixel, recalculate its final temperature according to the new greenhouse gas value
         for(int x = 0; x < pixels.length; x++) {
             for(int y = 0; y < pixels[x].length; y++) {
@@ -396,34 +665,68 @@ public class World {
                 float currentGH = pixels[x][y].getGreenhouseGasFactor();
                 // Either increase or decrease the greenhouse gas level depending on what we need
                 float gh = (increase) ? currentGH + baseGH*1.2f*decades : currentGH - baseGH*1.2f*decades;
+                // With dispersion, the level grows the same way, but from the dispersed initial level
+                // (increasing by 1.2 * decades every decade is the same as multiplying by 1 + 1.2 * elapsed decades)
+                if(dispersedGreenhouse != null) gh = dispersedGreenhouse[pixelIndex(x, y)] * (1 + 1.2f*elapsedDecades);
                 pixels[x][y].setGreenhouseGasFactor(gh);
 
                 // Ensure we don't increase or decrease the temperature too much
                 boolean condition = (increase) ? t < 39 : t > -15;
                 if(condition) {
                     // Calculate the new final temperature given the changed greenhouse gas level
-                    t = calculateFinalTemperature(x,y);
+                    calculateFinalTemperature(x,y);
+                    recalculated.set(pixelIndex(x, y));
+                }
+            }
+        }
 
+        // Let heat spread between neighbouring pixels, if the user asked for it
+        // (this changes the temperature of every pixel, so all of them are updated)
+        int diffusionIterations = settings.getDiffusionIterations();
+        if(diffusionIterations > 0) {
+            diffuseTemperature(diffusionIterations);
+            recalculated.set(0, pixels.length * pixels[0].length);
+            // The total is counted again below, with the rest of the updated pixels
+            totalMapTemperature = 0;
+        }
+
+        for(int x = 0; x < pixels.length; x++) {
+            for(int y = 0; y < pixels[x].length; y++) {
+                boolean pixelRecalculated = recalculated.get(pixelIndex(x, y));
+                if(pixelRecalculated) {
                     // And update everything else accordingly
-                    // Find the new temperature colour
-                    findPixelTemperatureColour(x,y,t);
                     // Recalculate the type of terrain according to the new temperature
-                    Color terrainColour = getTerrain(x, y);
+                    int previousTerrainID = pixels[x][y].getTerrainType().getId();
+                    int terrainColour = getTerrain(x, y);
+                    // Remember the tiles where the colour changed, so only those are drawn again
+                    if(terrainColour != pixels[x][y].getColour()) markTileDirty(x, y);
                     pixels[x][y].setColour(terrainColour);
+                    // Remember the pixels whose terrain changed, so only the animals on them are updated
+                    if(pixels[x][y].getTerrainType().getId() != previousTerrainID) dirtyPixels.set(pixelIndex(x, y));
+                }
 
+                int terrainID = pixels[x][y].getTerrainType().getId();
+                boolean isWater = Constants.WATER_TERRAINS.contains(terrainID);
+                boolean isIce = !isWater && Constants.ICE_TERRAINS.contains(terrainID);
+                float t = pixels[x][y].getTemperature();
+                if(pixelRecalculated) {
                     // Count the water and ice pixels
-                    if(Constants.WATER_TERRAINS.contains(pixels[x][y].getTerrainType().getId())) waterPixels++;
-                    else if(Constants.ICE_TERRAINS.contains(pixels[x][y].getTerrainType().getId())) icePixels++;
+                    if(isWater) waterPixels++;
+                    else if(isIce) icePixels++;
+                    coastDistance.setWater(pixelIndex(x, y), isWater);
                     // And increase the total map temperature
                     totalMapTemperature += t;
                 }
+
+                // Every pixel goes into the region statistics tables, whether it was recalculated or not
+                regionStats.add(x, y, t, pixels[x][y].getGreenhouseGasFactor(), isWater, isIce);
             }
         }
-
-
+        // Only the parts of the map where the coastline moved are recomputed
+        coastDistance.update();
 
         // And update the animals according to the changes
-        updateAnimals();
+        updateAnimals(decades);
 
         // Prepare temperature information for user
         averageWorldTemperature = totalMapTemperature / (pixels.length * pixels[0].length);
@@ -433,59 +736,92 @@ public class World {
         else tempChange = initialAverageTemperature - averageWorldTemperature;
 
         // Add update to dialog text
-        userInterface.dialogText += "New average world temperature: " + String.format("%.2f",averageWorldTemperature) + "\u00B0" + "C\n";
+        settings.addDialogText("New average world temperature: " + String.format("%.2f",averageWorldTemperature) + "\u00B0" + "C\n");
         // Print updates to the user information box
-        Main.userInterface.printToUserTextBox("New average world temperature: " + String.format("%.2f",averageWorldTemperature) + "\u00B0" + "C");
-        if(userInterface.timelineSlider.getValue()!=2000.0) {
-            Main.userInterface.printToUserTextBox("The world temperature increased by " + String.format("%.2f", tempChange) + "\u00B0" + "C since 2000");
-            userInterface.dialogText += "The temperature increased by " + String.format("%.2f", tempChange) + "\u00B0" + "C since 2000\n";
+        settings.printMessage("New average world temperature: " + String.format("%.2f",averageWorldTemperature) + "\u00B0" + "C");
+        if(year != 2000.0) {
+            settings.printMessage("The world temperature increased by " + String.format("%.2f", tempChange) + "\u00B0" + "C since 2000");
+            settings.addDialogText("The temperature increased by " + String.format("%.2f", tempChange) + "\u00B0" + "C since 2000\n");
         }
 
-        Main.userInterface.printToUserTextBox("Water percentage: " +  String.format("%.2f",(waterPixels *100.0f)/(Constants.MAP_SIZE_Y * Constants.MAP_SIZE_X)) + "%");
-        Main.userInterface.printToUserTextBox("Ice percentage: " +  String.format("%.2f",(icePixels *100.0f)/(Constants.MAP_SIZE_Y * Constants.MAP_SIZE_X)) + "%");
+        settings.printMessage("Water percentage: " +  String.format("%.2f",(waterPixels *100.0f)/(Constants.MAP_SIZE_Y * Constants.MAP_SIZE_X)) + "%");
+        settings.printMessage("Ice percentage: " +  String.format("%.2f",(icePixels *100.0f)/(Constants.MAP_SIZE_Y * Constants.MAP_SIZE_X)) + "%");
     }
 
     /**
      * Update the animals after temperature changed
+     * Only the animals on pixels whose terrain changed during the last update are checked
+     * @param decades How many decades the year changed by
      */
-    public static void updateAnimals() {
+    public static void updateAnimals(int decades) {
         // Lists to track changes that occurred
         Map<String,Integer> deaths = new HashMap<>();
         Map<String,Integer> reverts = new HashMap<>();
-
-        // For each animal in the world
-        for (Animal animal : animals) {
-            // Get the terrain it is currently located on
-            int terrainID = pixels[animal.getX()][animal.getY()].getTerrainType().getId();
-            // If the animal is alive, check if the terrain is still inhabitable by this animal
-            if (animal.isAlive() && !animal.getCompatibleTerrainsIDs().contains(terrainID)) {
-                // If it is not, the animal dies
-                animal.setAlive(false);
+        Map<String,Integer> migrations = new HashMap<>();
+        // The alive animals whose terrain is no longer inhabitable
+        int[] threatened = new int[16];
+        int threatenedCount = 0;
+
+        // For each pixel whose terrain changed
+        for (int i = dirtyPixels.nextSetBit(0); i >= 0; i = dirtyPixels.nextSetBit(i + 1)) {
+            if (firstAnimalOnPixel[i] == -1) continue;
+
+            // Get the terrain the animals are now located on
+            int terrainID = pixels[pixelX(i)][pixelY(i)].getTerrainType().getId();
+            for (int animal = firstAnimalOnPixel[i]; animal != -1; animal = nextAnimalOnPixel[animal]) {
+                int species = animals.getSpecies(animal);
+                // If the animal is alive, check if the terrain is still inhabitable by this animal
+                if (animals.isAlive(animal) && !SpeciesTable.isCompatible(species, terrainID)) {
+                    // If it is not, the animal either migrates or dies
+                    if (threatenedCount == threatened.length) threatened = Arrays.copyOf(threatened, threatenedCount * 2);
+                    threatened[threatenedCount++] = animal;
+                // If the animal was dead, check if the terrain it lies on is now inhabitable by this animal
+                } else if (!animals.isAlive(animal) && SpeciesTable.isCompatible(species, terrainID)) {
+                    // If it is, set its state back to alive
+                    setAnimalAlive(animal, true);
+                    // Keep a record of the change
+                    reverts.merge(SpeciesTable.get(species).getName(), 1, Integer::sum);
+                }
+            }
+        }
+        threatened = Arrays.copyOf(threatened, threatenedCount);
+
+        // When migration is on, the threatened animals look for a new habitat within reach
+        int[] destinations = new int[threatened.length];
+        Arrays.fill(destinations, -1);
+        if (settings.isAnimalMigration())
+            destinations = Migration.findDestinations(animals, threatened, decades, pixel -> firstAnimalOnPixel[pixel] != -1);
+
+        for (int t = 0; t < threatened.length; t++) {
+            String name = SpeciesTable.get(animals.getSpecies(threatened[t])).getName();
+            if (destinations[t] != -1) {
+                // The animal moves to its new habitat
+                moveAnimal(threatened[t], pixelX(destinations[t]), pixelY(destinations[t]));
+                migrations.merge(name, 1, Integer::sum);
+            } else {
+                // The animal dies
+                setAnimalAlive(threatened[t], false);
                 // Keep a record the death
-                if(deaths.containsKey(animal.getName()))
-                    deaths.put(animal.getName(), deaths.get(animal.getName())+1);
-                else deaths.put(animal.getName(), 1);
-            // If the animal was dead, check if the terrain it lies on is now inhabitable by this animal
-            } else if (!animal.isAlive() && animal.getCompatibleTerrainsIDs().contains(terrainID)) {
-                // If it is, set its state back to alive
-                animal.setAlive(true);
-                // Keep a record of the change
-                if(reverts.containsKey(animal.getName()))
-                    reverts.put(animal.getName(), reverts.get(animal.getName())+1);
-                else reverts.put(animal.getName(), 1);
+                deaths.merge(name, 1, Integer::sum);
             }
         }
 
+        // Print how many of each species migrated
+        for(Map.Entry<String,Integer> entry : migrations.entrySet()) {
+            settings.printMessage(entry.getValue() + " of the " + entry.getKey() + "s migrated to a new habitat.");
+            settings.addDialogText(entry.getValue() + " of the " + entry.getKey() + "s migrated to a new habitat." + "\n");
+        }
+
         // Print how many of each species died
         for(Map.Entry<String,Integer> entry : deaths.entrySet()) {
-            Main.userInterface.printToUserTextBox(entry.getValue() + " of the " + entry.getKey() + "s died.");
-            userInterface.dialogText += entry.getValue() + " of the " + entry.getKey() + "s died." + "\n";
+            settings.printMessage(entry.getValue() + " of the " + entry.getKey() + "s died.");
+            settings.addDialogText(entry.getValue() + " of the " + entry.getKey() + "s died." + "\n");
         }
 
         // Print how many of each species came back to life
         for(Map.Entry<String,Integer> entry : reverts.entrySet()) {
-            Main.userInterface.printToUserTextBox(entry.getValue() + " of the " + entry.getKey() + "s are back.");
-            userInterface.dialogText += entry.getValue() + " of the " + entry.getKey() + "s are back." + "\n";
+            settings.printMessage(entry.getValue() + " of the " + entry.getKey() + "s are back.");
+            settings.addDialogText(entry.getValue() + " of the " + entry.getKey() + "s are back." + "\n");
         }
 
         deaths.clear();
@@ -497,40 +833,23 @@ public class World {
 
     /**
      * Print the percentage of animals lost of each species in the user information box
+     * The species counters are kept up to date as animals change state, so no animals are iterated over
      */
     public static void lifePercentages() {
-        // A map with all the species and their number of dead individuals
-        Map<String,Integer> dead = new HashMap<>();
-        // A map with all the species and their total number of individuals
-        Map<String,Integer> total = new HashMap<>();
-
-        for(Animal a : animals) {
-            // Count all animals (alive or not)
-            if(total.containsKey(a.getName()))
-                total.put(a.getName(), total.get(a.getName())+1);
-            else
-                total.put(a.getName(), 1);
-            // Count all animals no longer alive
-            if(!a.isAlive()) {
-                if (dead.containsKey(a.getName()))
-                    dead.put(a.getName(), dead.get(a.getName()) + 1);
-                else dead.put(a.getName(), 1);
-            }
-        }
-
-        // Print the percentage of animals lost of each species
-        for(Map.Entry<String,Integer> totalEntry : total.entrySet()) {
-            if (dead.get(totalEntry.getKey()) == null) {
-                Main.userInterface.printToUserTextBox("The " + totalEntry.getKey() + " population is still 100% alive");
-                userInterface.dialogText += "The " + totalEntry.getKey() + " population is still 100% alive\n";
+        // Print the percentage of animals lost of each species that has individuals in the world
+        for(int id = 0; id < SpeciesTable.size(); id++) {
+            String species = SpeciesTable.get(id).getName();
+            int dead = deadCounts[id];
+            if (dead + aliveCounts[id] == 0) continue;
+            if (dead == 0) {
+                settings.printMessage("The " + species + " population is still 100% alive");
+                settings.addDialogText("The " + species + " population is still 100% alive\n");
             } else {
-                float res = (dead.get(totalEntry.getKey()) * 100f)/totalEntry.getValue();
-                Main.userInterface.printToUserTextBox("In total, we lost " +  String.format("%.2f",res) + "% of the " + totalEntry.getKey() + " population");
-                userInterface.dialogText += "In total, we lost " +  String.format("%.2f",res) + "% of the " + totalEntry.getKey() + " population\n";
+                float res = (dead * 100f)/(dead + aliveCounts[id]);
+                settings.printMessage("In total, we lost " +  String.format("%.2f",res) + "% of the " + species + " population");
+                settings.addDialogText("In total, we lost " +  String.format("%.2f",res) + "% of the " + species + " population\n");
             }
         }
-        total.clear();
-        dead.clear();
     }
 
 
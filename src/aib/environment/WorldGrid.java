@@ -0,0 +1,107 @@
+package aib.environment;
+
+/**
+ * The values of every pixel of a world, as a grid: its noise height, temperature, greenhouse gas level and terrain
+ * The grid of the application world keeps them in the Pixel objects of World.pixels (see World.getGrid); a
+ * MappedWorldStore keeps them in a memory-mapped file, outside the heap, for worlds too large for it
+ * The renderer (see Renderer.renderGrid) and the streaming generator use a grid without knowing where it is kept
+ */
+public interface WorldGrid {
+    /**
+     * Get the map width
+     * @return The width
+     */
+    int getWidth();
+
+    /**
+     * Get the map height
+     * @return The height
+     */
+    int getHeight();
+
+    /**
+     * Get the noise height of a pixel
+     * @param x The pixel x coordinate
+     * @param y The pixel y coordinate
+     * @return The noise height
+     */
+    float getNoiseHeight(int x, int y);
+
+    /**
+     * Set the noise height of a pixel
+     * @param x The pixel x coordinate
+     * @param y The pixel y coordinate
+     * @param noiseHeight The noise height
+     */
+    void setNoiseHeight(int x, int y, float noiseHeight);
+
+    /**
+     * Get the temperature of a pixel
+     * @param x The pixel x coordinate
+     * @param y The pixel y coordinate
+     * @return The temperature
+     */
+    float getTemperature(int x, int y);
+
+    /**
+     * Set the temperature of a pixel
+     * @param x The pixel x coordinate
+     * @param y The pixel y coordinate
+     * @param temperature The temperature
+     */
+    void setTemperature(int x, int y, float temperature);
+
+    /**
+     * Get the greenhouse gas level of a pixel
+     * @param x The pixel x coordinate
+     * @param y The pixel y coordinate
+     * @return The greenhouse gas level
+     */
+    float getGreenhouseGas(int x, int y);
+
+    /**
+     * Set the greenhouse gas level of a pixel
+     * @param x The pixel x coordinate
+     * @param y The pixel y coordinate
+     * @param level The greenhouse gas level
+     */
+    void setGreenhouseGas(int x, int y, float level);
+
+    /**
+     * Get the terrain of a pixel
+     * @param x The pixel x coordinate
+     * @param y The pixel y coordinate
+     * @return The terrain ID
+     */
+    int getTerrainId(int x, int y);
+
+    /**
+     * Set the terrain of a pixel
+     * @param x The pixel x coordinate
+     * @param y The pixel y coordinate
+     * @param terrainID The terrain ID
+     */
+    void setTerrainId(int x, int y, int terrainID);
+
+    /**
+     * Get the colour of a pixel on the temperature map, from its temperature (see TemperatureSettings.colour)
+     * @param x The pixel x coordinate
+     * @param y The pixel y coordinate
+     * @return The colour, packed into an int (see PackedColour)
+     */
+    default int getTemperatureColour(int x, int y) {
+        return TemperatureSettings.colour(getTemperature(x, y));
+    }
+
+    /**
+     * Get the colour of a pixel on the terrain map: a mix of its terrain and the one below it, so it is found again
+     * from the height and temperature rather than from the terrain ID (see TerrainSections.find)
+     * @param x The pixel x coordinate
+     * @param y The pixel y coordinate
+     * @return The colour, packed into an int (see PackedColour)
+     */
+    default int getTerrainColour(int x, int y) {
+        float noiseHeight = getNoiseHeight(x, y);
+        return TerrainSections.find(noiseHeight, getTemperature(x, y)).colour(noiseHeight);
+    }
+}
@@ -0,0 +1,58 @@
+package aib.environment;
+
+import aib.libraries.FastNoise;
+
+/**
+ * The settings the world is generated and updated with, and where it reports what happened.
+ * The user interface provides them from its controls; tools that run without a window (such as the exporters)
+ * provide fixed values instead, so the world never needs to know where its settings come from.
+ */
+public interface WorldSettings {
+    /**
+     * Get the seed of the world
+     * @return The seed
+     */
+    int getSeed();
+
+    /**
+     * Get the type of noise the height and greenhouse gas maps are generated with
+     * @return The noise type
+     */
+    FastNoise.NoiseType getNoiseType();
+
+    /**
+     * Get the number of heat diffusion iterations run after the temperatures are calculated
+     * @return The number of iterations (0 for no diffusion)
+     */
+    int getDiffusionIterations();
+
+    /**
+     * Check if greenhouse gas spreads over the map as time passes
+     * @return If greenhouse gas dispersion is on
+     */
+    boolean isGreenhouseDispersion();
+
+    /**
+     * Check if animals look for a new habitat when theirs becomes uninhabitable
+     * @return If animal migration is on
+     */
+    boolean isAnimalMigration();
+
+    /**
+     * Get the year the world is being updated to
+     * @return The year
+     */
+    double getYear();
+
+    /**
+     * Report a message to the user
+     * @param text The message
+     */
+    void printMessage(String text);
+
+    /**
+     * Add a line to the summary shown to the user once an update of the world is done
+     * @param text The line, ending with a new line
+     */
+    void addDialogText(String text);
+}
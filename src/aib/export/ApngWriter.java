@@ -0,0 +1,139 @@
+package aib.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes an animated PNG (APNG) file from frames that were each encoded as a PNG file (see PngEncoder).
+ * The image data of every frame is copied as it is: the first frame keeps its IDAT chunks (so viewers that do not
+ * support animations show it), and the data of the other frames goes into fdAT chunks, so no frame is compressed twice.
+ */
+public class ApngWriter implements Closeable {
+    /** The stream the file is written to */
+    private final DataOutputStream out;
+    /** The number of frames of the animation */
+    private final int frameCount;
+    /** The number of frames shown per second */
+    private final int framesPerSecond;
+    /** The header of the first frame, which every other frame must match */
+    private byte[] header;
+    /** The number of frames written */
+    private int writtenFrames;
+    /** The sequence number of the next animation chunk */
+    private int sequence;
+
+    /**
+     * Start writing an animated PNG file
+     * @param out The stream the file is written to (it is not closed by this writer)
+     * @param frameCount The number of frames of the animation
+     * @param framesPerSecond The number of frames shown per second
+     */
+    public ApngWriter(OutputStream out, int frameCount, int framesPerSecond) {
+        if (frameCount <= 0) throw new IllegalArgumentException("An animation needs at least one frame");
+        if (framesPerSecond <= 0 || framesPerSecond > 0xffff)
+            throw new IllegalArgumentException("Invalid frame rate " + framesPerSecond);
+        this.out = new DataOutputStream(out);
+        this.frameCount = frameCount;
+        this.framesPerSecond = framesPerSecond;
+    }
+
+    /**
+     * Add the next frame of the animation
+     * @param png The frame, encoded as a PNG file with the same size and format as the first frame
+     * @throws IOException If the frame is not a valid PNG file, or the stream cannot be written to
+     */
+    public void addFrame(byte[] png) throws IOException {
+        if (writtenFrames == frameCount) throw new IllegalStateException("All the " + frameCount + " frames were already written");
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(png));
+        byte[] signature = new byte[PngEncoder.SIGNATURE.length];
+        in.readFully(signature);
+        if (!Arrays.equals(signature, PngEncoder.SIGNATURE)) throw new IOException("The frame is not a PNG file");
+
+        boolean frameControlWritten = false;
+        while (true) {
+            int length = in.readInt();
+            byte[] typeBytes = new byte[4];
+            in.readFully(typeBytes);
+            String type = new String(typeBytes, "US-ASCII");
+            byte[] data = new byte[length];
+            in.readFully(data);
+            // The checksum is written again for the new chunk
+            in.readInt();
+
+            if (type.equals("IHDR")) {
+                if (header == null) {
+                    header = data;
+                    out.write(PngEncoder.SIGNATURE);
+                    PngEncoder.writeChunk(out, "IHDR", data);
+                    ByteArrayOutputStream animationControl = new ByteArrayOutputStream();
+                    DataOutputStream animationData = new DataOutputStream(animationControl);
+                    animationData.writeInt(frameCount);
+                    // Play the animation forever
+                    animationData.writeInt(0);
+                    PngEncoder.writeChunk(out, "acTL", animationControl.toByteArray());
+                } else if (!Arrays.equals(header, data)) {
+                    throw new IOException("Every frame must have the same size and format");
+                }
+            } else if (type.equals("IDAT")) {
+                if (!frameControlWritten) {
+                    writeFrameControl(header);
+                    frameControlWritten = true;
+                }
+                if (writtenFrames == 0) {
+                    PngEncoder.writeChunk(out, "IDAT", data);
+                } else {
+                    ByteArrayOutputStream frameData = new ByteArrayOutputStream(data.length + 4);
+                    new DataOutputStream(frameData).writeInt(sequence++);
+                    frameData.write(data, 0, data.length);
+                    PngEncoder.writeChunk(out, "fdAT", frameData.toByteArray());
+                }
+            } else if (type.equals("IEND")) {
+                break;
+            }
+            // Other chunks are not needed in an animation frame
+        }
+        if (!frameControlWritten) throw new IOException("The frame has no image data");
+        writtenFrames++;
+    }
+
+    /**
+     * Finish the file
+     * @throws IOException If not all the frames were written, or the stream cannot be written to
+     */
+    @Override
+    public void close() throws IOException {
+        if (writtenFrames != frameCount) throw new IOException("Only " + writtenFrames + " of the " + frameCount + " frames were written");
+        PngEncoder.writeChunk(out, "IEND", new byte[0]);
+        out.flush();
+    }
+
+    /**
+     * Write the frame control chunk of the next frame: the frame covers the whole image, is shown for
+     * 1 / framesPerSecond seconds, and replaces the previous frame
+     * @param header The image header (its width and height are the first 8 bytes)
+     * @throws IOException If the stream cannot be written to
+     */
+    private void writeFrameControl(byte[] header) throws IOException {
+        ByteArrayOutputStream frameControl = new ByteArrayOutputStream();
+        DataOutputStream frameData = new DataOutputStream(frameControl);
+        frameData.writeInt(sequence++);
+        // The width and height
+        frameData.write(header, 0, 8);
+        // The x and y offsets
+        frameData.writeInt(0);
+        frameData.writeInt(0);
+        // The delay, as a fraction of a second
+        frameData.writeShort(1);
+        frameData.writeShort(framesPerSecond);
+        // No disposal, and the frame replaces the previous one (no blending)
+        frameData.writeByte(0);
+        frameData.writeByte(0);
+        PngEncoder.writeChunk(out, "fcTL", frameControl.toByteArray());
+    }
+}
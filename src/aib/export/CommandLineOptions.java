@@ -0,0 +1,106 @@
+package aib.export;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The options given to a command line tool, as "--name value" pairs and "--name" flags
+ */
+public class CommandLineOptions {
+    /** The value of every option given (flags have the value "true") */
+    private final Map<String, String> values = new HashMap<>();
+
+    /**
+     * Parse the arguments of a command line tool
+     * @param args The arguments
+     * @param flags The names of the options that are flags (that take no value)
+     * @throws IllegalArgumentException If an argument is not an option, or an option has no value
+     */
+    public CommandLineOptions(String[] args, String... flags) {
+        List<String> flagNames = new ArrayList<>();
+        for (String flag : flags) flagNames.add(flag);
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("Unexpected argument " + args[i]);
+            String name = args[i].substring(2);
+            if (flagNames.contains(name)) values.put(name, "true");
+            else if (i + 1 < args.length) values.put(name, args[++i]);
+            else throw new IllegalArgumentException("No value given for --" + name);
+        }
+    }
+
+    /**
+     * Get the names of the options given
+     * @return The option names
+     */
+    public Set<String> names() {
+        return values.keySet();
+    }
+
+    /**
+     * Check if an option was given
+     * @param name The option name
+     * @return If it was given
+     */
+    public boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+    /**
+     * Get the value of an option
+     * @param name The option name
+     * @param defaultValue The value if the option was not given
+     * @return The value
+     */
+    public String getString(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    /**
+     * Get the value of an integer option
+     * @param name The option name
+     * @param defaultValue The value if the option was not given
+     * @return The value
+     * @throws IllegalArgumentException If the value is not an integer
+     */
+    public int getInt(String name, int defaultValue) {
+        if (!has(name)) return defaultValue;
+        try {
+            return Integer.parseInt(values.get(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be an integer, not " + values.get(name));
+        }
+    }
+
+    /**
+     * Get the value of a decimal option
+     * @param name The option name
+     * @param defaultValue The value if the option was not given
+     * @return The value
+     * @throws IllegalArgumentException If the value is not a number
+     */
+    public float getFloat(String name, float defaultValue) {
+        if (!has(name)) return defaultValue;
+        try {
+            return Float.parseFloat(values.get(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be a number, not " + values.get(name));
+        }
+    }
+
+    /**
+     * Get the values of an option that is a comma separated list
+     * @param name The option name
+     * @param defaultValue The list if the option was not given
+     * @return The values, without surrounding spaces
+     */
+    public List<String> getList(String name, String defaultValue) {
+        List<String> list = new ArrayList<>();
+        for (String value : getString(name, defaultValue).split(",")) {
+            if (!value.trim().isEmpty()) list.add(value.trim());
+        }
+        return list;
+    }
+}
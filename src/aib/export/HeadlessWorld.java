@@ -0,0 +1,144 @@
+package aib.export;
+
+import aib.environment.HeadlessSettings;
+import aib.environment.World;
+import aib.libraries.FastNoise;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Generates and updates the world without the user interface, for the command line tools
+ * The world settings are taken from the command line options shared by the tools (see OPTIONS_USAGE)
+ */
+public class HeadlessWorld {
+    /** The first and last years of the timeline */
+    public static final int START_YEAR = 2000, END_YEAR = 2100;
+    /** The number of years between two updates of the world */
+    public static final int YEARS_PER_STEP = 10;
+    /** The types of map that can be rendered (see Renderer.renderRegion) */
+    public static final String[] MAP_TYPES = {"Height", "Temperature", "Terrain", "Greenhouse Gas", "Coast Distance"};
+    /** The description of the options shared by the tools */
+    public static final String OPTIONS_USAGE =
+            "  --seed N            the world seed (default 1)\n" +
+            "  --noise TYPE        the noise type, e.g. Perlin or SimplexFractal (default Perlin)\n" +
+            "  --noise-scale N     the noise scale (default 2.5)\n" +
+            "  --octaves N         the noise octaves (default 5)\n" +
+            "  --persistence N     the noise persistence (default 0.4)\n" +
+            "  --lacunarity N      the noise lacunarity (default 3)\n" +
+            "  --offset-x N        the horizontal noise offset (default 0)\n" +
+            "  --offset-y N        the vertical noise offset (default 0)\n" +
+            "  --diffusion N       the heat diffusion iterations (default 0)\n" +
+            "  --dispersion        turn greenhouse gas dispersion on\n" +
+            "  --migration         turn animal migration on\n" +
+            "  --quiet             do not print the world statistics\n";
+    /** The options shared by the tools that are flags */
+    public static final String[] FLAGS = {"dispersion", "migration", "quiet"};
+
+    /** The year the world is at */
+    private static int year = START_YEAR;
+
+    /**
+     * Create the world settings from the command line options
+     * @param options The options
+     * @return The settings
+     * @throws IllegalArgumentException If an option has an invalid value
+     */
+    public static HeadlessSettings settingsFrom(CommandLineOptions options) {
+        HeadlessSettings settings = new HeadlessSettings();
+        settings.setSeed(options.getInt("seed", 1));
+        String noise = options.getString("noise", FastNoise.NoiseType.Perlin.name());
+        try {
+            settings.setNoiseType(FastNoise.NoiseType.valueOf(noise));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown noise type " + noise);
+        }
+        settings.setDiffusionIterations(options.getInt("diffusion", 0));
+        settings.setGreenhouseDispersion(options.has("dispersion"));
+        settings.setAnimalMigration(options.has("migration"));
+        if (!options.has("quiet")) settings.setMessages(System.out);
+        return settings;
+    }
+
+    /**
+     * Generate a new world, in the first year of the timeline
+     * @param options The command line options with the noise parameters
+     * @param settings The world settings
+     * @throws IllegalArgumentException If an option has an invalid value
+     */
+    public static void generate(CommandLineOptions options, HeadlessSettings settings) {
+        World.settings = settings;
+        year = START_YEAR;
+        settings.setYear(year);
+        World.calculateMap(settings.getSeed(), options.getFloat("noise-scale", 2.5f), options.getInt("octaves", 5),
+                options.getFloat("persistence", 0.4f), options.getFloat("lacunarity", 3f),
+                options.getFloat("offset-x", 0f), options.getFloat("offset-y", 0f));
+    }
+
+    /**
+     * Update the world to a later year, one step of the timeline at a time, so a world is the same in a year
+     * whatever years it was updated to on the way (updating several steps at once gives a slightly different world)
+     * @param settings The world settings
+     * @param targetYear The year (a year of the timeline, see checkYear)
+     * @throws IllegalArgumentException If the year is before the year the world is at
+     */
+    public static void advanceTo(HeadlessSettings settings, int targetYear) {
+        if (targetYear < year) throw new IllegalArgumentException("The world is already at " + year);
+        while (year < targetYear) {
+            int next = year + YEARS_PER_STEP;
+            settings.setYear(next);
+            World.updateMapCalculation(1, true, next);
+            year = next;
+        }
+    }
+
+    /**
+     * Get the year the world is at
+     * @return The year
+     */
+    public static int getYear() {
+        return year;
+    }
+
+    /**
+     * Check that a year is on the timeline
+     * @param year The year
+     * @return The year
+     * @throws IllegalArgumentException If it is not a multiple of YEARS_PER_STEP from START_YEAR to END_YEAR
+     */
+    public static int checkYear(int year) {
+        if (year < START_YEAR || year > END_YEAR || (year - START_YEAR) % YEARS_PER_STEP != 0)
+            throw new IllegalArgumentException("Years must be multiples of " + YEARS_PER_STEP + " from "
+                    + START_YEAR + " to " + END_YEAR + ", not " + year);
+        return year;
+    }
+
+    /**
+     * Find the map types named in a list, ignoring case, spaces and dashes (so "greenhouse-gas" is "Greenhouse Gas")
+     * @param names The names
+     * @return The map types
+     * @throws IllegalArgumentException If a name is not a map type
+     */
+    public static List<String> mapTypes(List<String> names) {
+        List<String> types = new ArrayList<>();
+        for (String name : names) {
+            String found = null;
+            for (String type : MAP_TYPES) {
+                if (fileName(type).equals(fileName(name))) found = type;
+            }
+            if (found == null) throw new IllegalArgumentException("Unknown map type " + name);
+            types.add(found);
+        }
+        return types;
+    }
+
+    /**
+     * Get the name of a map type used in file names (lower case, with dashes instead of spaces)
+     * @param mapType The map type
+     * @return The file name
+     */
+    public static String fileName(String mapType) {
+        return mapType.trim().toLowerCase(Locale.ROOT).replace(' ', '-');
+    }
+}
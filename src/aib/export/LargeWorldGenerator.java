@@ -0,0 +1,145 @@
+package aib.export;
+
+import aib.Renderer;
+import aib.environment.HeadlessSettings;
+import aib.environment.MappedWorldStore;
+import aib.environment.StreamingWorldGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * Command line tool that generates a world larger than the memory (65536x65536 by default) into a world file
+ * (see MappedWorldStore), a tile at a time, and can write a scaled down map of it as a PNG image
+ * Run the main method with --help to see the options
+ */
+public class LargeWorldGenerator {
+    /** The description of the options */
+    private static final String USAGE =
+            "Usage: java aib.export.LargeWorldGenerator [options]\n" +
+            "  --out FILE          the world file (default world.aibw)\n" +
+            "  --width N           the map width (default 65536)\n" +
+            "  --height N          the map height (default 65536)\n" +
+            "  --tile-size N       the width and height of the tiles the map is generated in (default 1024)\n" +
+            "  --samples N         the samples along each side of the map used to find the noise range (default 1024)\n" +
+            "  --preview FILE      write a scaled down map to a PNG image\n" +
+            "  --preview-map M     the map of the preview: Height, Temperature, Terrain, Greenhouse-Gas (default Terrain)\n" +
+            "  --preview-width N   the largest width of the preview (default 2048)\n" +
+            "  --seed N            the world seed (default 1)\n" +
+            "  --noise TYPE        the noise type, e.g. Perlin or SimplexFractal (default Perlin)\n" +
+            "  --noise-scale N     the noise scale (default 2.5)\n" +
+            "  --octaves N         the noise octaves of the world in the application (default 5)\n" +
+            "  --persistence N     the noise persistence (default 0.4)\n" +
+            "  --lacunarity N      the noise lacunarity (default 3)\n" +
+            "  --offset-x N        the horizontal noise offset (default 0)\n" +
+            "  --offset-y N        the vertical noise offset (default 0)\n" +
+            "  --quiet             do not print the progress and the world statistics\n";
+    /** The world options of the other tools that do not apply to the first year of a streamed world */
+    private static final String[] UNSUPPORTED = {"diffusion", "dispersion", "migration"};
+
+    /**
+     * Run the generator
+     * @param args The options (see USAGE)
+     */
+    public static void main(String[] args) {
+        try {
+            CommandLineOptions options = new CommandLineOptions(args, "dispersion", "migration", "quiet", "help");
+            if (options.has("help")) {
+                System.out.print(USAGE);
+                return;
+            }
+            generate(options);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Could not write the world: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Generate the world and write the preview
+     * @param options The options (see USAGE)
+     * @throws IOException If the world file or the preview cannot be written
+     */
+    private static void generate(CommandLineOptions options) throws IOException {
+        // Heat diffusion needs the whole map, and dispersion and migration only change later years
+        for (String name : UNSUPPORTED) {
+            if (options.has(name)) throw new IllegalArgumentException("--" + name + " is not supported for streamed worlds");
+        }
+        int width = options.getInt("width", 65536);
+        int height = options.getInt("height", 65536);
+        int tileSize = options.getInt("tile-size", StreamingWorldGenerator.DEFAULT_TILE_SIZE);
+        int samples = options.getInt("samples", StreamingWorldGenerator.DEFAULT_SAMPLES);
+        int previewWidth = options.getInt("preview-width", 2048);
+        if (width < 1 || height < 1 || tileSize < 1 || samples < 2 || previewWidth < 1)
+            throw new IllegalArgumentException("--width, --height, --tile-size and --preview-width must be positive, --samples at least 2");
+        File file = new File(options.getString("out", "world.aibw"));
+        String preview = options.getString("preview", null);
+        String previewMap = HeadlessWorld.mapTypes(options.getList("preview-map", "Terrain")).get(0);
+        if (previewMap.equals("Coast Distance")) throw new IllegalArgumentException("The coast distance map cannot be previewed");
+
+        HeadlessSettings settings = HeadlessWorld.settingsFrom(options);
+        StreamingWorldGenerator generator = new StreamingWorldGenerator(width, height, settings,
+                options.getFloat("noise-scale", 2.5f), options.getInt("octaves", 5),
+                options.getFloat("persistence", 0.4f), options.getFloat("lacunarity", 3f),
+                options.getFloat("offset-x", 0f), options.getFloat("offset-y", 0f));
+
+        long start = System.nanoTime();
+        try (MappedWorldStore store = MappedWorldStore.create(file, width, height)) {
+            store.getProperties().putAll(generator.generate(store, samples, tileSize));
+            System.out.println(String.format("Generated a %dx%d world (%d octaves) into %s in %.1f s", width, height,
+                    generator.getOctaves(), file.getPath(), (System.nanoTime() - start) / 1e9));
+
+            if (preview != null) {
+                start = System.nanoTime();
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(preview))) {
+                    writePreview(out, store, previewMap, previewWidth);
+                }
+                System.out.println(String.format("Wrote %s in %.2f s", preview, (System.nanoTime() - start) / 1e9));
+            }
+        }
+        System.out.println(String.format("Peak heap use: %.1f MB", peakHeap() / 1048576.0));
+    }
+
+    /**
+     * Write a scaled down map of a world as a PNG image, a band of rows at a time (see Renderer.renderGrid)
+     * @param out The stream the image is written to
+     * @param store The world
+     * @param mapType The map type
+     * @param previewWidth The largest width of the image
+     * @throws IOException If the stream cannot be written to
+     */
+    private static void writePreview(OutputStream out, MappedWorldStore store, String mapType, int previewWidth) throws IOException {
+        int stride = Math.max(1, (store.getWidth() + previewWidth - 1) / previewWidth);
+        int width = (store.getWidth() + stride - 1) / stride, height = (store.getHeight() + stride - 1) / stride;
+        int[] band = new int[width * PngEncoder.ROWS_PER_GROUP];
+        try (PngEncoder encoder = new PngEncoder(out, width, height)) {
+            for (int minY = 0; minY < height; minY += PngEncoder.ROWS_PER_GROUP) {
+                int maxY = Math.min(height, minY + PngEncoder.ROWS_PER_GROUP);
+                Renderer.renderGrid(store, mapType, stride, band, minY, width, 0, minY, width, maxY);
+                for (int y = minY; y < maxY; y++) encoder.writeRow(band, (y - minY) * width);
+            }
+        }
+    }
+
+    /**
+     * Get the most heap memory used since the tool started
+     * @return The peak use of every heap memory pool added up, in bytes
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+}
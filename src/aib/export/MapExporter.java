@@ -0,0 +1,120 @@
+package aib.export;
+
+import aib.Constants;
+import aib.Renderer;
+import aib.environment.HeadlessSettings;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Command line tool that generates a world and writes its maps as PNG images for some years of the timeline,
+ * without the user interface (no window or display is needed)
+ * Run the main method with --help to see the options
+ */
+public class MapExporter {
+    /** The description of the options */
+    private static final String USAGE =
+            "Usage: java aib.export.MapExporter [options]\n" +
+            "  --years Y1,Y2,...   the years to export, multiples of 10 from 2000 to 2100 (default 2000)\n" +
+            "  --maps M1,M2,...    the maps to export: Height, Temperature, Terrain, Greenhouse-Gas, Coast-Distance\n" +
+            "                      (default Height,Temperature,Terrain,Greenhouse-Gas)\n" +
+            "  --scale N           write every map pixel as NxN image pixels, e.g. 6 for 7800x6000 images (default 1)\n" +
+            "  --equator           draw the equator line\n" +
+            "  --out DIR           the directory the images are written to (default .)\n" +
+            HeadlessWorld.OPTIONS_USAGE;
+
+    /**
+     * Run the exporter
+     * @param args The options (see USAGE)
+     */
+    public static void main(String[] args) {
+        try {
+            CommandLineOptions options = new CommandLineOptions(args, "dispersion", "migration", "quiet", "equator", "help");
+            if (options.has("help")) {
+                System.out.print(USAGE);
+                return;
+            }
+            export(options);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Could not write the images: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Generate the world and write the maps
+     * @param options The options (see USAGE)
+     * @throws IOException If an image cannot be written
+     */
+    private static void export(CommandLineOptions options) throws IOException {
+        TreeSet<Integer> years = new TreeSet<>();
+        for (String year : options.getList("years", "" + HeadlessWorld.START_YEAR)) {
+            try {
+                years.add(HeadlessWorld.checkYear(Integer.parseInt(year)));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid year " + year);
+            }
+        }
+        List<String> mapTypes = HeadlessWorld.mapTypes(options.getList("maps", "Height,Temperature,Terrain,Greenhouse-Gas"));
+        int scale = options.getInt("scale", 1);
+        if (scale < 1) throw new IllegalArgumentException("--scale must be at least 1");
+        boolean equator = options.has("equator");
+        File directory = new File(options.getString("out", "."));
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Cannot create " + directory);
+
+        HeadlessSettings settings = HeadlessWorld.settingsFrom(options);
+        long start = System.nanoTime();
+        HeadlessWorld.generate(options, settings);
+        System.out.println(String.format("Generated world %d in %.2f s", settings.getSeed(), (System.nanoTime() - start) / 1e9));
+
+        for (int year : years) {
+            start = System.nanoTime();
+            HeadlessWorld.advanceTo(settings, year);
+            System.out.println(String.format("Updated to %d in %.2f s", year, (System.nanoTime() - start) / 1e9));
+            for (String mapType : mapTypes) {
+                start = System.nanoTime();
+                File file = new File(directory, "seed" + settings.getSeed() + "-" + year + "-" + HeadlessWorld.fileName(mapType) + ".png");
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                    writePng(out, Renderer.renderFrame(mapType, equator), Constants.MAP_SIZE_X, Constants.MAP_SIZE_Y, scale);
+                }
+                System.out.println(String.format("Wrote %s in %.2f s", file.getPath(), (System.nanoTime() - start) / 1e9));
+            }
+        }
+    }
+
+    /**
+     * Write a frame as a PNG image, scaled up row by row (so the scaled image is never all in memory)
+     * @param out The stream the image is written to
+     * @param frame The colour of every pixel, packed into ints, row by row
+     * @param width The frame width
+     * @param height The frame height
+     * @param scale The number of image pixels (in each direction) every frame pixel becomes
+     * @throws IOException If the stream cannot be written to
+     */
+    static void writePng(OutputStream out, int[] frame, int width, int height, int scale) throws IOException {
+        if (scale == 1) {
+            PngEncoder.write(out, frame, width, height);
+            return;
+        }
+        int[] row = new int[width * scale];
+        try (PngEncoder encoder = new PngEncoder(out, width * scale, height * scale)) {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int colour = frame[y * width + x];
+                    for (int i = 0; i < scale; i++) row[x * scale + i] = colour;
+                }
+                for (int i = 0; i < scale; i++) encoder.writeRow(row, 0);
+            }
+        }
+    }
+}
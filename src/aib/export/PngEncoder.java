@@ -0,0 +1,274 @@
+package aib.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.stream.IntStream;
+
+/**
+ * Writes an image as a PNG file (8 bit RGB), row by row, without keeping the whole image in memory.
+ * The rows are buffered in batches of row groups; the groups of a batch are filtered and compressed in parallel,
+ * each into its own deflate blocks, and written in order as one zlib stream. Each group is compressed with the
+ * last 32 KB of the group before it as a dictionary (the way parallel gzip does), so the file is barely larger
+ * than when it is compressed in one piece, and any PNG decoder can read it.
+ */
+public class PngEncoder implements Closeable {
+    /** The number of rows compressed together */
+    public static final int ROWS_PER_GROUP = 32;
+    /** The size of the deflate window, which is the most a group can use of the group before it */
+    private static final int WINDOW_SIZE = 32 * 1024;
+    /** The PNG file signature */
+    static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+    /** The number of bytes per pixel (red, green and blue) */
+    private static final int BYTES_PER_PIXEL = 3;
+
+    /** The stream the file is written to */
+    private final DataOutputStream out;
+    /** The width and height of the image */
+    private final int width, height;
+    /** The compression level (see Deflater) */
+    private final int level;
+    /** The rows of the current batch (red, green and blue bytes of every pixel) */
+    private final byte[][] rows;
+    /** The last row of the previous batch (all zero before the first row), which the first row is filtered against */
+    private final byte[] previousRow;
+    /** The checksum of all the data compressed so far, written at the end of the zlib stream */
+    private final Adler32 adler = new Adler32();
+    /** The end of the data of the last group compressed, used as the dictionary of the next group */
+    private byte[] dictionary;
+    /** The number of rows in the current batch, and written in total */
+    private int bufferedRows, writtenRows;
+
+    /**
+     * Start writing a PNG file, with the default compression level
+     * @param out The stream the file is written to (it is not closed by this encoder)
+     * @param width The image width
+     * @param height The image height
+     * @throws IOException If the stream cannot be written to
+     */
+    public PngEncoder(OutputStream out, int width, int height) throws IOException {
+        this(out, width, height, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Start writing a PNG file
+     * @param out The stream the file is written to (it is not closed by this encoder)
+     * @param width The image width
+     * @param height The image height
+     * @param level The compression level, from 0 (none) to 9 (best), or Deflater.DEFAULT_COMPRESSION
+     * @throws IOException If the stream cannot be written to
+     */
+    public PngEncoder(OutputStream out, int width, int height, int level) throws IOException {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Invalid image size " + width + "x" + height);
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        this.level = level;
+        // Enough groups in a batch to keep every core busy
+        int groups = 2 * Runtime.getRuntime().availableProcessors();
+        this.rows = new byte[Math.min(height, groups * ROWS_PER_GROUP)][width * BYTES_PER_PIXEL];
+        this.previousRow = new byte[width * BYTES_PER_PIXEL];
+
+        this.out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream headerData = new DataOutputStream(header);
+        headerData.writeInt(width);
+        headerData.writeInt(height);
+        // 8 bits per channel, colour type 2 (RGB), default compression and filtering, no interlacing
+        headerData.write(new byte[]{8, 2, 0, 0, 0});
+        writeChunk(this.out, "IHDR", header.toByteArray());
+    }
+
+    /**
+     * Write an image as a PNG file
+     * @param out The stream the file is written to (it is not closed)
+     * @param pixels The colour of every pixel, packed into ints (0xAARRGGBB, the alpha is ignored), row by row
+     * @param width The image width
+     * @param height The image height
+     * @throws IOException If the stream cannot be written to
+     */
+    public static void write(OutputStream out, int[] pixels, int width, int height) throws IOException {
+        try (PngEncoder encoder = new PngEncoder(out, width, height)) {
+            for (int y = 0; y < height; y++) encoder.writeRow(pixels, y * width);
+        }
+    }
+
+    /**
+     * Write the next row of the image
+     * @param pixels The colour of the pixels, packed into ints (0xAARRGGBB, the alpha is ignored)
+     * @param offset The index of the first pixel of the row
+     * @throws IOException If the stream cannot be written to
+     */
+    public void writeRow(int[] pixels, int offset) throws IOException {
+        if (writtenRows + bufferedRows == height) throw new IllegalStateException("All the rows were already written");
+        byte[] row = rows[bufferedRows++];
+        for (int x = 0, i = 0; x < width; x++) {
+            int colour = pixels[offset + x];
+            row[i++] = (byte) (colour >> 16);
+            row[i++] = (byte) (colour >> 8);
+            row[i++] = (byte) colour;
+        }
+        if (bufferedRows == rows.length || writtenRows + bufferedRows == height) writeBatch();
+    }
+
+    /**
+     * Finish the file
+     * @throws IOException If not all the rows were written, or the stream cannot be written to
+     */
+    @Override
+    public void close() throws IOException {
+        if (writtenRows != height) throw new IOException("Only " + writtenRows + " of the " + height + " rows were written");
+        writeChunk(out, "IEND", new byte[0]);
+        out.flush();
+    }
+
+    /**
+     * Filter and compress the rows of the current batch, and write them
+     * @throws IOException If the stream cannot be written to
+     */
+    private void writeBatch() throws IOException {
+        int groups = (bufferedRows + ROWS_PER_GROUP - 1) / ROWS_PER_GROUP;
+        boolean lastBatch = writtenRows + bufferedRows == height;
+
+        // Filter the groups in parallel (each row only needs the row above it, which is already buffered)
+        byte[][] filtered = new byte[groups][];
+        IntStream.range(0, groups).parallel().forEach(g -> filtered[g] = filterGroup(g));
+
+        // Then compress them in parallel, each with the end of the group before it as its dictionary
+        byte[][] compressed = new byte[groups][];
+        byte[] firstDictionary = dictionary;
+        IntStream.range(0, groups).parallel().forEach(g -> compressed[g] = compress(filtered[g],
+                g == 0 ? firstDictionary : filtered[g - 1], lastBatch && g == groups - 1));
+
+        for (int g = 0; g < groups; g++) {
+            ByteArrayOutputStream data = new ByteArrayOutputStream(compressed[g].length + 6);
+            // The zlib header comes first (deflate with a 32 KB window, default compression)
+            if (writtenRows == 0 && g == 0) data.write(new byte[]{0x78, (byte) 0x9c}, 0, 2);
+            data.write(compressed[g], 0, compressed[g].length);
+            adler.update(filtered[g]);
+            // And the checksum of all the data last
+            if (lastBatch && g == groups - 1) {
+                int checksum = (int) adler.getValue();
+                data.write(new byte[]{(byte) (checksum >>> 24), (byte) (checksum >>> 16), (byte) (checksum >>> 8), (byte) checksum}, 0, 4);
+            }
+            writeChunk(out, "IDAT", data.toByteArray());
+        }
+
+        dictionary = filtered[groups - 1];
+        System.arraycopy(rows[bufferedRows - 1], 0, previousRow, 0, previousRow.length);
+        writtenRows += bufferedRows;
+        bufferedRows = 0;
+    }
+
+    /**
+     * Filter the rows of a group of the current batch, choosing the filter of each row that is likely to
+     * compress best (the one with the smallest sum of absolute differences, as the PNG specification suggests)
+     * @param group The group
+     * @return The filtered rows, each starting with its filter type
+     */
+    private byte[] filterGroup(int group) {
+        int first = group * ROWS_PER_GROUP;
+        int last = Math.min(bufferedRows, first + ROWS_PER_GROUP);
+        int rowLength = width * BYTES_PER_PIXEL;
+        byte[] filtered = new byte[(last - first) * (rowLength + 1)];
+        for (int r = first; r < last; r++) {
+            byte[] row = rows[r];
+            byte[] above = r == 0 ? previousRow : rows[r - 1];
+            int bestFilter = 0;
+            long bestSum = Long.MAX_VALUE;
+            for (int filter = 0; filter < 5; filter++) {
+                long sum = 0;
+                for (int i = 0; i < rowLength && sum < bestSum; i++) sum += Math.abs((byte) filterByte(filter, row, above, i));
+                if (sum < bestSum) {
+                    bestSum = sum;
+                    bestFilter = filter;
+                }
+            }
+            int start = (r - first) * (rowLength + 1);
+            filtered[start] = (byte) bestFilter;
+            for (int i = 0; i < rowLength; i++) filtered[start + 1 + i] = (byte) filterByte(bestFilter, row, above, i);
+        }
+        return filtered;
+    }
+
+    /**
+     * Filter a byte of a row
+     * @param filter The filter type (0 none, 1 sub, 2 up, 3 average, 4 Paeth)
+     * @param row The row
+     * @param above The row above it
+     * @param i The index of the byte
+     * @return The filtered byte (only the lowest 8 bits are used)
+     */
+    private static int filterByte(int filter, byte[] row, byte[] above, int i) {
+        int x = row[i] & 0xff;
+        int left = i >= BYTES_PER_PIXEL ? row[i - BYTES_PER_PIXEL] & 0xff : 0;
+        int up = above[i] & 0xff;
+        switch (filter) {
+            case 0: return x;
+            case 1: return x - left;
+            case 2: return x - up;
+            case 3: return x - ((left + up) >>> 1);
+            default:
+                int upLeft = i >= BYTES_PER_PIXEL ? above[i - BYTES_PER_PIXEL] & 0xff : 0;
+                int p = left + up - upLeft;
+                int pLeft = Math.abs(p - left), pUp = Math.abs(p - up), pUpLeft = Math.abs(p - upLeft);
+                if (pLeft <= pUp && pLeft <= pUpLeft) return x - left;
+                if (pUp <= pUpLeft) return x - up;
+                return x - upLeft;
+        }
+    }
+
+    /**
+     * Compress a group into raw deflate blocks, ending on a byte boundary so the groups can be joined
+     * @param data The filtered rows of the group
+     * @param previous The data before the group (its last 32 KB are used as the dictionary), or null
+     * @param last If this is the last group of the image, which ends the deflate stream
+     * @return The compressed group
+     */
+    private byte[] compress(byte[] data, byte[] previous, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (previous != null) {
+                int length = Math.min(WINDOW_SIZE, previous.length);
+                deflater.setDictionary(previous, previous.length - length, length);
+            }
+            deflater.setInput(data);
+            if (last) deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4 + 64);
+            byte[] buffer = new byte[64 * 1024];
+            while (true) {
+                int length = deflater.deflate(buffer, 0, buffer.length, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                compressed.write(buffer, 0, length);
+                // The group is done when the stream finished, or when a flush did not fill the buffer
+                if (last ? deflater.finished() : length < buffer.length) break;
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Write a chunk of a PNG file
+     * @param out The stream the file is written to
+     * @param type The chunk type
+     * @param data The chunk data
+     * @throws IOException If the stream cannot be written to
+     */
+    static void writeChunk(DataOutputStream out, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        out.writeInt(data.length);
+        out.write(typeBytes);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+}
@@ -0,0 +1,235 @@
+package aib.export;
+
+import aib.Constants;
+import aib.Renderer;
+import aib.environment.HeadlessSettings;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Command line tool that renders every year of the timeline of a world as a frame, and writes the frames
+ * as numbered PNG images or as one animated PNG, without the user interface
+ * The frames go through a pipeline of stages joined by bounded queues, so every stage works on a different frame
+ * at the same time and only a few frames are ever in memory, however many there are:
+ * - simulation: updates the world one decade at a time and renders the map of every decade (the keyframes)
+ * - colour fill: interpolates the map of the years between two keyframes
+ * - encoding: encodes the frames as PNG, several at a time on a pool of threads
+ * - writing (on the main thread): writes the encoded frames in order
+ * Run the main method with --help to see the options
+ */
+public class TimelineExporter {
+    /** The description of the options */
+    private static final String USAGE =
+            "Usage: java aib.export.TimelineExporter [options]\n" +
+            "  --format F          png for numbered PNG images, apng for an animated PNG (default png)\n" +
+            "  --map M             the map to export: Height, Temperature, Terrain, Greenhouse-Gas, Coast-Distance\n" +
+            "                      (default Terrain)\n" +
+            "  --from Y            the first year, a multiple of 10 from 2000 to 2100 (default 2000)\n" +
+            "  --to Y              the last year, a multiple of 10 from 2000 to 2100 (default 2100)\n" +
+            "  --fps N             the frames per second of the animated PNG (default 10)\n" +
+            "  --scale N           write every map pixel as NxN image pixels (default 1)\n" +
+            "  --equator           draw the equator line\n" +
+            "  --out DIR           the directory the images are written to (default .)\n" +
+            HeadlessWorld.OPTIONS_USAGE;
+    /** The number of keyframes waiting for the colour fill stage */
+    private static final int KEYFRAME_QUEUE_SIZE = 2;
+    /** The number of frames being encoded or waiting to be written */
+    private static final int ENCODED_QUEUE_SIZE = Math.max(2, 2 * Runtime.getRuntime().availableProcessors());
+
+    /** A frame (or keyframe) of the animation: its year and the colour of every pixel */
+    private static class Frame {
+        /** The year the frame shows */
+        final int year;
+        /** The colour of every pixel, packed into ints, row by row */
+        final int[] pixels;
+
+        /**
+         * Create a frame
+         * @param year The year the frame shows
+         * @param pixels The colour of every pixel
+         */
+        Frame(int year, int[] pixels) {
+            this.year = year;
+            this.pixels = pixels;
+        }
+    }
+
+    /** The keyframe put in the queue after the last one, to mark the end of the animation */
+    private static final Frame END = new Frame(-1, null);
+    /** The encoded frame put in the queue after the last one */
+    private static final Future<byte[]> END_OF_FRAMES = CompletableFuture.completedFuture(null);
+
+    /**
+     * Run the exporter
+     * @param args The options (see USAGE)
+     */
+    public static void main(String[] args) {
+        try {
+            CommandLineOptions options = new CommandLineOptions(args, "dispersion", "migration", "quiet", "equator", "help");
+            if (options.has("help")) {
+                System.out.print(USAGE);
+                return;
+            }
+            export(options);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Could not write the frames: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Generate the world and write the frames
+     * @param options The options (see USAGE)
+     * @throws IOException If a frame cannot be written, or a stage of the pipeline failed
+     */
+    private static void export(CommandLineOptions options) throws IOException {
+        String format = options.getString("format", "png");
+        if (!format.equals("png") && !format.equals("apng")) throw new IllegalArgumentException("Unknown format " + format);
+        String mapType = HeadlessWorld.mapTypes(options.getList("map", "Terrain")).get(0);
+        int from = HeadlessWorld.checkYear(options.getInt("from", HeadlessWorld.START_YEAR));
+        int to = HeadlessWorld.checkYear(options.getInt("to", HeadlessWorld.END_YEAR));
+        if (to < from) throw new IllegalArgumentException("--to must not be before --from");
+        int fps = options.getInt("fps", 10);
+        int scale = options.getInt("scale", 1);
+        if (scale < 1) throw new IllegalArgumentException("--scale must be at least 1");
+        boolean equator = options.has("equator");
+        File directory = new File(options.getString("out", "."));
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Cannot create " + directory);
+
+        HeadlessSettings settings = HeadlessWorld.settingsFrom(options);
+        String name = "seed" + settings.getSeed() + "-" + HeadlessWorld.fileName(mapType);
+        int frameCount = to - from + 1;
+        long start = System.nanoTime();
+
+        BlockingQueue<Frame> keyframes = new ArrayBlockingQueue<>(KEYFRAME_QUEUE_SIZE);
+        BlockingQueue<Future<byte[]>> encoded = new ArrayBlockingQueue<>(ENCODED_QUEUE_SIZE);
+        ExecutorService encoders = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // Simulation stage
+        Thread simulation = new Thread(() -> {
+            try {
+                HeadlessWorld.generate(options, settings);
+                HeadlessWorld.advanceTo(settings, from);
+                keyframes.put(new Frame(from, Renderer.renderFrame(mapType, equator)));
+                for (int year = from + HeadlessWorld.YEARS_PER_STEP; year <= to; year += HeadlessWorld.YEARS_PER_STEP) {
+                    HeadlessWorld.advanceTo(settings, year);
+                    keyframes.put(new Frame(year, Renderer.renderFrame(mapType, equator)));
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                putEnd(keyframes, END);
+            }
+        }, "simulation");
+
+        // Colour fill stage, which hands every frame to the encoding stage
+        Thread colourFill = new Thread(() -> {
+            try {
+                Frame previous = null;
+                for (Frame keyframe = keyframes.take(); keyframe != END; keyframe = keyframes.take()) {
+                    if (previous != null) {
+                        for (int year = previous.year + 1; year < keyframe.year; year++) {
+                            float intensity = (float) (year - previous.year) / (keyframe.year - previous.year);
+                            Frame frame = new Frame(year, Renderer.interpolateFrames(previous.pixels, keyframe.pixels, intensity));
+                            encoded.put(encoders.submit(() -> encode(frame, scale)));
+                        }
+                    }
+                    Frame frame = keyframe;
+                    encoded.put(encoders.submit(() -> encode(frame, scale)));
+                    previous = keyframe;
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+                // Let the simulation stage finish, rather than wait for space in the queue forever
+                keyframes.clear();
+            } finally {
+                putEnd(encoded, END_OF_FRAMES);
+            }
+        }, "colour fill");
+
+        // If the writing stage fails, the other stages must not keep the program running
+        simulation.setDaemon(true);
+        colourFill.setDaemon(true);
+        simulation.start();
+        colourFill.start();
+
+        // Writing stage
+        int written = 0;
+        try (OutputStream animation = format.equals("apng")
+                ? new BufferedOutputStream(new FileOutputStream(new File(directory, name + ".png"))) : null) {
+            ApngWriter apng = animation != null ? new ApngWriter(animation, frameCount, fps) : null;
+            for (Future<byte[]> frame = encoded.take(); frame != END_OF_FRAMES; frame = encoded.take()) {
+                byte[] png = frame.get();
+                if (apng != null) {
+                    apng.addFrame(png);
+                } else {
+                    try (OutputStream out = new FileOutputStream(new File(directory, name + "-" + (from + written) + ".png"))) {
+                        out.write(png);
+                    }
+                }
+                written++;
+            }
+            if (failure.get() != null) throw new IOException("The frames could not be rendered", failure.get());
+            if (apng != null) apng.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("A frame could not be encoded", e.getCause());
+        } finally {
+            encoders.shutdownNow();
+            // Let the other stages finish, rather than wait for space in the queues forever
+            keyframes.clear();
+            encoded.clear();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("Wrote %d frames of %s in %.2f s (%.2f frames per second)",
+                written, mapType, seconds, written / seconds));
+    }
+
+    /**
+     * Encode a frame as a PNG file
+     * @param frame The frame
+     * @param scale The number of image pixels (in each direction) every frame pixel becomes
+     * @return The PNG file
+     * @throws IOException Never, the file is written to memory
+     */
+    private static byte[] encode(Frame frame, int scale) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        MapExporter.writePng(png, frame.pixels, Constants.MAP_SIZE_X, Constants.MAP_SIZE_Y, scale);
+        return png.toByteArray();
+    }
+
+    /**
+     * Put the end marker in a queue, waiting for space unless the thread is interrupted
+     * @param queue The queue
+     * @param end The end marker
+     * @param <T> The type of the queue elements
+     */
+    private static <T> void putEnd(BlockingQueue<T> queue, T end) {
+        try {
+            queue.put(end);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
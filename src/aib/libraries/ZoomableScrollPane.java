@@ -1,5 +1,6 @@
 package aib.libraries;
 
+import javafx.geometry.BoundingBox;
 import javafx.geometry.Bounds;
 import javafx.geometry.Point2D;
 import javafx.geometry.Pos;
@@ -29,6 +30,18 @@ public class ZoomableScrollPane extends ScrollPane {
         updateScale();
     }
 
+    /**
+     * Get the region of the target that is currently visible in the viewport, in target coordinates
+     * @return The visible region of the target
+     */
+    public Bounds getVisibleBounds() {
+        Bounds viewportBounds = getViewportBounds();
+        // The viewport bounds are offset by the scroll position of the content
+        Bounds visibleInContent = new BoundingBox(-viewportBounds.getMinX(), -viewportBounds.getMinY(),
+                viewportBounds.getWidth(), viewportBounds.getHeight());
+        return target.sceneToLocal(getContent().localToScene(visibleInContent));
+    }
+
     private Node outerNode(Node node) {
         Node outerNode = centeredNode(node);
         outerNode.setOnScroll(e -> {
@@ -44,8 +57,22 @@ public class ZoomableScrollPane extends ScrollPane {
         return vBox;
     }
 
+    /**
+     * Get the lowest scale the target can be zoomed out to: the scale at which it fits in the viewport,
+     * or its original size if it already fits
+     * @return The minimum scale
+     */
+    private double getMinScale() {
+        Bounds targetBounds = target.getLayoutBounds();
+        Bounds viewportBounds = getViewportBounds();
+        if (targetBounds.getWidth() <= 0 || targetBounds.getHeight() <= 0 || viewportBounds.getWidth() <= 0) return 1;
+        return Math.min(1, Math.min(viewportBounds.getWidth() / targetBounds.getWidth(),
+                viewportBounds.getHeight() / targetBounds.getHeight()));
+    }
+
     private void updateScale() {
-        if(scaleValue < 1) scaleValue = 1;
+        double minScale = getMinScale();
+        if(scaleValue < minScale) scaleValue = minScale;
         target.setScaleX(scaleValue);
         target.setScaleY(scaleValue);
     }
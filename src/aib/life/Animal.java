@@ -1,23 +1,25 @@
 package aib.life;
 
+import aib.environment.TerrainSet;
 import javafx.scene.image.Image;
 
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
- * An animal representation, with all of its information
+ * An animal species representation, with all of the information shared by the individuals of that species.
+ * The individuals themselves (their position and state) are kept in an AnimalStore
  */
 public abstract class Animal {
     /** The name of this type of animal */
     private String name;
-    /** The x coordinate of this animal on the map */
-    private int x;
-    /** The y coordinate of this animal on the map  */
-    private int y;
-    /** The list of terrains that are compatible with this animal */
-    private List<Integer> compatibleTerrainsIDs;
-    /** The image object for this animal */
-    private Image image;
+    /** The set of terrains that are compatible with this animal */
+    private TerrainSet compatibleTerrains;
+    /** The path of the image resource for this animal */
+    private String imagePath;
+    /** The images of the species, by path, loaded the first time they are drawn
+     * (loading an image needs the JavaFX toolkit, which is not started when the world runs without the user interface) */
+    private static final Map<String, Image> images = new HashMap<>();
     /** The minimum terrain height this animal can spawn at */
     private float minHeight;
     /** The maximum terrain height this animal can spawn at  */
@@ -26,16 +28,11 @@ public abstract class Animal {
     private float maxProb;
     /** The difference between the maximum and the minimum height for this animal */
     private float heightDifference;
-    /** The flag that determines whether the animal is alive or not */
-    private boolean alive;
 
     /**
-     * Create a new animal
+     * Create a new animal species
      */
     public Animal() {
-        this.x = 0;
-        this.y = 0;
-        this.alive = true;
     }
 
     /**
@@ -55,67 +52,37 @@ public abstract class Animal {
     }
 
     /**
-     * Get the x coordinate of the animal on the map
-     * @return The x coordinate of the animal on the map
+     * Get the set of all terrains compatible with this animal
+     * @return The set of all terrains compatible with this animal
      */
-    public int getX() {
-        return x;
+    public TerrainSet getCompatibleTerrains() {
+        return compatibleTerrains;
     }
 
     /**
-     * Set the x coordinate of the animal on the map
-     * @param x The x coordinate of the animal on the map
+     * Set the set of all terrains compatible with this animal
+     * @param compatibleTerrains The set of all terrains compatible with this animal
      */
-    public void setX(int x) {
-        this.x = x;
+    public void setCompatibleTerrains(TerrainSet compatibleTerrains) {
+        this.compatibleTerrains = compatibleTerrains;
     }
 
     /**
-     * Get the y coordinate of the animal on the map
-     * @return The y coordinate of the animal on the map
-     */
-    public int getY() {
-        return y;
-    }
-
-    /**
-     * Set the y coordinate of the animal on the map
-     * @param y The y coordinate of the animal on the map
-     */
-    public void setY(int y) {
-        this.y = y;
-    }
-
-    /**
-     * Get the list of all terrains compatible with this animal
-     * @return The list of all terrains compatible with this animal
-     */
-    public List<Integer> getCompatibleTerrainsIDs() {
-        return compatibleTerrainsIDs;
-    }
-
-    /**
-     * Set the list of all terrains compatible with this animal
-     * @param compatibleTerrainsIDs The list of all terrains compatible with this animal
-     */
-    public void setCompatibleTerrainsIDs(List<Integer> compatibleTerrainsIDs) {
-        this.compatibleTerrainsIDs = compatibleTerrainsIDs;
-    }
-
-    /**
-     * Get the image object for this animal
+     * Get the image object for this animal, loading it the first time
      * @return The image object for this animal
      */
     public Image getImage() {
-        return image;
+        synchronized (images) {
+            return images.computeIfAbsent(imagePath, Image::new);
+        }
     }
 
     /**
-     * Set the image object for this animal
-     * @param image The image object for this animal
+     * Set the path of the image resource for this animal
+     * @param imagePath The path of the image resource for this animal
      */
-    public void setImage(Image image) {
-        this.image = image;
+    public void setImagePath(String imagePath) {
+        this.imagePath = imagePath;
     }
 
     /**
@@ -181,20 +148,4 @@ public abstract class Animal {
     public void setHeightDifference(float heightDifference) {
         this.heightDifference = heightDifference;
     }
-
-    /**
-     * Return if the animal is alive or not
-     * @return If the animal is alive or not
-     */
-    public boolean isAlive() {
-        return alive;
-    }
-
-    /**
-     * Set the animal state, alive or not
-     * @param alive The animal state
-     */
-    public void setAlive(boolean alive) {
-        this.alive = alive;
-    }
 }
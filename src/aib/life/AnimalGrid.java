@@ -0,0 +1,262 @@
+package aib.life;
+
+import aib.Constants;
+import javafx.scene.image.Image;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A uniform grid spatial index over the animals in the world.
+ * The map is split into square cells the size of an animal sprite, and every animal is stored in the cell
+ * its center coordinates fall in. Because a sprite is never wider than a cell, the sprite under any point
+ * can only belong to an animal in the cell of that point or in one of its 8 neighbouring cells.
+ * Animals are referred to by their index in the AnimalStore, and the animals of a cell are chained together
+ * through a "next animal" column, so the grid needs no objects per animal.
+ */
+public class AnimalGrid {
+    /** The size of a grid cell (in pixels), tied to the width of an animal sprite */
+    public static final int CELL_SIZE = Constants.ANIMAL_IMAGE_WIDTH;
+    /** The value marking the end of a chain of animals */
+    private static final int NONE = -1;
+
+    /** The number of cell columns in the grid */
+    private final int columns;
+    /** The number of cell rows in the grid */
+    private final int rows;
+    /** The index of the first animal in each cell, indexed by row * columns + column */
+    private final int[] firstInCell;
+    /** The index of the next animal in the same cell, for each animal */
+    private int[] nextInCell;
+    /** The store the indexed animals are kept in */
+    private AnimalStore store;
+
+    /**
+     * Create a new, empty grid covering a map of the given size
+     * @param mapWidth The map width (in pixels)
+     * @param mapHeight The map height (in pixels)
+     */
+    public AnimalGrid(int mapWidth, int mapHeight) {
+        this.columns = (mapWidth + CELL_SIZE - 1) / CELL_SIZE;
+        this.rows = (mapHeight + CELL_SIZE - 1) / CELL_SIZE;
+        this.firstInCell = new int[columns * rows];
+        this.nextInCell = new int[0];
+        this.store = new AnimalStore();
+        Arrays.fill(firstInCell, NONE);
+    }
+
+    /**
+     * Add an animal to the cell its center lies in
+     * @param animal The index of the animal in the store
+     */
+    public void add(int animal) {
+        if (animal >= nextInCell.length)
+            nextInCell = Arrays.copyOf(nextInCell, Math.max(animal + 1, nextInCell.length * 2));
+        int cell = cellIndex(column(store.getX(animal)), row(store.getY(animal)));
+        nextInCell[animal] = firstInCell[cell];
+        firstInCell[cell] = animal;
+    }
+
+    /**
+     * Remove an animal from the grid, e.g. before changing its coordinates
+     * @param animal The index of the animal in the store
+     */
+    public void remove(int animal) {
+        int cell = cellIndex(column(store.getX(animal)), row(store.getY(animal)));
+        if (firstInCell[cell] == animal) {
+            firstInCell[cell] = nextInCell[animal];
+            return;
+        }
+        for (int a = firstInCell[cell]; a != NONE; a = nextInCell[a]) {
+            if (nextInCell[a] == animal) {
+                nextInCell[a] = nextInCell[animal];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove all the animals from the grid
+     */
+    public void clear() {
+        Arrays.fill(firstInCell, NONE);
+    }
+
+    /**
+     * Replace the contents of the grid with the animals in a store
+     * @param store The store with the animals that should be in the grid
+     */
+    public void rebuild(AnimalStore store) {
+        this.store = store;
+        clear();
+        nextInCell = new int[store.size()];
+        for (int animal = 0; animal < store.size(); animal++) {
+            add(animal);
+        }
+    }
+
+    /**
+     * Find the animal whose sprite is drawn under a point on the map
+     * Only the cell of the point and its neighbours are searched, so the lookup takes constant time
+     * @param x The x coordinate of the point
+     * @param y The y coordinate of the point
+     * @return The index of the animal under the point (the one with its center closest to the point if sprites
+     *         overlap), or -1 if there is no animal there
+     */
+    public int findAt(double x, double y) {
+        int column = column((int) x);
+        int row = row((int) y);
+
+        int found = NONE;
+        double foundDistance = Double.MAX_VALUE;
+        for (int c = Math.max(0, column - 1); c <= Math.min(columns - 1, column + 1); c++) {
+            for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                for (int a = firstInCell[cellIndex(c, r)]; a != NONE; a = nextInCell[a]) {
+                    if (spriteContains(a, x, y)) {
+                        double distance = squaredDistance(a, x, y);
+                        if (distance < foundDistance) {
+                            found = a;
+                            foundDistance = distance;
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Visit all the animals whose sprites intersect a rectangle on the map, e.g. the visible viewport
+     * @param minX The left edge of the rectangle
+     * @param minY The top edge of the rectangle
+     * @param maxX The right edge of the rectangle
+     * @param maxY The bottom edge of the rectangle
+     * @param action The action applied to the index of every animal found
+     */
+    public void forEachInRectangle(double minX, double minY, double maxX, double maxY, IntConsumer action) {
+        // A sprite can reach at most one cell outside the cell of its animal, so widen the search by one cell
+        int firstColumn = Math.max(0, column((int) Math.floor(minX)) - 1);
+        int lastColumn = Math.min(columns - 1, column((int) Math.ceil(maxX)) + 1);
+        int firstRow = Math.max(0, row((int) Math.floor(minY)) - 1);
+        int lastRow = Math.min(rows - 1, row((int) Math.ceil(maxY)) + 1);
+
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                for (int a = firstInCell[cellIndex(c, r)]; a != NONE; a = nextInCell[a]) {
+                    double left = spriteX(store.getX(a));
+                    double top = spriteY(store.getY(a));
+                    if (left < maxX && left + CELL_SIZE > minX && top < maxY
+                            && top + spriteHeight(store.getSpecies(a)) > minY)
+                        action.accept(a);
+                }
+            }
+        }
+    }
+
+    /**
+     * Visit all the animals whose centers lie within a given distance of a point
+     * @param x The x coordinate of the point
+     * @param y The y coordinate of the point
+     * @param radius The search distance (in pixels)
+     * @param action The action applied to the index of every animal found
+     */
+    public void forEachInRadius(double x, double y, double radius, IntConsumer action) {
+        int firstColumn = Math.max(0, column((int) Math.floor(x - radius)));
+        int lastColumn = Math.min(columns - 1, column((int) Math.ceil(x + radius)));
+        int firstRow = Math.max(0, row((int) Math.floor(y - radius)));
+        int lastRow = Math.min(rows - 1, row((int) Math.ceil(y + radius)));
+
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                for (int a = firstInCell[cellIndex(c, r)]; a != NONE; a = nextInCell[a]) {
+                    if (squaredDistance(a, x, y) <= radius * radius)
+                        action.accept(a);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the x coordinate of the left edge of an animal's sprite
+     * (the center of the sprite is on the animal coordinates, but the sprite is never drawn outside the map)
+     * @param x The x coordinate of the animal
+     * @return The x coordinate of the sprite
+     */
+    public static int spriteX(int x) {
+        return Math.max(0, x - CELL_SIZE / 2);
+    }
+
+    /**
+     * Get the y coordinate of the top edge of an animal's sprite
+     * @param y The y coordinate of the animal
+     * @return The y coordinate of the sprite
+     */
+    public static int spriteY(int y) {
+        return Math.max(0, y - CELL_SIZE / 2);
+    }
+
+    /**
+     * Get the height of the sprite of a species, which keeps the ratio of the species image
+     * @param speciesID The species ID
+     * @return The height of the sprite
+     */
+    public static double spriteHeight(int speciesID) {
+        Image image = SpeciesTable.get(speciesID).getImage();
+        if (image == null || image.getWidth() <= 0) return CELL_SIZE;
+        return CELL_SIZE * image.getHeight() / image.getWidth();
+    }
+
+    /**
+     * Check if a point lies on the sprite of an animal
+     * @param animal The index of the animal
+     * @param x The x coordinate of the point
+     * @param y The y coordinate of the point
+     * @return If the point lies on the sprite
+     */
+    private boolean spriteContains(int animal, double x, double y) {
+        double left = spriteX(store.getX(animal));
+        double top = spriteY(store.getY(animal));
+        return x >= left && x < left + CELL_SIZE && y >= top && y < top + spriteHeight(store.getSpecies(animal));
+    }
+
+    /**
+     * Get the squared distance between the center of an animal and a point
+     * @param animal The index of the animal
+     * @param x The x coordinate of the point
+     * @param y The y coordinate of the point
+     * @return The squared distance
+     */
+    private double squaredDistance(int animal, double x, double y) {
+        double dx = store.getX(animal) - x;
+        double dy = store.getY(animal) - y;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Get the grid column a map x coordinate falls in, clamped to the grid
+     * @param x The x coordinate
+     * @return The column
+     */
+    private int column(int x) {
+        return Math.max(0, Math.min(columns - 1, x / CELL_SIZE));
+    }
+
+    /**
+     * Get the grid row a map y coordinate falls in, clamped to the grid
+     * @param y The y coordinate
+     * @return The row
+     */
+    private int row(int y) {
+        return Math.max(0, Math.min(rows - 1, y / CELL_SIZE));
+    }
+
+    /**
+     * Get the position of a cell in the grid
+     * @param column The cell column
+     * @param row The cell row
+     * @return The index of the cell
+     */
+    private int cellIndex(int column, int row) {
+        return row * columns + column;
+    }
+}
@@ -0,0 +1,159 @@
+package aib.life;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A compact, column oriented store of individual animals.
+ * Every individual is identified by its index in the store, and only the information that is different for each
+ * individual is kept here: its species ID, its coordinates and whether it is alive.
+ * Everything else about an individual is found in the SpeciesTable, using its species ID
+ */
+public class AnimalStore {
+    /** The initial number of individuals the store has room for */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** The species ID of each individual */
+    private short[] species;
+    /** The x coordinate of each individual on the map */
+    private int[] xs;
+    /** The y coordinate of each individual on the map */
+    private int[] ys;
+    /** The state of each individual (bit set => alive) */
+    private final BitSet alive;
+    /** The number of individuals in the store */
+    private int size;
+
+    /**
+     * Create a new, empty store
+     */
+    public AnimalStore() {
+        species = new short[INITIAL_CAPACITY];
+        xs = new int[INITIAL_CAPACITY];
+        ys = new int[INITIAL_CAPACITY];
+        alive = new BitSet(INITIAL_CAPACITY);
+        size = 0;
+    }
+
+    /**
+     * Add a new, alive individual to the store
+     * @param speciesID The species ID of the individual
+     * @param x The x coordinate of the individual
+     * @param y The y coordinate of the individual
+     * @return The index of the new individual
+     */
+    public int add(int speciesID, int x, int y) {
+        ensureCapacity(size + 1);
+        species[size] = (short) speciesID;
+        xs[size] = x;
+        ys[size] = y;
+        alive.set(size);
+        return size++;
+    }
+
+    /**
+     * Add all the individuals of another store to the end of this store, keeping their order
+     * @param other The store to copy the individuals from
+     */
+    public void addAll(AnimalStore other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.species, 0, species, size, other.size);
+        System.arraycopy(other.xs, 0, xs, size, other.size);
+        System.arraycopy(other.ys, 0, ys, size, other.size);
+        for (int i = other.alive.nextSetBit(0); i >= 0 && i < other.size; i = other.alive.nextSetBit(i + 1)) {
+            alive.set(size + i);
+        }
+        size += other.size;
+    }
+
+    /**
+     * Remove all the individuals from the store
+     */
+    public void clear() {
+        alive.clear();
+        size = 0;
+    }
+
+    /**
+     * Get the number of individuals in the store
+     * @return The number of individuals
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the species ID of an individual
+     * @param index The index of the individual
+     * @return The species ID
+     */
+    public int getSpecies(int index) {
+        return species[index];
+    }
+
+    /**
+     * Get the x coordinate of an individual on the map
+     * @param index The index of the individual
+     * @return The x coordinate
+     */
+    public int getX(int index) {
+        return xs[index];
+    }
+
+    /**
+     * Set the x coordinate of an individual on the map
+     * @param index The index of the individual
+     * @param x The x coordinate
+     */
+    public void setX(int index, int x) {
+        xs[index] = x;
+    }
+
+    /**
+     * Get the y coordinate of an individual on the map
+     * @param index The index of the individual
+     * @return The y coordinate
+     */
+    public int getY(int index) {
+        return ys[index];
+    }
+
+    /**
+     * Set the y coordinate of an individual on the map
+     * @param index The index of the individual
+     * @param y The y coordinate
+     */
+    public void setY(int index, int y) {
+        ys[index] = y;
+    }
+
+    /**
+     * Return if an individual is alive or not
+     * @param index The index of the individual
+     * @return If the individual is alive
+     */
+    public boolean isAlive(int index) {
+        return alive.get(index);
+    }
+
+    /**
+     * Set the state of an individual, alive or not
+     * @param index The index of the individual
+     * @param alive The state of the individual
+     */
+    public void setAlive(int index, boolean alive) {
+        this.alive.set(index, alive);
+    }
+
+    /**
+     * Make sure the store has room for a number of individuals, growing the columns if needed
+     * @param capacity The number of individuals the store needs room for
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= xs.length) return;
+        int newCapacity = Math.max(capacity, xs.length + (xs.length >> 1));
+        species = Arrays.copyOf(species, newCapacity);
+        xs = Arrays.copyOf(xs, newCapacity);
+        ys = Arrays.copyOf(ys, newCapacity);
+    }
+}
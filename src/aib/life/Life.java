@@ -1,46 +1,89 @@
 package aib.life;
 
-import aib.Main;
 import aib.environment.Pixel;
 import aib.environment.World;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Deals with generating animals on the existing world map
  */
 public class Life {
 
-    /** A list of all the species we want to generate in the world */
-    public static final List<Animal> species = new ArrayList<>(Arrays.asList(new PolarBear(),new Bee()));
+    /** The size of the square tiles the map is split into when spawning animals in parallel (in pixels) */
+    public static final int SPAWN_TILE_SIZE = 128;
 
     /**
      * Generate animals on the map
-     * @throws IllegalAccessException
-     * @throws InstantiationException
      */
-    public static void generateLife()throws IllegalAccessException, InstantiationException {
+    public static void generateLife() {
         // Remove the previous animals
-        World.getAnimals().clear();
+        World.clearAnimals();
 
-        List<Animal> animals = new ArrayList<>();
         // Use the same seed as for the map to generate the same animals every time for this map
-        Random rand = new Random(Integer.parseInt(Main.userInterface.seedField.getText()));
+        AnimalStore animals = spawnAnimals(World.settings.getSeed());
+
+        // Add the animals to the world
+        World.setAnimals(animals);
+        World.settings.printMessage(World.getAnimals().size() + " animals generated");
+    }
+
+    /**
+     * Spawn animals on the map, splitting the map into tiles that are processed in parallel.
+     * Each tile has its own random generator derived from the seed and the tile index, and the tiles' animals
+     * are joined in tile order, so the result is the same irrespective of the number of threads
+     * @param seed The seed used to generate the animals
+     * @return The spawned animals
+     */
+    public static AnimalStore spawnAnimals(int seed) {
+        // Animals are not spawned in the last 40 pixels of the map, so their images fit on the map
+        int width = World.pixels.length - 40;
+        int height = World.pixels[0].length - 40;
+        int tilesX = (width + SPAWN_TILE_SIZE - 1) / SPAWN_TILE_SIZE;
+        int tilesY = (height + SPAWN_TILE_SIZE - 1) / SPAWN_TILE_SIZE;
+
+        List<AnimalStore> tiles = IntStream.range(0, tilesX * tilesY).parallel()
+                .mapToObj(tile -> spawnTile(seed, tile, tile % tilesX, tile / tilesX, width, height))
+                .collect(Collectors.toList());
+
+        AnimalStore animals = new AnimalStore();
+        for (AnimalStore tile : tiles) {
+            animals.addAll(tile);
+        }
+        return animals;
+    }
+
+    /**
+     * Spawn the animals on one tile of the map
+     * @param seed The seed used to generate the animals
+     * @param tile The index of the tile
+     * @param tileX The column of the tile
+     * @param tileY The row of the tile
+     * @param width The width of the map region animals can spawn in
+     * @param height The height of the map region animals can spawn in
+     * @return The animals spawned on the tile
+     */
+    private static AnimalStore spawnTile(int seed, int tile, int tileX, int tileY, int width, int height) {
+        AnimalStore animals = new AnimalStore();
+        SplittableRandom rand = new SplittableRandom(tileSeed(seed, tile));
 
         // For each pixel, find and spawn animals based on probabilities
-        for (int x = 0; x < World.pixels.length - 40; x++) {
-            for (int y = 0; y < World.pixels[x].length - 40; y++) {
+        int maxX = Math.min(width, (tileX + 1) * SPAWN_TILE_SIZE);
+        int maxY = Math.min(height, (tileY + 1) * SPAWN_TILE_SIZE);
+        for (int x = tileX * SPAWN_TILE_SIZE; x < maxX; x++) {
+            for (int y = tileY * SPAWN_TILE_SIZE; y < maxY; y++) {
                 // Get the current pixel
                 Pixel pixel = World.pixels[x][y];
 
                 // Iterate over all available animals species to find ones that are compatible with the current pixel
-                for (Animal animal : species) {
+                for (int id = 0; id < SpeciesTable.size(); id++) {
+                    Animal animal = SpeciesTable.get(id);
 
                     // If current animal can live in current terrain type
-                    if (animal.getCompatibleTerrainsIDs().contains(pixel.getTerrainType().getId())) {
+                    if (SpeciesTable.isCompatible(id, pixel.getTerrainType().getId())) {
                         // And if it can spawn at this terrain height, calculate a probability for it to spawn
                         if (pixel.getNoiseHeight() < animal.getMaxHeight() && pixel.getNoiseHeight() > animal.getMinHeight()) {
 
@@ -53,11 +96,8 @@ public class Life {
                             // Apply the probability
                             if (rand.nextInt(pMax) < f && rand.nextInt(2000) < (animal.getMaxProb() / animal.getHeightDifference())) {
                                 // If the probability condition passed,
-                                // create a new instance of this type of animal on this pixel
-                                Animal a = animal.getClass().newInstance();
-                                a.setX(x);
-                                a.setY(y);
-                                animals.add(a);
+                                // create a new individual of this species on this pixel
+                                animals.add(id, x, y);
                                 // If an animal is found for this pixel, move to the next pixel
                                 // don't look for any more animals
                                 break;
@@ -68,10 +108,21 @@ public class Life {
                 }
             }
         }
+        return animals;
+    }
 
-        // Add the animals to the world
-        World.setAnimals(animals);
-        Main.userInterface.printToUserTextBox(World.getAnimals().size() + " animals generated");
+    /**
+     * Derive the seed for the random generator of a tile from the animals seed and the tile index
+     * @param seed The seed used to generate the animals
+     * @param tile The index of the tile
+     * @return The tile seed
+     */
+    private static long tileSeed(int seed, int tile) {
+        // Spread the seed and the tile index over all the bits (using the SplitMix64 finaliser)
+        long z = seed * 0x9E3779B97F4A7C15L + tile;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
     /**
@@ -0,0 +1,153 @@
+package aib.life;
+
+import aib.environment.Pixel;
+import aib.environment.World;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Deals with animals migrating to new habitats when the terrain they live on is no longer inhabitable.
+ * Migrating animals are grouped by the map tile they are on, and the tiles search for new habitats in parallel.
+ * When several animals (possibly from different tiles) pick the same pixel, the one with the lowest index wins,
+ * and the others look again in the next round. The result is therefore the same irrespective of the number of threads
+ */
+public class Migration {
+    /** The distance (in pixels) an animal can travel in a decade to find a new habitat */
+    public static final int DISTANCE_PER_DECADE = 10;
+    /** The maximum distance (in pixels) an animal can travel in a single update, however many decades passed */
+    public static final int MAX_DISTANCE = 50;
+    /** The size of the square tiles migrating animals are grouped by (in pixels) */
+    public static final int TILE_SIZE = 128;
+    /** The number of times animals that lost a pixel to another animal look for a new one */
+    public static final int MAX_ROUNDS = 4;
+    /** The value marking a pixel nobody claimed, or an animal that found no destination */
+    private static final int NONE = -1;
+
+    /**
+     * Find new habitats for animals whose terrain is no longer inhabitable
+     * @param animals The store the animals are kept in
+     * @param movers The indexes of the animals that need to migrate
+     * @param decades The number of decades passed, which determines how far animals can travel
+     * @param occupied Checks if a pixel (by pixel index) already has an animal on it
+     * @return The pixel index each animal moves to, in the same order as movers, or -1 if it found no habitat
+     */
+    public static int[] findDestinations(AnimalStore animals, int[] movers, int decades, IntPredicate occupied) {
+        int budget = Math.min(MAX_DISTANCE, DISTANCE_PER_DECADE * decades);
+        int[] destinations = new int[movers.length];
+        Arrays.fill(destinations, NONE);
+        if (movers.length == 0 || budget <= 0) return destinations;
+
+        // Group the movers by tile, keeping the original order inside each tile
+        int tilesX = (World.pixels.length + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesY = (World.pixels[0].length + TILE_SIZE - 1) / TILE_SIZE;
+        int[] tileStart = new int[tilesX * tilesY + 1];
+        for (int mover : movers) {
+            tileStart[tileOf(animals, mover, tilesX) + 1]++;
+        }
+        for (int t = 0; t < tilesX * tilesY; t++) {
+            tileStart[t + 1] += tileStart[t];
+        }
+        // Positions in movers, sorted by tile
+        int[] byTile = new int[movers.length];
+        int[] fill = Arrays.copyOf(tileStart, tilesX * tilesY);
+        for (int m = 0; m < movers.length; m++) {
+            byTile[fill[tileOf(animals, movers[m], tilesX)]++] = m;
+        }
+
+        // The lowest mover position that claimed each pixel in the current round
+        AtomicIntegerArray claims = new AtomicIntegerArray(World.pixels.length * World.pixels[0].length);
+        for (int i = 0; i < claims.length(); i++) claims.set(i, Integer.MAX_VALUE);
+        // The pixels taken by animals in previous rounds
+        boolean[] taken = new boolean[claims.length()];
+        // The pixel each mover wants in the current round
+        int[] candidates = new int[movers.length];
+
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            // Every unresolved mover picks the closest free habitat pixel, and claims it
+            IntStream.range(0, tilesX * tilesY).parallel().forEach(tile -> {
+                for (int i = tileStart[tile]; i < tileStart[tile + 1]; i++) {
+                    int m = byTile[i];
+                    candidates[m] = NONE;
+                    if (destinations[m] != NONE) continue;
+                    candidates[m] = findHabitat(animals, movers[m], budget, pixel -> occupied.test(pixel) || taken[pixel]);
+                    if (candidates[m] != NONE) claims.accumulateAndGet(candidates[m], m, Math::min);
+                }
+            });
+
+            // Movers that won their pixel take it, the others try again in the next round
+            boolean contested = false;
+            for (int m = 0; m < movers.length; m++) {
+                if (candidates[m] == NONE) continue;
+                if (claims.get(candidates[m]) == m) {
+                    destinations[m] = candidates[m];
+                    taken[candidates[m]] = true;
+                } else {
+                    contested = true;
+                }
+            }
+            for (int m = 0; m < movers.length; m++) {
+                if (candidates[m] != NONE) claims.set(candidates[m], Integer.MAX_VALUE);
+            }
+            if (!contested) break;
+        }
+
+        return destinations;
+    }
+
+    /**
+     * Find the closest pixel an animal can live on, searching squares of increasing size around it
+     * @param animals The store the animal is kept in
+     * @param animal The index of the animal
+     * @param budget The maximum distance the animal can travel (in pixels)
+     * @param unavailable Checks if a pixel (by pixel index) can not be moved to
+     * @return The pixel index of the new habitat, or -1 if there is none within reach
+     */
+    private static int findHabitat(AnimalStore animals, int animal, int budget, IntPredicate unavailable) {
+        int species = animals.getSpecies(animal);
+        int x = animals.getX(animal);
+        int y = animals.getY(animal);
+        // Animals stay out of the last 40 pixels of the map, as when they are spawned, so their images fit on the map
+        int width = World.pixels.length - 40;
+        int height = World.pixels[0].length - 40;
+
+        for (int d = 1; d <= budget; d++) {
+            // Visit the ring of pixels at distance d, row by row
+            for (int py = Math.max(0, y - d); py <= Math.min(height - 1, y + d); py++) {
+                boolean edgeRow = py == y - d || py == y + d;
+                int step = edgeRow ? 1 : 2 * d;
+                for (int px = x - d; px <= x + d; px += step) {
+                    if (px < 0 || px >= width) continue;
+                    int pixel = World.pixelIndex(px, py);
+                    if (isHabitat(species, World.pixels[px][py]) && !unavailable.test(pixel)) return pixel;
+                }
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Check if a species can live on a pixel
+     * @param species The species ID
+     * @param pixel The pixel
+     * @return If the pixel is a habitat for the species
+     */
+    private static boolean isHabitat(int species, Pixel pixel) {
+        Animal animal = SpeciesTable.get(species);
+        return SpeciesTable.isCompatible(species, pixel.getTerrainType().getId())
+                && pixel.getNoiseHeight() < animal.getMaxHeight() && pixel.getNoiseHeight() > animal.getMinHeight();
+    }
+
+    /**
+     * Get the tile an animal is on
+     * @param animals The store the animal is kept in
+     * @param animal The index of the animal
+     * @param tilesX The number of tile columns
+     * @return The tile index
+     */
+    private static int tileOf(AnimalStore animals, int animal, int tilesX) {
+        return (animals.getY(animal) / TILE_SIZE) * tilesX + animals.getX(animal) / TILE_SIZE;
+    }
+}
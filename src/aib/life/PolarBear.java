@@ -1,23 +1,19 @@
 package aib.life;
 
-import javafx.scene.image.Image;
-
-import java.util.ArrayList;
-import java.util.Arrays;
+import aib.environment.TerrainSet;
 
 /**
  * A polar bear is one of the species in our world
  */
 public class PolarBear extends Animal{
-
     /**
      * Create a new polar bear
      */
     public PolarBear() {
         super();
         this.setName("Polar Bear");
-        this.setCompatibleTerrainsIDs(new ArrayList<>(Arrays.asList(1,2,3)));
-        this.setImage(new Image("/bear.png"));
+        this.setCompatibleTerrains(TerrainSet.of(1,2,3));
+        this.setImagePath("/bear.png");
         this.setMinHeight(0f);
         this.setMaxHeight(1f);
         this.setHeightDifference(this.getMaxHeight() - this.getMinHeight());
@@ -0,0 +1,60 @@
+package aib.life;
+
+import aib.environment.TerrainSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The table of all the species in the world. The information about a species is kept here only once,
+ * and individuals refer to their species by its ID, i.e. its position in the table
+ */
+public class SpeciesTable {
+    /** A list of all the species we want to generate in the world */
+    private static final List<Animal> species = new ArrayList<>(Arrays.asList(new PolarBear(), new Bee()));
+    /** The terrains compatible with each species, indexed by the species ID */
+    private static final TerrainSet[] compatibleTerrains = new TerrainSet[species.size()];
+
+    static {
+        for (int id = 0; id < species.size(); id++) {
+            compatibleTerrains[id] = species.get(id).getCompatibleTerrains();
+        }
+    }
+
+    /**
+     * Get the number of species in the table
+     * @return The number of species
+     */
+    public static int size() {
+        return species.size();
+    }
+
+    /**
+     * Get the information about a species
+     * @param id The ID of the species
+     * @return The species with that ID
+     */
+    public static Animal get(int id) {
+        return species.get(id);
+    }
+
+    /**
+     * Get the set of terrains compatible with a species
+     * @param id The ID of the species
+     * @return The compatible terrains
+     */
+    public static TerrainSet getCompatibleTerrains(int id) {
+        return compatibleTerrains[id];
+    }
+
+    /**
+     * Check if a species can live on a type of terrain
+     * @param id The ID of the species
+     * @param terrainID The ID of the terrain
+     * @return If the terrain is compatible with the species
+     */
+    public static boolean isCompatible(int id, int terrainID) {
+        return compatibleTerrains[id].contains(terrainID);
+    }
+}
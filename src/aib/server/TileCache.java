@@ -0,0 +1,101 @@
+package aib.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The encoded tiles the server has sent, so a tile asked for again is not rendered again
+ * The cache is bounded by the memory its tiles use rather than by their number, and when it is full
+ * the least recently used tiles are removed first
+ */
+public class TileCache {
+    /** The memory an entry uses besides its key and image (the map entry, the tile and the array headers) */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    /** An encoded tile */
+    public static class Tile {
+        /** The PNG file */
+        public final byte[] png;
+        /** The entity tag of the file, which changes when the file does */
+        public final String etag;
+
+        /**
+         * Create a tile
+         * @param png The PNG file
+         * @param etag The entity tag of the file
+         */
+        public Tile(byte[] png, String etag) {
+            this.png = png;
+            this.etag = etag;
+        }
+    }
+
+    /** The tiles, from the least to the most recently used */
+    private final LinkedHashMap<String, Tile> tiles = new LinkedHashMap<>(256, 0.75f, true);
+    /** The most memory the tiles may use, in bytes */
+    private final long maxBytes;
+    /** The memory the tiles use, in bytes */
+    private long bytes;
+    /** The number of tiles found and not found in the cache */
+    private long hits, misses;
+
+    /**
+     * Create an empty cache
+     * @param maxBytes The most memory the tiles may use, in bytes
+     */
+    public TileCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get a tile, making it the most recently used
+     * @param key The tile key
+     * @return The tile, or null if it is not in the cache
+     */
+    public synchronized Tile get(String key) {
+        Tile tile = tiles.get(key);
+        if (tile != null) hits++;
+        else misses++;
+        return tile;
+    }
+
+    /**
+     * Add a tile, removing the least recently used tiles until the tiles fit in the memory again
+     * A tile larger than the whole cache is not added
+     * @param key The tile key
+     * @param tile The tile
+     */
+    public synchronized void put(String key, Tile tile) {
+        long size = size(key, tile);
+        if (size > maxBytes) return;
+        Tile previous = tiles.put(key, tile);
+        if (previous != null) bytes -= size(key, previous);
+        bytes += size;
+        Iterator<Map.Entry<String, Tile>> eldest = tiles.entrySet().iterator();
+        while (bytes > maxBytes) {
+            Map.Entry<String, Tile> entry = eldest.next();
+            bytes -= size(entry.getKey(), entry.getValue());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Describe the state of the cache
+     * @return The number of tiles, the memory they use and the hit rate
+     */
+    public synchronized String describe() {
+        return String.format("%d tiles, %.1f of %.1f MB, %d hits and %d misses", tiles.size(),
+                bytes / 1048576.0, maxBytes / 1048576.0, hits, misses);
+    }
+
+    /**
+     * Get the memory a cache entry uses
+     * @param key The tile key
+     * @param tile The tile
+     * @return The size in bytes
+     */
+    private static long size(String key, Tile tile) {
+        return ENTRY_OVERHEAD + 2L * key.length() + tile.png.length + 2L * tile.etag.length();
+    }
+}
@@ -0,0 +1,188 @@
+package aib.server;
+
+import aib.export.CommandLineOptions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Command line tool that measures a running tile server: it asks for random tiles of a world from several threads,
+ * and prints the median and 99th percentile response times and the throughput
+ * Before measuring, it asks for one tile and waits for it, so the time the world takes to generate is not measured
+ * Run the main method with --help to see the options
+ */
+public class TileLoadTest {
+    /** The description of the options */
+    private static final String USAGE =
+            "Usage: java aib.server.TileLoadTest [options]\n" +
+            "  --url URL           the address of the server (default http://localhost:8080)\n" +
+            "  --map M             the map the tiles are from (default terrain)\n" +
+            "  --query Q           the world parameters, as the query of the tile address (default seed=1&year=2000)\n" +
+            "  --requests N        the number of measured requests (default 1000)\n" +
+            "  --concurrency N     the number of requests sent at the same time (default 16)\n" +
+            "  --revalidate        send the entity tag of the tiles already received, as a browser does\n";
+
+    /**
+     * Run the load test
+     * @param args The options (see USAGE)
+     */
+    public static void main(String[] args) {
+        try {
+            CommandLineOptions options = new CommandLineOptions(args, "revalidate", "help");
+            if (options.has("help")) {
+                System.out.print(USAGE);
+                return;
+            }
+            test(options);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("The load test failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Send the requests and print the measurements
+     * @param options The options (see USAGE)
+     * @throws IOException If the first tile cannot be fetched
+     */
+    private static void test(CommandLineOptions options) throws IOException {
+        String base = options.getString("url", "http://localhost:8080") + TileServer.TILES_PATH + options.getString("map", "terrain") + "/";
+        String query = "?" + options.getString("query", "seed=1&year=2000");
+        int requests = options.getInt("requests", 1000);
+        int concurrency = options.getInt("concurrency", 16);
+        if (requests < 1 || concurrency < 1) throw new IllegalArgumentException("--requests and --concurrency must be positive");
+        boolean revalidate = options.has("revalidate");
+
+        // Every tile of every zoom level
+        List<String> tiles = new ArrayList<>();
+        for (int zoom = 0; zoom <= TileServer.maxZoom(); zoom++) {
+            for (int y = 0; y * TileServer.TILE_SIZE < TileServer.mapHeight(zoom); y++) {
+                for (int x = 0; x * TileServer.TILE_SIZE < TileServer.mapWidth(zoom); x++) tiles.add(zoom + "/" + x + "/" + y + ".png");
+            }
+        }
+        Random random = new Random(1);
+        String[] order = new String[requests];
+        for (int i = 0; i < requests; i++) order[i] = tiles.get(random.nextInt(tiles.size()));
+
+        long start = System.nanoTime();
+        int status = fetch(base + tiles.get(0) + query, null, null);
+        if (status != 200) throw new IOException("The server answered " + status + " to the first tile");
+        System.out.println(String.format("First tile (the world was generated) in %.2f s", (System.nanoTime() - start) / 1e9));
+
+        long[] latencies = new long[requests];
+        Map<Integer, AtomicInteger> statuses = new TreeMap<>();
+        for (int code : new int[] {200, 304, 400, 404, 500, 503, -1}) statuses.put(code, new AtomicInteger());
+        Map<String, String> etags = new ConcurrentHashMap<>();
+        AtomicLong bytes = new AtomicLong();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            int request = i;
+            clients.execute(() -> {
+                String tile = order[request];
+                long sent = System.nanoTime();
+                int code;
+                try {
+                    code = fetch(base + tile + query, revalidate ? etags : null, bytes);
+                } catch (IOException e) {
+                    code = -1;
+                }
+                latencies[request] = System.nanoTime() - sent;
+                AtomicInteger count = statuses.get(code);
+                (count != null ? count : statuses.get(-1)).incrementAndGet();
+            });
+        }
+        clients.shutdown();
+        try {
+            clients.awaitTermination(1, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.println(String.format("%d requests from %d threads in %.2f s: %.1f requests per second, %.2f MB per second",
+                requests, concurrency, seconds, requests / seconds, bytes.get() / 1048576.0 / seconds));
+        System.out.println(String.format("Response time: p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                percentile(latencies, 50) / 1e6, percentile(latencies, 99) / 1e6, latencies[requests - 1] / 1e6));
+        StringBuilder codes = new StringBuilder("Status codes:");
+        for (Map.Entry<Integer, AtomicInteger> code : statuses.entrySet()) {
+            if (code.getValue().get() > 0) codes.append(' ').append(code.getKey() < 0 ? "failed" : "" + code.getKey())
+                    .append(": ").append(code.getValue().get());
+        }
+        System.out.println(codes);
+        System.out.println("Server cache: " + fetchText(options.getString("url", "http://localhost:8080") + TileServer.STATS_PATH));
+    }
+
+    /**
+     * Fetch a tile and read all of it
+     * @param address The tile address
+     * @param etags The entity tag of every tile received, sent back when the tile is asked for again; or null
+     * @param bytes Counts the bytes received, or null
+     * @return The status code
+     * @throws IOException If the tile cannot be fetched
+     */
+    private static int fetch(String address, Map<String, String> etags, AtomicLong bytes) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(address).openConnection();
+        String etag = etags != null ? etags.get(address) : null;
+        if (etag != null) connection.setRequestProperty("If-None-Match", etag);
+        int status = connection.getResponseCode();
+        InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (body != null) {
+            try (InputStream in = body) {
+                byte[] buffer = new byte[8192];
+                for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                    if (bytes != null) bytes.addAndGet(read);
+                }
+            }
+        }
+        if (etags != null && connection.getHeaderField("ETag") != null) etags.put(address, connection.getHeaderField("ETag"));
+        return status;
+    }
+
+    /**
+     * Fetch a text response
+     * @param address The address
+     * @return The text, without the line break at the end
+     * @throws IOException If the text cannot be fetched
+     */
+    private static String fetchText(String address) throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        try (InputStream in = new URL(address).openStream()) {
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) text.write(buffer, 0, read);
+        }
+        return text.toString("UTF-8").trim();
+    }
+
+    /**
+     * Get a percentile of sorted measurements (the nearest rank)
+     * @param sorted The measurements, from the smallest
+     * @param percentile The percentile, from 0 to 100
+     * @return The measurement
+     */
+    private static long percentile(long[] sorted, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
@@ -0,0 +1,286 @@
+package aib.server;
+
+import aib.Constants;
+import aib.export.CommandLineOptions;
+import aib.export.HeadlessWorld;
+import aib.export.PngEncoder;
+import aib.sweep.SweepRun;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Command line tool that serves the maps of generated worlds as PNG tiles, the way web maps (XYZ tiles) ask for them:
+ *   GET /tiles/{map}/{z}/{x}/{y}.png?seed=1&year=2050&noise-scale=2.5&...
+ * The query takes the world options of the sweep runner (see SweepRun.PARAMETERS), which keep their defaults
+ * when they are not given. Zoom 0 shows the whole map in one tile, and every zoom level doubles the map size,
+ * up to the map at its full size
+ * The server only listens on the loopback address unless --host is given, since every new query makes it
+ * generate a world
+ * Worlds are generated when a tile of them is first asked for. The tiles are kept in a cache bounded by memory,
+ * and are sent with an entity tag, so a client that already has a tile gets a 304 Not Modified instead
+ * Run the main method with --help to see the options
+ */
+public class TileServer {
+    /** The description of the options */
+    private static final String USAGE =
+            "Usage: java aib.server.TileServer [options]\n" +
+            "  --host ADDRESS      the address the server listens on, e.g. 0.0.0.0 for every interface\n" +
+            "                      (default the loopback address, so only this machine can connect)\n" +
+            "  --port N            the port the server listens on (default 8080)\n" +
+            "  --cache-memory MB   the memory the tile cache may use (default 256)\n" +
+            "  --worlds N          the number of worlds kept at the same time, each needs about 300 MB (default 1)\n";
+    /** The path tiles are served on */
+    public static final String TILES_PATH = "/tiles/";
+    /** The path the state of the tile cache is served on */
+    public static final String STATS_PATH = "/stats";
+    /** The size of a tile, in pixels */
+    public static final int TILE_SIZE = Constants.MAP_TILE_SIZE;
+    /** The colour of the parts of the edge tiles outside the map */
+    private static final int BACKGROUND_COLOUR = 0xff000000;
+    /** How long clients may use a tile without asking for it again, in seconds */
+    private static final int MAX_AGE = 3600;
+
+    /** The maps the tiles are cut from */
+    private static WorldFrames frames;
+    /** The tiles that were sent */
+    private static TileCache cache;
+
+    /**
+     * Run the server
+     * @param args The options (see USAGE)
+     */
+    public static void main(String[] args) {
+        try {
+            CommandLineOptions options = new CommandLineOptions(args, "help");
+            if (options.has("help")) {
+                System.out.print(USAGE);
+                return;
+            }
+            String host = options.getString("host", null);
+            int port = options.getInt("port", 8080);
+            int cacheMemory = options.getInt("cache-memory", 256);
+            int worlds = options.getInt("worlds", 1);
+            if (cacheMemory < 1 || worlds < 1) throw new IllegalArgumentException("--cache-memory and --worlds must be positive");
+            frames = new WorldFrames(worlds);
+            cache = new TileCache(cacheMemory * 1024L * 1024L);
+
+            InetAddress address = host != null ? InetAddress.getByName(host) : InetAddress.getLoopbackAddress();
+            HttpServer server = HttpServer.create(new InetSocketAddress(address, port), 0);
+            server.createContext(TILES_PATH, TileServer::handle);
+            server.createContext(STATS_PATH, exchange -> {
+                try {
+                    sendText(exchange, 200, cache.describe());
+                } finally {
+                    exchange.close();
+                }
+            });
+            // A thread per request in progress: most requests wait for a world to be generated, rather than compute
+            ExecutorService executor = Executors.newCachedThreadPool();
+            server.setExecutor(executor);
+            server.start();
+            System.out.println("Serving tiles on http://" + (host != null ? host : "localhost") + ":" + port + TILES_PATH + "{map}/{z}/{x}/{y}.png, zoom 0 to " + maxZoom());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("The server could not be started: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Get the largest zoom level, at which the map is shown at its full size
+     * @return The zoom level
+     */
+    public static int maxZoom() {
+        int zoom = 0;
+        for (int width = Constants.MAP_SIZE_X, height = Constants.MAP_SIZE_Y; width > TILE_SIZE || height > TILE_SIZE; zoom++) {
+            width = (width + 1) / 2;
+            height = (height + 1) / 2;
+        }
+        return zoom;
+    }
+
+    /**
+     * Get the width of the map at a zoom level
+     * @param zoom The zoom level
+     * @return The width, in pixels
+     */
+    public static int mapWidth(int zoom) {
+        int width = Constants.MAP_SIZE_X;
+        for (int i = zoom; i < maxZoom(); i++) width = (width + 1) / 2;
+        return width;
+    }
+
+    /**
+     * Get the height of the map at a zoom level
+     * @param zoom The zoom level
+     * @return The height, in pixels
+     */
+    public static int mapHeight(int zoom) {
+        int height = Constants.MAP_SIZE_Y;
+        for (int i = zoom; i < maxZoom(); i++) height = (height + 1) / 2;
+        return height;
+    }
+
+    /**
+     * Answer a request for a tile
+     * @param exchange The request and its response
+     * @throws IOException If the response cannot be sent
+     */
+    private static void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                sendText(exchange, 405, "Only GET and HEAD are supported");
+                return;
+            }
+            String[] path = exchange.getRequestURI().getPath().substring(TILES_PATH.length()).split("/");
+            if (path.length != 4 || !path[3].endsWith(".png")) {
+                sendText(exchange, 404, "Tiles are at " + TILES_PATH + "{map}/{z}/{x}/{y}.png");
+                return;
+            }
+            String mapType = HeadlessWorld.mapTypes(Arrays.asList(path[0])).get(0);
+            int zoom, tileX, tileY;
+            try {
+                zoom = Integer.parseInt(path[1]);
+                tileX = Integer.parseInt(path[2]);
+                tileY = Integer.parseInt(path[3].substring(0, path[3].length() - ".png".length()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid tile " + exchange.getRequestURI().getPath());
+            }
+            if (zoom < 0 || zoom > maxZoom() || tileX < 0 || tileY < 0
+                    || tileX * TILE_SIZE >= mapWidth(zoom) || tileY * TILE_SIZE >= mapHeight(zoom)) {
+                sendText(exchange, 404, "There is no such tile");
+                return;
+            }
+            Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+
+            String key = parameters + " " + mapType + " " + zoom + "/" + tileX + "/" + tileY;
+            TileCache.Tile tile = cache.get(key);
+            exchange.getResponseHeaders().set("X-Cache", tile != null ? "hit" : "miss");
+            if (tile == null) {
+                int[][] levels = frames.levels(parameters, mapType);
+                tile = encode(levels[maxZoom() - zoom], mapWidth(zoom), mapHeight(zoom), tileX, tileY);
+                cache.put(key, tile);
+            }
+
+            exchange.getResponseHeaders().set("ETag", tile.etag);
+            exchange.getResponseHeaders().set("Cache-Control", "public, max-age=" + MAX_AGE);
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (ifNoneMatch != null && (ifNoneMatch.equals("*") || Arrays.asList(ifNoneMatch.split("\\s*,\\s*")).contains(tile.etag))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            if (method.equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, tile.png.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(tile.png);
+            }
+        } catch (IllegalArgumentException e) {
+            sendText(exchange, 400, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendText(exchange, 503, "The server is stopping");
+        } catch (RuntimeException e) {
+            System.err.println("Could not render " + exchange.getRequestURI() + ": " + e);
+            sendText(exchange, 500, "The tile could not be rendered");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Get the world parameters from the query of a request, in the same order whatever the query order and with
+     * the values written the way they are read (see SweepRun.normalize), so the same world always has the same key
+     * @param query The query, still URL encoded, or null
+     * @return The parameters, the year included
+     * @throws IllegalArgumentException If a parameter is unknown, or a number or the year is invalid
+     * @throws UnsupportedEncodingException Never, UTF-8 is always supported
+     */
+    private static Map<String, String> parameters(String query) throws UnsupportedEncodingException {
+        Map<String, String> given = new HashMap<>();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                if (pair.isEmpty()) continue;
+                int equals = pair.indexOf('=');
+                String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), "UTF-8");
+                String value = equals < 0 ? "true" : URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+                if (!SweepRun.isParameter(name)) throw new IllegalArgumentException("Unknown parameter " + name);
+                given.put(name, SweepRun.normalize(name, value));
+            }
+        }
+        Map<String, String> parameters = new LinkedHashMap<>();
+        for (String name : SweepRun.PARAMETERS) {
+            if (given.containsKey(name)) parameters.put(name, given.get(name));
+        }
+        parameters.put("year", "" + SweepRun.yearFrom(given));
+        return parameters;
+    }
+
+    /**
+     * Cut a tile out of a map and encode it; the parts of the edge tiles outside the map are filled with the
+     * background colour, so every tile has the same size
+     * @param level The map at the zoom level of the tile
+     * @param width The width of the map
+     * @param height The height of the map
+     * @param tileX The tile column
+     * @param tileY The tile row
+     * @return The tile
+     */
+    private static TileCache.Tile encode(int[] level, int width, int height, int tileX, int tileY) {
+        int minX = tileX * TILE_SIZE, minY = tileY * TILE_SIZE;
+        int columns = Math.min(TILE_SIZE, width - minX);
+        int[] row = new int[TILE_SIZE];
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        try (PngEncoder encoder = new PngEncoder(png, TILE_SIZE, TILE_SIZE)) {
+            for (int y = 0; y < TILE_SIZE; y++) {
+                Arrays.fill(row, BACKGROUND_COLOUR);
+                if (minY + y < height) System.arraycopy(level, (minY + y) * width + minX, row, 0, columns);
+                encoder.writeRow(row, 0);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("The tile could not be encoded", e);
+        }
+        byte[] data = png.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return new TileCache.Tile(data, "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(data.length) + "\"");
+    }
+
+    /**
+     * Send a text response
+     * @param exchange The request and its response
+     * @param status The status code
+     * @param text The text
+     * @throws IOException If the response cannot be sent
+     */
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = (text + "\n").getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
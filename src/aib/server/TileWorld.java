@@ -0,0 +1,50 @@
+package aib.server;
+
+import aib.Renderer;
+import aib.environment.HeadlessSettings;
+import aib.export.CommandLineOptions;
+import aib.export.HeadlessWorld;
+import aib.life.Life;
+import aib.sweep.SweepRun;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Renders the maps of the world of a WorldEngine for the tile server
+ * The world is kept between calls, so the maps of the same world in the same or a later year are rendered
+ * without generating it again
+ * Only JDK types are passed in and out, so it can be called across class loaders
+ */
+public class TileWorld {
+    /** The parameters of the world, without the year, or null if there is no world */
+    private static Map<String, String> world;
+    /** The settings of the world */
+    private static HeadlessSettings settings;
+
+    /**
+     * Render a map of a world in a year, generating the world if it is not the current one
+     * @param parameters The world parameters and year (see SweepRun.PARAMETERS)
+     * @param mapType The map type (see HeadlessWorld.MAP_TYPES)
+     * @return The colour of every pixel of the map, packed into ints, row by row
+     * @throws IllegalArgumentException If a parameter is unknown or has an invalid value
+     */
+    public static int[] render(Map<String, String> parameters, String mapType) {
+        CommandLineOptions options = SweepRun.optionsFrom(parameters);
+        int year = SweepRun.yearFrom(parameters);
+        Map<String, String> key = new HashMap<>(parameters);
+        key.remove("year");
+        // The timeline only goes forwards, so an earlier year needs a new world
+        boolean generate = !key.equals(world) || year < HeadlessWorld.getYear();
+        // The world is only kept once it is updated, so one left half updated by a failure is generated again
+        world = null;
+        if (generate) {
+            settings = HeadlessWorld.settingsFrom(options);
+            HeadlessWorld.generate(options, settings);
+            Life.generateLife();
+        }
+        HeadlessWorld.advanceTo(settings, year);
+        world = key;
+        return Renderer.renderFrame(mapType, false);
+    }
+}
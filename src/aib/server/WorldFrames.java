@@ -0,0 +1,202 @@
+package aib.server;
+
+import aib.Constants;
+import aib.Renderer;
+import aib.sweep.WorldEngine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Renders the maps the tile server cuts its tiles from, on a few worlds (one per WorldEngine)
+ * The maps are kept as mipmap pyramids (see Renderer.buildMipmaps) for the most recently used few, and a map asked for
+ * by several requests at the same time is only rendered once
+ * A request is given the world that needs the least work: one that is already the world it asks for (in the same or
+ * an earlier year), otherwise the least recently used one; worlds are updated a step of the timeline at a time (see
+ * HeadlessWorld.advanceTo), so a map is the same whatever world it was rendered on
+ */
+public class WorldFrames implements Closeable {
+    /** The number of maps kept, each one takes about 7 MB */
+    private static final int CACHED_MAPS = 8;
+
+    /** A world and what it is at */
+    private static class Slot {
+        /** The engine of the world */
+        final WorldEngine engine = new WorldEngine();
+        /** The parameters of the world, without the year, or null if it has none yet (or failed) */
+        Map<String, String> world;
+        /** The year the world is at */
+        int year;
+        /** If a request is using the world */
+        boolean busy;
+        /** When the world was last used, to find the least recently used one */
+        long lastUsed;
+    }
+
+    /** The worlds */
+    private final Slot[] slots;
+    /** The most recently used maps, by key (see mapKey) */
+    private final Map<String, int[][]> maps = new LinkedHashMap<String, int[][]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, int[][]> eldest) {
+            return size() > CACHED_MAPS;
+        }
+    };
+    /** The maps being rendered, by key, which other requests for the same map wait for */
+    private final ConcurrentHashMap<String, CompletableFuture<int[][]>> rendering = new ConcurrentHashMap<>();
+
+    /**
+     * Create the worlds
+     * @param worlds The number of worlds, which is the number of maps that can be rendered at the same time
+     */
+    public WorldFrames(int worlds) {
+        if (worlds < 1) throw new IllegalArgumentException("There must be at least one world");
+        slots = new Slot[worlds];
+        for (int i = 0; i < worlds; i++) slots[i] = new Slot();
+    }
+
+    /**
+     * Get the mipmap pyramid of a map, rendering it if it is not kept
+     * @param parameters The world parameters and the year (see SweepRun.PARAMETERS), the year included, with their
+     *                   values written the same way for the same world (see SweepRun.normalize), since they make the key
+     * @param mapType The map type (see HeadlessWorld.MAP_TYPES)
+     * @return The pyramid, whose first level is the map; it must not be changed
+     * @throws IllegalArgumentException If a parameter has an invalid value
+     * @throws InterruptedException If the thread was interrupted while waiting for a world
+     */
+    public int[][] levels(Map<String, String> parameters, String mapType) throws InterruptedException {
+        String key = mapKey(parameters, mapType);
+        int[][] levels = cached(key);
+        if (levels != null) return levels;
+
+        CompletableFuture<int[][]> created = new CompletableFuture<>();
+        CompletableFuture<int[][]> existing = rendering.putIfAbsent(key, created);
+        if (existing != null) return join(existing);
+        try {
+            // The map may have been rendered after it was looked for
+            levels = cached(key);
+            if (levels == null) {
+                int[] frame = render(parameters, mapType);
+                levels = Renderer.buildMipmaps(frame, Constants.MAP_SIZE_X, Constants.MAP_SIZE_Y, Constants.MAP_TILE_SIZE);
+                synchronized (maps) {
+                    maps.put(key, levels);
+                }
+            }
+            created.complete(levels);
+            return levels;
+        } catch (RuntimeException | InterruptedException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            rendering.remove(key);
+        }
+    }
+
+    /**
+     * Release the worlds
+     * @throws IOException If a world cannot be released
+     */
+    @Override
+    public void close() throws IOException {
+        for (Slot slot : slots) slot.engine.close();
+    }
+
+    /**
+     * Render a map on the world that needs the least work, waiting until a world is free
+     * @param parameters The world parameters and the year
+     * @param mapType The map type
+     * @return The map
+     * @throws InterruptedException If the thread was interrupted while waiting for a world
+     */
+    private int[] render(Map<String, String> parameters, String mapType) throws InterruptedException {
+        Map<String, String> world = new HashMap<>(parameters);
+        world.remove("year");
+        int year = Integer.parseInt(parameters.get("year"));
+        Slot slot = acquire(world, year);
+        boolean rendered = false;
+        try {
+            int[] frame = (int[]) slot.engine.call(TileWorld.class, "render", new Class<?>[] {Map.class, String.class},
+                    parameters, mapType);
+            rendered = true;
+            return frame;
+        } finally {
+            synchronized (this) {
+                // A world that failed may be half generated, so the next request generates it again
+                slot.world = rendered ? world : null;
+                slot.year = year;
+                slot.busy = false;
+                slot.lastUsed = System.nanoTime();
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait until a world is free and take the one that needs the least work
+     * @param world The world parameters, without the year
+     * @param year The year
+     * @return The world
+     * @throws InterruptedException If the thread was interrupted while waiting
+     */
+    private synchronized Slot acquire(Map<String, String> world, int year) throws InterruptedException {
+        while (true) {
+            Slot best = null;
+            for (Slot slot : slots) {
+                if (slot.busy) continue;
+                boolean ready = world.equals(slot.world) && slot.year <= year;
+                boolean bestReady = best != null && world.equals(best.world) && best.year <= year;
+                if (best == null || (ready && (!bestReady || slot.year > best.year))
+                        || (!ready && !bestReady && slot.lastUsed < best.lastUsed)) {
+                    best = slot;
+                }
+            }
+            if (best != null) {
+                best.busy = true;
+                return best;
+            }
+            wait();
+        }
+    }
+
+    /**
+     * Get a kept map
+     * @param key The map key
+     * @return The pyramid, or null if it is not kept
+     */
+    private int[][] cached(String key) {
+        synchronized (maps) {
+            return maps.get(key);
+        }
+    }
+
+    /**
+     * Wait for a map another request is rendering
+     * @param rendering The map being rendered
+     * @return The pyramid
+     * @throws InterruptedException If the thread was interrupted while waiting
+     */
+    private static int[][] join(CompletableFuture<int[][]> rendering) throws InterruptedException {
+        try {
+            return rendering.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("The map could not be rendered", e.getCause());
+        }
+    }
+
+    /**
+     * Get the key identifying a map
+     * @param parameters The world parameters and the year
+     * @param mapType The map type
+     * @return The key
+     */
+    private static String mapKey(Map<String, String> parameters, String mapType) {
+        return parameters + " " + mapType;
+    }
+}
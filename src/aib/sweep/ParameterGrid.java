@@ -0,0 +1,115 @@
+package aib.sweep;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A grid of parameter values: every combination of the values of the parameters is a point of the grid.
+ * The values of a parameter are given as a comma separated list ("1,2,5"), a range ("1..100", step 1)
+ * or a range with a step ("0.3..0.5:0.05"), or a mix of these ("1..10,50,100")
+ * The points are numbered so the last parameter changes fastest, and any point can be found from its number
+ * without listing the ones before it
+ */
+public class ParameterGrid {
+    /** The largest number of values a range can have, to catch mistakes such as a missing step */
+    private static final int MAX_RANGE_VALUES = 1_000_000;
+
+    /** The parameter names, in the order they were added */
+    private final List<String> names = new ArrayList<>();
+    /** The values of every parameter, in the same order as the names */
+    private final List<List<String>> values = new ArrayList<>();
+    /** The number of points of the grid */
+    private long size = 1;
+
+    /**
+     * Add a parameter to the grid
+     * @param name The parameter name
+     * @param specification The values (see the class description)
+     * @throws IllegalArgumentException If the values cannot be parsed, or the grid becomes too large
+     */
+    public void add(String name, String specification) {
+        List<String> parameterValues = parse(name, specification);
+        if (parameterValues.isEmpty()) throw new IllegalArgumentException("No values given for " + name);
+        if (size > Long.MAX_VALUE / parameterValues.size()) throw new IllegalArgumentException("The grid is too large");
+        names.add(name);
+        values.add(parameterValues);
+        size *= parameterValues.size();
+    }
+
+    /**
+     * Get the parameter names
+     * @return The names, in the order they were added
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Get the number of points of the grid
+     * @return The number of points
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Get a point of the grid
+     * @param index The point number, from 0 to size() - 1
+     * @return The value of every parameter at the point, in the order the parameters were added
+     */
+    public Map<String, String> get(long index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("No point " + index + " in a grid of " + size);
+        // Every parameter is a digit of the point number, with as many possible values as the parameter has values
+        String[] point = new String[names.size()];
+        for (int i = names.size() - 1; i >= 0; i--) {
+            List<String> parameterValues = values.get(i);
+            point[i] = parameterValues.get((int) (index % parameterValues.size()));
+            index /= parameterValues.size();
+        }
+        Map<String, String> parameters = new LinkedHashMap<>();
+        for (int i = 0; i < point.length; i++) parameters.put(names.get(i), point[i]);
+        return parameters;
+    }
+
+    /**
+     * Parse the values of a parameter
+     * Ranges are computed with decimals rather than floats, so "0.1..0.3:0.1" gives 0.1, 0.2 and 0.3 exactly
+     * @param name The parameter name, for the error messages
+     * @param specification The values
+     * @return The values
+     * @throws IllegalArgumentException If the values cannot be parsed
+     */
+    private static List<String> parse(String name, String specification) {
+        List<String> parsed = new ArrayList<>();
+        for (String part : specification.split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) continue;
+            int range = part.indexOf("..");
+            if (range < 0) {
+                parsed.add(part);
+                continue;
+            }
+            int stepStart = part.indexOf(':', range);
+            try {
+                BigDecimal from = new BigDecimal(part.substring(0, range).trim());
+                BigDecimal to = new BigDecimal(part.substring(range + 2, stepStart < 0 ? part.length() : stepStart).trim());
+                BigDecimal step = stepStart < 0 ? BigDecimal.ONE : new BigDecimal(part.substring(stepStart + 1).trim());
+                if (step.signum() <= 0) throw new IllegalArgumentException("The step of " + name + " must be positive");
+                if (to.compareTo(from) < 0) throw new IllegalArgumentException("The range of " + name + " ends before it starts");
+                if (to.subtract(from).divide(step, 0, RoundingMode.DOWN).compareTo(BigDecimal.valueOf(MAX_RANGE_VALUES)) >= 0)
+                    throw new IllegalArgumentException("The range " + part + " of " + name + " has too many values");
+                for (BigDecimal value = from; value.compareTo(to) <= 0; value = value.add(step)) {
+                    parsed.add(value.stripTrailingZeros().toPlainString());
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid range " + part + " for " + name);
+            }
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,272 @@
+package aib.sweep;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Does the runs of a sweep in worker processes (see SweepWorker) on this machine, so every world has the memory
+ * of a whole process rather than a share of it
+ * The runs are split into shards (ranges of run numbers), which are handed to the workers through their standard
+ * input; the workers send back a line per run and a line when the shard is done, through their standard output:
+ *   coordinator: SHARD id from to   (do the runs from "from" up to, but not including, "to")
+ *   worker:      ROW row            (the row of a run, or FAILED-ROW if the run failed)
+ *   worker:      DONE id
+ *   coordinator: EXIT
+ * The rows of a shard are only written once the whole shard is done, so when a worker dies the shard can be
+ * handed to a new worker without writing any row twice
+ * A worker that sends nothing for longer than the run timeout (stuck collecting garbage near its maximum heap size,
+ * or deadlocked) is stopped, and its shard handed to a new worker the same way
+ */
+public class SweepCoordinator {
+    /** The messages of the protocol */
+    static final String SHARD = "SHARD", ROW = "ROW", FAILED_ROW = "FAILED-ROW", DONE = "DONE", EXIT = "EXIT";
+    /** The default longest time in seconds a worker may take for a run before it is stopped */
+    public static final int DEFAULT_RUN_TIMEOUT = 600;
+    /** The number of times a shard is tried before its runs are given up */
+    private static final int MAX_ATTEMPTS = 3;
+    /** The number of shards every worker gets when the shard size is not given, so the workers finish close together */
+    private static final int SHARDS_PER_WORKER = 4;
+    /** The largest shard size when it is not given, so a failed shard does not lose much work */
+    private static final int MAX_SHARD_SIZE = 16;
+
+    /** A range of runs */
+    private static class Shard {
+        /** The shard number */
+        final int id;
+        /** The first run, and the run after the last one */
+        final long from, to;
+        /** The number of times the shard was tried */
+        int attempts;
+
+        /**
+         * Create a shard
+         * @param id The shard number
+         * @param from The first run
+         * @param to The run after the last one
+         */
+        Shard(int id, long from, long to) {
+            this.id = id;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /** The parameter grid */
+    private final ParameterGrid grid;
+    /** The options given to the workers */
+    private final List<String> workerArgs;
+    /** The number of workers */
+    private final int processes;
+    /** The maximum heap size of every worker in MB, or 0 for the Java default */
+    private final int processMemory;
+    /** The number of runs in a shard */
+    private final long shardSize;
+    /** The longest time in seconds a worker may send nothing before it is stopped */
+    private final int runTimeout;
+    /** The shards no worker is doing */
+    private final BlockingQueue<Shard> shards = new LinkedBlockingQueue<>();
+    /** The number of shards that are not done or given up */
+    private final AtomicInteger remainingShards = new AtomicInteger();
+    /** The number of runs that failed, and the number of runs of the shards that were given up */
+    private final AtomicLong failedRuns = new AtomicLong(), lostRuns = new AtomicLong();
+
+    /**
+     * Create a coordinator
+     * @param grid The parameter grid
+     * @param workerArgs The grid options and the format option of the sweep, for the workers
+     * @param processes The number of workers
+     * @param processMemory The maximum heap size of every worker in MB, or 0 for the Java default
+     * @param shardSize The number of runs in a shard, or 0 to choose it from the grid size
+     * @param runTimeout The longest time in seconds a worker may take for a run before it is stopped
+     */
+    public SweepCoordinator(ParameterGrid grid, List<String> workerArgs, int processes, int processMemory, long shardSize,
+                            int runTimeout) {
+        if (processes < 1) throw new IllegalArgumentException("There must be at least one worker process");
+        if (processMemory < 0 || shardSize < 0) throw new IllegalArgumentException("--process-memory and --shard-size must be positive");
+        if (runTimeout < 1) throw new IllegalArgumentException("--run-timeout must be positive");
+        this.grid = grid;
+        this.workerArgs = workerArgs;
+        this.processes = processes;
+        this.processMemory = processMemory;
+        this.shardSize = shardSize > 0 ? shardSize
+                : Math.max(1, Math.min(MAX_SHARD_SIZE, grid.size() / ((long) processes * SHARDS_PER_WORKER)));
+        this.runTimeout = runTimeout;
+    }
+
+    /**
+     * Do every run of the grid, starting the workers and starting new ones when some die
+     * @param output Takes the rows, in the order the shards are done (it is only called by one thread at a time)
+     * @throws IOException If some runs could not be done
+     */
+    public void run(Consumer<String> output) throws IOException {
+        int id = 0;
+        for (long from = 0; from < grid.size(); from += shardSize) {
+            shards.add(new Shard(id++, from, Math.min(grid.size(), from + shardSize)));
+        }
+        remainingShards.set(id);
+
+        // Stops the workers that send nothing for too long (a daemon thread, so it never keeps the sweep running)
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "sweep watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < processes; i++) {
+            int worker = i;
+            Thread thread = new Thread(() -> serve(worker, output, watchdog), "sweep worker " + i);
+            thread.start();
+            threads.add(thread);
+        }
+        try {
+            for (Thread thread : threads) thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Thread thread : threads) thread.interrupt();
+            throw new IOException("Interrupted", e);
+        } finally {
+            watchdog.shutdownNow();
+        }
+        if (lostRuns.get() > 0) throw new IOException(lostRuns.get() + " runs could not be done");
+    }
+
+    /**
+     * Get the number of runs that failed (the runs of shards that were given up are not counted)
+     * @return The number of failed runs
+     */
+    public long getFailedRuns() {
+        return failedRuns.get();
+    }
+
+    /**
+     * Hand shards to a worker until every shard is done, starting a new worker process when the current one dies
+     * @param worker The worker number
+     * @param output Takes the rows
+     * @param watchdog Stops the worker process when it sends nothing for too long
+     */
+    private void serve(int worker, Consumer<String> output, ScheduledExecutorService watchdog) {
+        Process process = null;
+        BufferedReader in = null;
+        PrintWriter out = null;
+        try {
+            while (remainingShards.get() > 0) {
+                // A shard may come back to the queue if another worker dies, so wait for one until every shard is done
+                Shard shard = shards.poll(100, TimeUnit.MILLISECONDS);
+                if (shard == null) continue;
+                List<String> rows = new ArrayList<>();
+                long failed = 0;
+                try {
+                    if (process == null) {
+                        process = start();
+                        in = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+                        out = new PrintWriter(new OutputStreamWriter(process.getOutputStream(), "UTF-8"));
+                    }
+                    out.println(SHARD + " " + shard.id + " " + shard.from + " " + shard.to);
+                    out.flush();
+                    if (out.checkError()) throw new IOException("The worker process stopped reading");
+                    String line;
+                    while (!(DONE + " " + shard.id).equals(line = readLine(in, process, watchdog))) {
+                        if (line == null) throw new IOException("The worker process stopped");
+                        if (line.startsWith(ROW + " ")) {
+                            rows.add(line.substring(ROW.length() + 1));
+                        } else if (line.startsWith(FAILED_ROW + " ")) {
+                            rows.add(line.substring(FAILED_ROW.length() + 1));
+                            failed++;
+                        } else {
+                            throw new IOException("Unexpected message " + line);
+                        }
+                    }
+                    if (rows.size() != shard.to - shard.from) throw new IOException("Some rows of the shard are missing");
+                } catch (IOException e) {
+                    if (process != null) process.destroyForcibly();
+                    process = null;
+                    shard.attempts++;
+                    System.err.println("Shard " + shard.id + " failed on worker " + worker + " (attempt " + shard.attempts
+                            + " of " + MAX_ATTEMPTS + "): " + e.getMessage());
+                    if (shard.attempts < MAX_ATTEMPTS) {
+                        shards.add(shard);
+                    } else {
+                        lostRuns.addAndGet(shard.to - shard.from);
+                        remainingShards.decrementAndGet();
+                    }
+                    continue;
+                }
+                synchronized (this) {
+                    for (String row : rows) output.accept(row);
+                }
+                failedRuns.addAndGet(failed);
+                remainingShards.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (process != null) {
+                out.println(EXIT);
+                out.flush();
+                try {
+                    if (!process.waitFor(10, TimeUnit.SECONDS)) process.destroyForcibly();
+                } catch (InterruptedException e) {
+                    process.destroyForcibly();
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a line from a worker process, stopping the process when it sends nothing for the run timeout
+     * @param in The standard output of the process
+     * @param process The process
+     * @param watchdog Stops the process
+     * @return The line, or null if the process stopped
+     * @throws IOException If the line cannot be read, or the process was stopped
+     */
+    private String readLine(BufferedReader in, Process process, ScheduledExecutorService watchdog) throws IOException {
+        AtomicBoolean stopped = new AtomicBoolean();
+        ScheduledFuture<?> stop = watchdog.schedule(() -> {
+            stopped.set(true);
+            process.destroyForcibly();
+        }, runTimeout, TimeUnit.SECONDS);
+        try {
+            String line = in.readLine();
+            if (!stopped.get()) return line;
+        } catch (IOException e) {
+            if (!stopped.get()) throw e;
+        } finally {
+            stop.cancel(false);
+        }
+        throw new IOException("The worker process sent nothing for " + runTimeout + " s and was stopped");
+    }
+
+    /**
+     * Start a worker process, with the Java and class path of this process
+     * @return The process
+     * @throws IOException If the process cannot be started
+     */
+    private Process start() throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        if (processMemory > 0) command.add("-Xmx" + processMemory + "m");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SweepWorker.class.getName());
+        command.addAll(workerArgs);
+        return new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    }
+}
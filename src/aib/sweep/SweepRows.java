@@ -0,0 +1,149 @@
+package aib.sweep;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Does the runs of a sweep and formats their outcome as CSV or JSON line rows
+ * Every row is one line, so rows can be sent between processes line by line
+ */
+public class SweepRows {
+    /** If the rows are JSON lines rather than CSV */
+    private final boolean json;
+    /** The columns of the rows: the parameters, then the metrics */
+    private final List<String> parameterNames, metricNames;
+
+    /**
+     * Create the rows of a sweep
+     * @param json If the rows are JSON lines rather than CSV
+     * @param parameterNames The names of the grid parameters
+     * @param metricNames The names of the metrics (see SweepRun.metricNames)
+     */
+    public SweepRows(boolean json, List<String> parameterNames, List<String> metricNames) {
+        this.json = json;
+        this.parameterNames = parameterNames;
+        this.metricNames = metricNames;
+    }
+
+    /**
+     * Get the first line of the output
+     * @return The CSV header, or null for JSON lines (which have no header)
+     */
+    public String header() {
+        if (json) return null;
+        List<String> columns = new ArrayList<>();
+        columns.add("run");
+        columns.addAll(parameterNames);
+        columns.addAll(metricNames);
+        columns.add("seconds");
+        columns.add("error");
+        return String.join(",", columns);
+    }
+
+    /**
+     * Do a run and get its row
+     * @param index The run number
+     * @param grid The parameter grid
+     * @param run The function that does a run (SweepRun.run, or WorldEngine.run)
+     * @return The row, and if the run failed
+     */
+    public Row run(long index, ParameterGrid grid, Function<Map<String, String>, Map<String, String>> run) {
+        Map<String, String> parameters = grid.get(index);
+        Map<String, String> metrics = null;
+        String error = null;
+        long start = System.nanoTime();
+        try {
+            metrics = run.apply(parameters);
+        } catch (RuntimeException e) {
+            error = e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+        return new Row(format(index, parameters, metrics, (System.nanoTime() - start) / 1e9, error), error != null);
+    }
+
+    /** The row of a run */
+    public static class Row {
+        /** The row, without a line break */
+        public final String text;
+        /** If the run failed (the error column says why) */
+        public final boolean failed;
+
+        /**
+         * Create a row
+         * @param text The row
+         * @param failed If the run failed
+         */
+        Row(String text, boolean failed) {
+            this.text = text;
+            this.failed = failed;
+        }
+    }
+
+    /**
+     * Format the row of a run
+     * @param index The run number
+     * @param parameters The run parameters
+     * @param metrics The value of every metric, or null if the run failed
+     * @param seconds The time the run took
+     * @param error Why the run failed, or null
+     * @return The row
+     */
+    private String format(long index, Map<String, String> parameters, Map<String, String> metrics, double seconds, String error) {
+        // A row must be one line
+        if (error != null) error = error.replace('\r', ' ').replace('\n', ' ');
+        StringBuilder row = new StringBuilder();
+        if (json) {
+            row.append("{\"run\":").append(index);
+            for (String name : parameterNames) appendJson(row, name, parameters.get(name));
+            if (metrics != null) {
+                for (String name : metricNames) appendJson(row, name, metrics.get(name));
+            }
+            appendJson(row, "seconds", String.format(Locale.ROOT, "%.3f", seconds));
+            if (error != null) appendJson(row, "error", error);
+            row.append('}');
+        } else {
+            row.append(index);
+            for (String name : parameterNames) row.append(',').append(csv(parameters.get(name)));
+            for (String name : metricNames) row.append(',').append(metrics != null ? csv(metrics.get(name)) : "");
+            row.append(',').append(String.format(Locale.ROOT, "%.3f", seconds));
+            row.append(',').append(error != null ? csv(error) : "");
+        }
+        return row.toString();
+    }
+
+    /**
+     * Quote a CSV value if it has a comma or a quote
+     * @param value The value
+     * @return The CSV value
+     */
+    private static String csv(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Append a field to a JSON object: numbers are written as numbers, empty values as null and other values as strings
+     * @param row The JSON object
+     * @param name The field name
+     * @param value The field value
+     */
+    private static void appendJson(StringBuilder row, String name, String value) {
+        row.append(",\"").append(name).append("\":");
+        if (value == null || value.isEmpty()) {
+            row.append("null");
+        } else if (value.matches("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?")) {
+            row.append(value);
+        } else {
+            row.append('"');
+            for (char c : value.toCharArray()) {
+                if (c == '"' || c == '\\') row.append('\\').append(c);
+                else if (c < 0x20) row.append(String.format("\\u%04x", (int) c));
+                else row.append(c);
+            }
+            row.append('"');
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package aib.sweep;
+
+import aib.environment.HeadlessSettings;
+import aib.environment.World;
+import aib.export.CommandLineOptions;
+import aib.export.HeadlessWorld;
+import aib.life.Life;
+import aib.life.SpeciesTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One run of a sweep: generates a world with some parameters, updates it to a year and measures the outcome
+ * The world is static, so a run changes the world of the class loader it is loaded by (see WorldEngine)
+ * Only JDK types are passed in and out, so runs can be called across class loaders
+ */
+public class SweepRun {
+    /** The parameters that can be given to a run: the world options of the command line tools, and the year */
+    public static final String[] PARAMETERS = {"seed", "noise", "noise-scale", "octaves", "persistence", "lacunarity",
+            "offset-x", "offset-y", "diffusion", "dispersion", "migration", "year"};
+    /** The parameters whose values are integers, and those whose values are numbers */
+    private static final List<String> INTEGER_PARAMETERS = Arrays.asList("seed", "octaves", "diffusion", "year"),
+            NUMBER_PARAMETERS = Arrays.asList("noise-scale", "persistence", "lacunarity", "offset-x", "offset-y");
+
+    /**
+     * Generate a world with some parameters, add the animals, update it to a year and measure the outcome
+     * @param parameters The value of some of the PARAMETERS (the others keep the defaults of the command line tools);
+     *                   dispersion and migration are on if their value is "true", and the year defaults to the last one
+     * @return The value of every metric (see metricNames); species with no individuals have an empty loss
+     * @throws IllegalArgumentException If a parameter is unknown or has an invalid value
+     */
+    public static Map<String, String> run(Map<String, String> parameters) {
+        CommandLineOptions options = optionsFrom(parameters);
+        int year = yearFrom(parameters);
+        HeadlessSettings settings = HeadlessWorld.settingsFrom(options);
+        HeadlessWorld.generate(options, settings);
+        Map<String, String> metrics = new LinkedHashMap<>();
+        metrics.put("initial_temperature", format(World.getInitialAverageTemperature()));
+        metrics.put("initial_water", format(World.getWaterPercentage()));
+        metrics.put("initial_ice", format(World.getIcePercentage()));
+
+        Life.generateLife();
+        HeadlessWorld.advanceTo(settings, year);
+        metrics.put("temperature", format(World.getAverageTemperature()));
+        metrics.put("temperature_increase", format(World.getAverageTemperature() - World.getInitialAverageTemperature()));
+        metrics.put("water", format(World.getWaterPercentage()));
+        metrics.put("ice", format(World.getIcePercentage()));
+        // The same percentages World.lifePercentages prints
+        for (int id = 0; id < SpeciesTable.size(); id++) {
+            int dead = World.getDeadCount(id), total = dead + World.getAliveCount(id);
+            metrics.put(lossName(id), total == 0 ? "" : format(dead * 100f / total));
+        }
+        return metrics;
+    }
+
+    /**
+     * Turn run parameters into the command line options of the headless world (see HeadlessWorld.settingsFrom)
+     * @param parameters The value of some of the PARAMETERS; the year is not an option, see yearFrom
+     * @return The options, which always include --quiet
+     * @throws IllegalArgumentException If a parameter is unknown
+     */
+    public static CommandLineOptions optionsFrom(Map<String, String> parameters) {
+        List<String> args = new ArrayList<>();
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            String name = parameter.getKey();
+            if (name.equals("year")) continue;
+            if (name.equals("dispersion") || name.equals("migration")) {
+                if (Boolean.parseBoolean(parameter.getValue())) args.add("--" + name);
+            } else if (isParameter(name)) {
+                args.add("--" + name);
+                args.add(parameter.getValue());
+            } else {
+                throw new IllegalArgumentException("Unknown parameter " + name);
+            }
+        }
+        args.add("--quiet");
+        return new CommandLineOptions(args.toArray(new String[0]), HeadlessWorld.FLAGS);
+    }
+
+    /**
+     * Write the value of a parameter the way it is read, so values that give the same world are the same text
+     * (01 and 1, 2.50 and 2.5, TRUE and true)
+     * @param name The parameter name (see PARAMETERS)
+     * @param value The value as it was given
+     * @return The value written again
+     * @throws IllegalArgumentException If the value is not an integer or a number when the parameter needs one
+     */
+    public static String normalize(String name, String value) {
+        try {
+            if (INTEGER_PARAMETERS.contains(name)) return "" + Integer.parseInt(value);
+            if (NUMBER_PARAMETERS.contains(name)) return "" + Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " " + value);
+        }
+        if (name.equals("dispersion") || name.equals("migration")) return "" + Boolean.parseBoolean(value);
+        return value;
+    }
+
+    /**
+     * Get the year of run parameters
+     * @param parameters The run parameters
+     * @return The year, the last one of the timeline if it is not given
+     * @throws IllegalArgumentException If the year is not on the timeline
+     */
+    public static int yearFrom(Map<String, String> parameters) {
+        try {
+            return HeadlessWorld.checkYear(Integer.parseInt(parameters.getOrDefault("year", "" + HeadlessWorld.END_YEAR)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid year " + parameters.get("year"));
+        }
+    }
+
+    /**
+     * Get the names of the metrics a run measures, in the order run returns them
+     * @return The names
+     */
+    public static List<String> metricNames() {
+        List<String> names = new ArrayList<>();
+        names.add("initial_temperature");
+        names.add("initial_water");
+        names.add("initial_ice");
+        names.add("temperature");
+        names.add("temperature_increase");
+        names.add("water");
+        names.add("ice");
+        for (int id = 0; id < SpeciesTable.size(); id++) names.add(lossName(id));
+        return names;
+    }
+
+    /**
+     * Check if a name is one of the PARAMETERS
+     * @param name The name
+     * @return If it is a parameter
+     */
+    public static boolean isParameter(String name) {
+        for (String parameter : PARAMETERS) {
+            if (parameter.equals(name)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the name of the metric with the percentage of a species that was lost
+     * @param species The species ID
+     * @return The name, e.g. polar_bear_loss
+     */
+    private static String lossName(int species) {
+        return SpeciesTable.get(species).getName().trim().toLowerCase(Locale.ROOT).replace(' ', '_') + "_loss";
+    }
+
+    /**
+     * Format a metric the same way whatever the default locale is
+     * @param value The value
+     * @return The value with 4 decimals
+     */
+    private static String format(float value) {
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+}
@@ -0,0 +1,254 @@
+package aib.sweep;
+
+import aib.export.CommandLineOptions;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Command line tool that runs a world for every point of a grid of parameters (seeds, noise settings, ...)
+ * and writes the outcome of every run as a CSV or JSON line row, as soon as the run is done
+ * Several runs are done at the same time, as many as fit in memory: every run needs a world of its own, so there is
+ * one WorldEngine per concurrent run. The runs are done on a work stealing pool, which also runs the parallel stages
+ * of the worlds, so the processors are kept busy when a run is in a stage that is not parallel
+ * When the worlds do not fit in the memory of one process, the runs can be done by worker processes instead
+ * (see SweepCoordinator)
+ * Run the main method with --help to see the options
+ */
+public class SweepRunner {
+    /** The description of the options */
+    private static final String USAGE =
+            "Usage: java aib.sweep.SweepRunner [grid options] [options]\n" +
+            "Every grid option takes a comma separated list of values (1,2,5), a range (1..100) or a range with a\n" +
+            "step (0.3..0.5:0.05); there is a run for every combination of the values\n" +
+            "  --seed, --noise, --noise-scale, --octaves, --persistence, --lacunarity, --offset-x, --offset-y,\n" +
+            "  --diffusion       the world options of the map exporter (default their defaults)\n" +
+            "  --dispersion, --migration\n" +
+            "                    true or false (default false)\n" +
+            "  --year            the year the worlds are updated to, a multiple of 10 from 2000 to 2100 (default 2100)\n" +
+            "Options:\n" +
+            "  --format F        csv or jsonl (default csv)\n" +
+            "  --out FILE        the file the rows are written to (default the standard output)\n" +
+            "  --workers N       the largest number of runs done at the same time (default the number of processors)\n" +
+            "  --world-memory MB the memory a run needs, which limits the runs done at the same time (default 300)\n" +
+            "  --processes N     do the runs in N worker processes, one run at a time in each, instead of in this one\n" +
+            "  --process-memory MB\n" +
+            "                    the maximum heap size of every worker process (default the Java default)\n" +
+            "  --shard-size N    the number of runs handed to a worker process at a time (default depends on the grid)\n" +
+            "  --run-timeout S   the longest a worker process may take for a run before it is stopped and its runs\n" +
+            "                    handed to a new one (default 600)\n";
+    /** The options that are not grid options */
+    private static final List<String> OPTIONS = Arrays.asList("format", "out", "workers", "world-memory",
+            "processes", "process-memory", "shard-size", "run-timeout", "help");
+    /** The part of the maximum heap size the worlds may use, the rest is left for the rows and the garbage collector */
+    private static final double WORLD_MEMORY_SHARE = 0.9;
+
+    /** The file the rows are written to */
+    private static PrintWriter out;
+
+    /**
+     * Run the sweep
+     * @param args The options (see USAGE)
+     */
+    public static void main(String[] args) {
+        try {
+            CommandLineOptions options = new CommandLineOptions(args, "help");
+            if (options.has("help")) {
+                System.out.print(USAGE);
+                return;
+            }
+            sweep(options);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("The sweep failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Do every run of the grid and write the rows
+     * @param options The options (see USAGE)
+     * @throws IOException If the rows cannot be written, or some runs could not be done
+     */
+    private static void sweep(CommandLineOptions options) throws IOException {
+        for (String name : options.names()) {
+            if (!OPTIONS.contains(name) && !SweepRun.isParameter(name)) throw new IllegalArgumentException("Unknown option --" + name);
+        }
+        ParameterGrid grid = gridFrom(options);
+        SweepRows rows = rowsFrom(options, grid);
+        int processes = options.getInt("processes", 0);
+        if (options.has("processes") && processes < 1) throw new IllegalArgumentException("--processes must be positive");
+        SweepCoordinator coordinator = processes > 0 ? new SweepCoordinator(grid, workerArgs(options), processes,
+                options.getInt("process-memory", 0), options.getInt("shard-size", 0),
+                options.getInt("run-timeout", SweepCoordinator.DEFAULT_RUN_TIMEOUT)) : null;
+
+        out = new PrintWriter(openOutput(options.getString("out", null)));
+        if (rows.header() != null) writeLine(rows.header());
+        long start = System.nanoTime();
+        try {
+            if (coordinator != null) {
+                coordinator.run(SweepRunner::writeLine);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.err.println(String.format("Did %d runs (%d failed) in %.2f s with %d processes (%.2f runs per second)",
+                        grid.size(), coordinator.getFailedRuns(), seconds, processes, grid.size() / seconds));
+            } else {
+                runInProcess(options, grid, rows, start);
+            }
+        } finally {
+            out.flush();
+            if (options.has("out")) out.close();
+        }
+        if (out.checkError()) throw new IOException("The rows could not be written");
+    }
+
+    /**
+     * Do every run of the grid in this process, several at the same time
+     * @param options The options (see USAGE)
+     * @param grid The parameter grid
+     * @param rows The rows of the sweep
+     * @param start The time the sweep started
+     * @throws IOException If a run failed in a way the other runs cannot recover from
+     */
+    private static void runInProcess(CommandLineOptions options, ParameterGrid grid, SweepRows rows, long start) throws IOException {
+        int workers = options.getInt("workers", Runtime.getRuntime().availableProcessors());
+        int worldMemory = options.getInt("world-memory", 300);
+        if (workers < 1 || worldMemory < 1) throw new IllegalArgumentException("--workers and --world-memory must be positive");
+
+        long fitting = (long) (Runtime.getRuntime().maxMemory() * WORLD_MEMORY_SHARE / (worldMemory * 1024L * 1024L));
+        int concurrency = (int) Math.max(1, Math.min(Math.min(workers, fitting), grid.size()));
+        if (fitting < workers) System.err.println("Only " + Math.max(1, fitting) + " worlds fit in memory, "
+                + "give the program more memory (-Xmx) or use --processes to do more runs at the same time");
+
+        AtomicLong nextRun = new AtomicLong();
+        AtomicLong failedRuns = new AtomicLong();
+        // Parallel stages of the worlds wait for each other while joining, so there are enough threads for every
+        // run and for every processor
+        ForkJoinPool pool = new ForkJoinPool(Math.max(concurrency, Runtime.getRuntime().availableProcessors()));
+        List<Future<?>> runners = new ArrayList<>();
+        try {
+            for (int i = 0; i < concurrency; i++) {
+                runners.add(pool.submit(() -> {
+                    runAll(grid, rows, nextRun, failedRuns);
+                    return null;
+                }));
+            }
+            for (Future<?> runner : runners) runner.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("A run failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.println(String.format("Did %d runs (%d failed) in %.2f s with %d at the same time (%.2f runs per second)",
+                grid.size(), failedRuns.get(), seconds, concurrency, grid.size() / seconds));
+    }
+
+    /**
+     * Get the options a worker process needs to build the same grid and rows as this process
+     * @param options The options
+     * @return The grid options and the format option
+     */
+    private static List<String> workerArgs(CommandLineOptions options) {
+        List<String> args = new ArrayList<>();
+        for (String name : SweepRun.PARAMETERS) {
+            if (options.has(name)) {
+                args.add("--" + name);
+                args.add(options.getString(name, ""));
+            }
+        }
+        args.add("--format");
+        args.add(options.getString("format", "csv"));
+        return args;
+    }
+
+    /**
+     * Do runs until there are none left, taking the next run that no other runner has taken every time,
+     * so a runner that gets fast runs does more of them
+     * @param grid The parameter grid
+     * @param rows The rows of the sweep
+     * @param nextRun The number of the next run to do
+     * @param failedRuns The number of runs that failed
+     * @throws IOException If the engine cannot be closed
+     */
+    private static void runAll(ParameterGrid grid, SweepRows rows, AtomicLong nextRun, AtomicLong failedRuns) throws IOException {
+        try (WorldEngine engine = new WorldEngine()) {
+            for (long index = nextRun.getAndIncrement(); index < grid.size(); index = nextRun.getAndIncrement()) {
+                SweepRows.Row row = rows.run(index, grid, engine::run);
+                if (row.failed) failedRuns.incrementAndGet();
+                writeLine(row.text);
+            }
+        }
+    }
+
+    /**
+     * Create the parameter grid from the grid options
+     * @param options The options
+     * @return The grid
+     * @throws IllegalArgumentException If a grid option has invalid values
+     */
+    static ParameterGrid gridFrom(CommandLineOptions options) {
+        ParameterGrid grid = new ParameterGrid();
+        // The grid options are added in a fixed order, so the runs are numbered the same way whatever the argument order
+        for (String name : SweepRun.PARAMETERS) {
+            if (options.has(name)) grid.add(name, options.getString(name, ""));
+        }
+        return grid;
+    }
+
+    /**
+     * Create the rows of a sweep from the format option
+     * @param options The options
+     * @param grid The parameter grid
+     * @return The rows
+     * @throws IllegalArgumentException If the format is unknown
+     */
+    static SweepRows rowsFrom(CommandLineOptions options, ParameterGrid grid) {
+        String format = options.getString("format", "csv");
+        if (!format.equals("csv") && !format.equals("jsonl")) throw new IllegalArgumentException("Unknown format " + format);
+        return new SweepRows(format.equals("jsonl"), grid.getNames(), SweepRun.metricNames());
+    }
+
+    /**
+     * Open the file the rows are written to
+     * @param path The file path, or null for the standard output
+     * @return The writer
+     * @throws IOException If the file cannot be opened
+     */
+    private static Writer openOutput(String path) throws IOException {
+        try {
+            if (path == null) return new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+            return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Write a line of the output, and flush it so it can be read while the sweep goes on
+     * The runs end in any order, so the rows are not sorted: the run column has the run number
+     * @param line The line
+     */
+    private static synchronized void writeLine(String line) {
+        out.println(line);
+        out.flush();
+    }
+}
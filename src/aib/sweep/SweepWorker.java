@@ -0,0 +1,55 @@
+package aib.sweep;
+
+import aib.export.CommandLineOptions;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+
+/**
+ * A worker process of a sweep, started by SweepCoordinator
+ * The worker reads shards (ranges of run numbers) from its standard input, does their runs one at a time and writes
+ * their rows to its standard output, using the line protocol described in SweepCoordinator
+ * Anything else the program prints goes to the standard error, so it cannot be mistaken for a row
+ */
+public class SweepWorker {
+    /**
+     * Run the worker until the coordinator says to stop, or closes the standard input
+     * @param args The grid options and the format option of the sweep
+     */
+    public static void main(String[] args) {
+        PrintStream protocol;
+        try {
+            protocol = new PrintStream(new FileOutputStream(FileDescriptor.out), false, "UTF-8");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        System.setOut(System.err);
+
+        CommandLineOptions options = new CommandLineOptions(args);
+        ParameterGrid grid = SweepRunner.gridFrom(options);
+        SweepRows rows = SweepRunner.rowsFrom(options, grid);
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in, "UTF-8"))) {
+            for (String line = in.readLine(); line != null && !line.equals(SweepCoordinator.EXIT); line = in.readLine()) {
+                String[] shard = line.split(" ");
+                if (shard.length != 4 || !shard[0].equals(SweepCoordinator.SHARD)) {
+                    throw new IOException("Unexpected message " + line);
+                }
+                long from = Long.parseLong(shard[2]), to = Long.parseLong(shard[3]);
+                for (long index = from; index < to; index++) {
+                    SweepRows.Row row = rows.run(index, grid, SweepRun::run);
+                    protocol.println((row.failed ? SweepCoordinator.FAILED_ROW : SweepCoordinator.ROW) + " " + row.text);
+                }
+                protocol.println(SweepCoordinator.DONE + " " + shard[1]);
+                protocol.flush();
+                if (protocol.checkError()) throw new IOException("The coordinator stopped reading");
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("The sweep worker failed: " + e);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package aib.sweep;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A copy of the world that runs can use without changing any other copy
+ * The world is kept in static fields, so there is one world per class loader: every engine loads the application
+ * classes again with its own class loader, and calls them through reflection
+ * An engine must only be used by one thread at a time
+ */
+public class WorldEngine implements Closeable {
+    /** The class loader the world of this engine is loaded by */
+    private final URLClassLoader loader;
+
+    /**
+     * Create an engine, loading the application classes from the class path of the running program
+     * @throws IllegalStateException If the classes cannot be loaded
+     */
+    public WorldEngine() {
+        List<URL> urls = new ArrayList<>();
+        for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (path.isEmpty()) continue;
+            try {
+                urls.add(new File(path).toURI().toURL());
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException("Invalid class path entry " + path, e);
+            }
+        }
+        // The parent only knows the JDK classes, so the application classes are not shared with the other engines
+        loader = new URLClassLoader(urls.toArray(new URL[0]), ClassLoader.getSystemClassLoader().getParent());
+    }
+
+    /**
+     * Do a run on the world of this engine (see SweepRun.run)
+     * @param parameters The run parameters
+     * @return The value of every metric
+     * @throws IllegalArgumentException If a parameter is unknown or has an invalid value
+     * @throws RuntimeException If the run failed
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, String> run(Map<String, String> parameters) {
+        return (Map<String, String>) call(SweepRun.class, "run", new Class<?>[] {Map.class}, parameters);
+    }
+
+    /**
+     * Call a static method of an application class, as loaded by the class loader of this engine
+     * Only JDK types may be passed in and out: the application classes of this engine are not the ones of the caller
+     * @param type The class
+     * @param name The method name
+     * @param parameterTypes The method parameter types
+     * @param args The arguments
+     * @return What the method returns
+     * @throws RuntimeException If the method threw an exception, or cannot be called
+     */
+    public Object call(Class<?> type, String name, Class<?>[] parameterTypes, Object... args) {
+        Method method;
+        try {
+            method = loader.loadClass(type.getName()).getMethod(name, parameterTypes);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load the world classes", e);
+        }
+        try {
+            return method.invoke(null, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new RuntimeException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot call the world classes", e);
+        }
+    }
+
+    /**
+     * Release the classes of the engine, so its world can be garbage collected
+     * @throws IOException If the class path files cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        loader.close();
+    }
+}